@@ -0,0 +1,85 @@
+package uk.gov.di.ipv.stub.core.utils;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import spark.ModelAndView;
+import spark.template.mustache.MustacheTemplateEngine;
+import uk.gov.di.ipv.stub.core.config.uatuser.DisplayIdentity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares renders per second from the precompiled templates with compiling the template for every
+ * render, as Spark's MustacheTemplateEngine does. Run with {@code ./gradlew benchmark}.
+ */
+public class ViewHelperBenchmark {
+    private static final long BENCHMARK_MILLIS = 1000;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        ViewHelper.init(false);
+    }
+
+    @Test
+    void benchmarkSearchResultsWithMaxRows() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("cri", "stub-cri");
+        model.put("criName", "Stub CRI");
+        model.put(
+                "identities",
+                IntStream.range(0, 200)
+                        .mapToObj(i -> new DisplayIdentity(i + 3, "FIRST LAST " + i, i % 4))
+                        .toList());
+
+        benchmark("search-results.mustache", model);
+    }
+
+    @Test
+    void benchmarkUserInfo() {
+        StringBuilder data = new StringBuilder("{\n");
+        for (int i = 0; i < 500; i++) {
+            data.append("  \"claim").append(i).append("\": \"<value & ").append(i).append(">\",\n");
+        }
+        data.append("}");
+        Map<String, Object> model =
+                Map.of("cri", "stub-cri", "criName", "Stub CRI", "data", data.toString());
+
+        benchmark("userinfo.mustache", model);
+    }
+
+    private void benchmark(String template, Map<String, Object> model) {
+        String expected = new MustacheTemplateEngine().render(new ModelAndView(model, template));
+        assertEquals(expected, ViewHelper.render(model, template));
+
+        double uncached =
+                rendersPerSecond(
+                        () ->
+                                new MustacheTemplateEngine()
+                                        .render(new ModelAndView(model, template)));
+        double compiled = rendersPerSecond(() -> ViewHelper.render(model, template));
+
+        System.out.printf(
+                "%s (%d bytes): %.0f renders/s compiled, %.0f renders/s compiling per render%n",
+                template, expected.length(), compiled, uncached);
+    }
+
+    private double rendersPerSecond(Supplier<String> render) {
+        for (int i = 0; i < 100; i++) {
+            render.get();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BENCHMARK_MILLIS);
+        long start = System.nanoTime();
+        int renders = 0;
+        while (System.nanoTime() < deadline) {
+            render.get();
+            renders++;
+        }
+        return renders / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -3,6 +3,10 @@ package uk.gov.di.ipv.stub.core;
 public class App {
 
     public static void main(String[] args) throws Exception {
-        new CoreStub();
+        if (args.length > 0 && args[0].equals("run-journeys")) {
+            CoreStub.runJourneys(args);
+        } else {
+            new CoreStub();
+        }
     }
 }
@@ -1,13 +1,21 @@
 package uk.gov.di.ipv.stub.core;
 
 import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.oauth2.sdk.id.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.ExceptionHandler;
 import spark.Spark;
 import uk.gov.di.ipv.stub.core.config.CoreStubConfig;
+import uk.gov.di.ipv.stub.core.config.uatuser.IdentityMapper;
+import uk.gov.di.ipv.stub.core.handlers.AdmissionControl;
 import uk.gov.di.ipv.stub.core.handlers.CoreStubHandler;
+import uk.gov.di.ipv.stub.core.handlers.WarmUp;
+import uk.gov.di.ipv.stub.core.journey.JourneyRunRequest;
+import uk.gov.di.ipv.stub.core.journey.JourneyRunner;
 import uk.gov.di.ipv.stub.core.utils.HandlerHelper;
+import uk.gov.di.ipv.stub.core.utils.StaticAssets;
+import uk.gov.di.ipv.stub.core.utils.Tracing;
 import uk.gov.di.ipv.stub.core.utils.ViewHelper;
 
 import java.text.ParseException;
@@ -21,13 +29,25 @@ public class CoreStub {
     public CoreStub() throws Exception {
         CoreStubConfig.initUATUsers();
         CoreStubConfig.initCRIS();
-        Spark.staticFileLocation("/public");
+        ViewHelper.init(CoreStubConfig.CORE_STUB_RELOAD_TEMPLATES);
         Spark.port(Integer.parseInt(CoreStubConfig.CORE_STUB_PORT));
+        Tracing.install(
+                CoreStubConfig.TRACE_SERVICE_NAME,
+                CoreStubConfig.TRACE_EXPORT,
+                Integer.parseInt(CoreStubConfig.TRACE_BUFFER_SIZE));
         initRoutes();
     }
 
     private void initRoutes() throws Exception {
-        CoreStubHandler coreStubHandler = new CoreStubHandler(new HandlerHelper(getEcPrivateKey()));
+        AdmissionControl admissionControl = AdmissionControl.fromConfig();
+        admissionControl.install();
+
+        StaticAssets staticAssets = StaticAssets.load("/public");
+        admissionControl.exempt(staticAssets.paths());
+
+        HandlerHelper handlerHelper = new HandlerHelper(getEcPrivateKey());
+        CoreStubHandler coreStubHandler = new CoreStubHandler(handlerHelper);
+        WarmUp warmUp = warmUp(handlerHelper);
         Spark.get("/", coreStubHandler.serveHomePage);
         Spark.get("/credential-issuers", coreStubHandler.showCredentialIssuer);
         Spark.get("/credential-issuer", coreStubHandler.handleCredentialIssuerRequest);
@@ -37,7 +57,41 @@ public class CoreStub {
         Spark.post("/edit-user", coreStubHandler.updateUser);
         Spark.get("/callback", coreStubHandler.doCallback);
         Spark.get("/answers", coreStubHandler.answers);
+        Spark.get("/journeys/run", coreStubHandler.runJourneys);
+        Spark.get("/metrics", admissionControl.getMetrics);
+        Spark.get("/ready", warmUp.getReady);
+        staticAssets.install();
         Spark.exception(Exception.class, exceptionHandler());
+        warmUp.start();
+    }
+
+    /**
+     * Builds a JAR for the first credential issuer from the first identity, searches the identities
+     * and renders the templates.
+     */
+    private static WarmUp warmUp(HandlerHelper handlerHelper) {
+        return WarmUp.fromConfig()
+                .step(
+                        "authorization JAR",
+                        () ->
+                                handlerHelper.createAuthorizationJAR(
+                                        new State(),
+                                        CoreStubConfig.credentialIssuers.all().get(0),
+                                        new IdentityMapper()
+                                                .mapToSharedClaim(
+                                                        CoreStubConfig.identities.get(0),
+                                                        CoreStubConfig.CORE_STUB_CONFIG_AGED_DOB)))
+                .step("identity search", () -> handlerHelper.findByName("smith"))
+                .step(
+                        "templates",
+                        () -> {
+                            ViewHelper.render(Map.of(), "home.mustache");
+                            ViewHelper.render(
+                                    Map.of("cris", CoreStubConfig.credentialIssuers.all()),
+                                    "credential-issuers.mustache");
+                            ViewHelper.render(Map.of(), "search-results.mustache");
+                            ViewHelper.render(Map.of(), "userinfo.mustache");
+                        });
     }
 
     private ExceptionHandler exceptionHandler() {
@@ -48,7 +102,18 @@ public class CoreStub {
         };
     }
 
-    private ECKey getEcPrivateKey() throws ParseException {
+    public static void runJourneys(String[] args) throws Exception {
+        CoreStubConfig.initUATUsers();
+        CoreStubConfig.initCRIS();
+        Tracing.exportTo(
+                CoreStubConfig.TRACE_SERVICE_NAME,
+                CoreStubConfig.TRACE_EXPORT,
+                Integer.parseInt(CoreStubConfig.TRACE_BUFFER_SIZE));
+        new JourneyRunner(new HandlerHelper(getEcPrivateKey()))
+                .run(JourneyRunRequest.parse(args), System.out::println);
+    }
+
+    private static ECKey getEcPrivateKey() throws ParseException {
         return ECKey.parse(
                 new String(
                         Base64.getDecoder()
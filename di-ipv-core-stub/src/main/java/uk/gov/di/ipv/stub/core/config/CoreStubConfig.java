@@ -2,13 +2,10 @@ package uk.gov.di.ipv.stub.core.config;
 
 import com.google.gson.Gson;
 import com.nimbusds.oauth2.sdk.util.StringUtils;
-import org.yaml.snakeyaml.Yaml;
-import uk.gov.di.ipv.stub.core.config.credentialissuer.CredentialIssuer;
-import uk.gov.di.ipv.stub.core.config.credentialissuer.CredentialIssuerMapper;
+import uk.gov.di.ipv.stub.core.config.credentialissuer.CredentialIssuerRegistry;
 import uk.gov.di.ipv.stub.core.config.uatuser.Identity;
 import uk.gov.di.ipv.stub.core.config.uatuser.IdentityMapper;
 
-import java.io.FileInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,11 +47,30 @@ public class CoreStubConfig {
             Boolean.parseBoolean(getConfigValue("CORE_STUB_CONFIG_AGED_DOB", "true"));
     public static final String MAX_JAR_TTL_MINS = getConfigValue("MAX_JAR_TTL_MINS", "60");
 
+    public static final String LIMITER_MODE = getConfigValue("LIMITER_MODE", "off");
+    public static final String LIMITER_ROUTES = getConfigValue("LIMITER_ROUTES", "*");
+    public static final String LIMITER_LIMIT = getConfigValue("LIMITER_LIMIT", "64");
+    public static final String LIMITER_MAX_LIMIT = getConfigValue("LIMITER_MAX_LIMIT", "512");
+    public static final String LIMITER_LATENCY_TARGET_MILLIS =
+            getConfigValue("LIMITER_LATENCY_TARGET_MILLIS", "500");
+    public static final String LIMITER_QUEUE_TIMEOUT_MILLIS =
+            getConfigValue("LIMITER_QUEUE_TIMEOUT_MILLIS", "0");
+    public static final String LIMITER_RETRY_AFTER_SECONDS =
+            getConfigValue("LIMITER_RETRY_AFTER_SECONDS", "1");
+    public static final String TRACE_EXPORT = getConfigValue("TRACE_EXPORT", "off");
+    public static final String TRACE_BUFFER_SIZE = getConfigValue("TRACE_BUFFER_SIZE", "10000");
+    public static final String TRACE_SERVICE_NAME =
+            getConfigValue("TRACE_SERVICE_NAME", "core-stub");
+    public static final String WARM_UP_ITERATIONS = getConfigValue("WARM_UP_ITERATIONS", "50");
+
     public static final boolean CORE_STUB_SHOW_VC =
             Boolean.parseBoolean(getConfigValue("CORE_STUB_SHOW_VC", "true"));
+    public static final boolean CORE_STUB_RELOAD_TEMPLATES =
+            Boolean.parseBoolean(getConfigValue("CORE_STUB_RELOAD_TEMPLATES", "false"));
 
     public static final List<Identity> identities = new ArrayList<>();
-    public static final List<CredentialIssuer> credentialIssuers = new ArrayList<>();
+    public static final CredentialIssuerRegistry credentialIssuers =
+            new CredentialIssuerRegistry(Paths.get(CORE_STUB_CONFIG_FILE));
 
     public static String getConfigValue(String key, String defaultValue) {
         String envValue = Optional.ofNullable(System.getenv(key)).orElse(defaultValue);
@@ -66,13 +82,8 @@ public class CoreStubConfig {
     }
 
     public static void initCRIS() throws IOException {
-        try (FileInputStream inputStream =
-                new FileInputStream(CoreStubConfig.CORE_STUB_CONFIG_FILE)) {
-            Map<String, Object> obj = new Yaml().load(inputStream);
-            CredentialIssuerMapper mapper = new CredentialIssuerMapper();
-            List<Map> cis = (List<Map>) obj.get("credentialIssuerConfigs");
-            credentialIssuers.addAll(cis.stream().map(mapper::map).toList());
-        }
+        credentialIssuers.load();
+        credentialIssuers.watch();
     }
 
     public static void initUATUsers() throws IOException {
@@ -12,4 +12,5 @@ public record CredentialIssuer(
         boolean sendIdentityClaims,
         String expectedAlgo,
         String publicEncryptionJwkBase64,
-        String apiKeyEnvVar) {}
+        String apiKeyEnvVar,
+        String apiKey) {}
@@ -1,7 +1,10 @@
 package uk.gov.di.ipv.stub.core.config.credentialissuer;
 
+import com.nimbusds.oauth2.sdk.util.StringUtils;
+
 import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
 
 public class CredentialIssuerMapper {
 
@@ -15,6 +18,11 @@ public class CredentialIssuerMapper {
         boolean sendIdentityClaims = Boolean.TRUE.equals(map.get("sendIdentityClaims"));
         String publicEncryptionJwkBase64 = (String) map.get("publicEncryptionJwkBase64");
         String apiKeyEnvVar = (String) map.get("apiKeyEnvVar");
+        String apiKey =
+                Optional.ofNullable(apiKeyEnvVar)
+                        .map(System::getenv)
+                        .filter(StringUtils::isNotBlank)
+                        .orElse(null);
         return new CredentialIssuer(
                 id,
                 name,
@@ -25,6 +33,7 @@ public class CredentialIssuerMapper {
                 sendIdentityClaims,
                 "ES256",
                 publicEncryptionJwkBase64,
-                apiKeyEnvVar);
+                apiKeyEnvVar,
+                apiKey);
     }
 }
@@ -0,0 +1,107 @@
+package uk.gov.di.ipv.stub.core.config.credentialissuer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable, id-indexed view of the credential issuers in the core stub config file. The file is
+ * watched and every change is loaded into a new snapshot which is swapped in atomically, so
+ * journeys already in flight keep the {@link CredentialIssuer} they started with.
+ */
+public class CredentialIssuerRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CredentialIssuerRegistry.class);
+
+    private record Snapshot(List<CredentialIssuer> all, Map<String, CredentialIssuer> byId) {}
+
+    private final Path configFile;
+    private final CredentialIssuerMapper mapper = new CredentialIssuerMapper();
+    private volatile Snapshot snapshot = new Snapshot(List.of(), Map.of());
+
+    public CredentialIssuerRegistry(Path configFile) {
+        this.configFile = configFile.toAbsolutePath();
+    }
+
+    public List<CredentialIssuer> all() {
+        return snapshot.all();
+    }
+
+    public Optional<CredentialIssuer> find(String credentialIssuerId) {
+        return Optional.ofNullable(snapshot.byId().get(credentialIssuerId));
+    }
+
+    public void load() throws IOException {
+        try (InputStream inputStream = Files.newInputStream(configFile)) {
+            Map<String, Object> obj = new Yaml().load(inputStream);
+            List<Map<String, Object>> cis =
+                    (List<Map<String, Object>>) obj.get("credentialIssuerConfigs");
+
+            Map<String, CredentialIssuer> byId = new LinkedHashMap<>();
+            for (Map<String, Object> ci : cis) {
+                CredentialIssuer credentialIssuer = mapper.map(ci);
+                if (byId.put(credentialIssuer.id(), credentialIssuer) != null) {
+                    throw new IllegalStateException(
+                            "duplicate cri id '%s'".formatted(credentialIssuer.id()));
+                }
+            }
+            snapshot = new Snapshot(List.copyOf(byId.values()), Map.copyOf(byId));
+        }
+        LOGGER.info("✅  loaded {} credential issuers from {}", all().size(), configFile);
+    }
+
+    public void watch() throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        configFile
+                .getParent()
+                .register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread watcher = new Thread(() -> reloadOnChange(watchService), "cri-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void reloadOnChange(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= configFile.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload() {
+        try {
+            load();
+        } catch (Exception e) {
+            LOGGER.error("Failed to reload {}, keeping previous config", configFile, e);
+        }
+    }
+}
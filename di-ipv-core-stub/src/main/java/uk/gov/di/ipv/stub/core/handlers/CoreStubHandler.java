@@ -23,6 +23,8 @@ import uk.gov.di.ipv.stub.core.config.uatuser.Identity;
 import uk.gov.di.ipv.stub.core.config.uatuser.IdentityMapper;
 import uk.gov.di.ipv.stub.core.config.uatuser.SharedClaims;
 import uk.gov.di.ipv.stub.core.config.uatuser.UKAddress;
+import uk.gov.di.ipv.stub.core.journey.JourneyRunRequest;
+import uk.gov.di.ipv.stub.core.journey.JourneyRunner;
 import uk.gov.di.ipv.stub.core.utils.HandlerHelper;
 import uk.gov.di.ipv.stub.core.utils.ViewHelper;
 
@@ -30,6 +32,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -48,10 +53,12 @@ public class CoreStubHandler {
 
     private final Map<String, CredentialIssuer> stateSession = new HashMap<>();
     private HandlerHelper handlerHelper;
+    private JourneyRunner journeyRunner;
     private Map<String, String> questionsMap = new HashMap<>();
 
     public CoreStubHandler(HandlerHelper handlerHelper) {
         this.handlerHelper = handlerHelper;
+        this.journeyRunner = new JourneyRunner(handlerHelper);
 
         setQuestions();
     }
@@ -91,13 +98,15 @@ public class CoreStubHandler {
     }
 
     public Route serveHomePage =
-            (Request request, Response response) -> ViewHelper.render(null, "home.mustache");
+            (Request request, Response response) ->
+                    ViewHelper.render(null, "home.mustache", response);
 
     public Route showCredentialIssuer =
             (Request request, Response response) ->
                     ViewHelper.render(
-                            Map.of("cris", CoreStubConfig.credentialIssuers),
-                            "credential-issuers.mustache");
+                            Map.of("cris", CoreStubConfig.credentialIssuers.all()),
+                            "credential-issuers.mustache",
+                            response);
 
     public Route userSearch =
             (Request request, Response response) -> {
@@ -126,7 +135,7 @@ public class CoreStubHandler {
                 modelMap.put("cri", credentialIssuer.id());
                 modelMap.put("criName", credentialIssuer.name());
                 modelMap.put("identities", displayIdentities);
-                return ViewHelper.render(modelMap, "search-results.mustache");
+                return ViewHelper.render(modelMap, "search-results.mustache", response);
             };
 
     public Route doCallback =
@@ -160,7 +169,7 @@ public class CoreStubHandler {
                 moustacheDataModel.put("cri", credentialIssuer.id());
                 moustacheDataModel.put("criName", credentialIssuer.name());
 
-                return ViewHelper.render(moustacheDataModel, "userinfo.mustache");
+                return ViewHelper.render(moustacheDataModel, "userinfo.mustache", response);
             };
 
     public Route handleCredentialIssuerRequest =
@@ -176,7 +185,8 @@ public class CoreStubHandler {
                                     credentialIssuer.id(),
                                     "criName",
                                     credentialIssuer.name()),
-                            "user-search.mustache");
+                            "user-search.mustache",
+                            response);
                 } else {
                     sendAuthorizationRequest(request, response, credentialIssuer, null);
                     return null;
@@ -218,7 +228,8 @@ public class CoreStubHandler {
                                 identity,
                                 "questionAndAnswers",
                                 questionAndAnswers),
-                        "answers.mustache");
+                        "answers.mustache",
+                        response);
             };
 
     public Route updateUser =
@@ -237,6 +248,37 @@ public class CoreStubHandler {
                 return null;
             };
 
+    public Route runJourneys =
+            (Request request, Response response) -> {
+                response.type("text/plain;charset=utf-8");
+                JourneyRunRequest runRequest;
+                try {
+                    runRequest = JourneyRunRequest.parse(request::queryParams);
+                } catch (IllegalArgumentException e) {
+                    response.status(400);
+                    return e.getMessage();
+                }
+                var writer =
+                        new PrintWriter(
+                                new OutputStreamWriter(
+                                        response.raw().getOutputStream(), StandardCharsets.UTF_8));
+                try {
+                    journeyRunner.run(
+                            runRequest,
+                            report -> {
+                                writer.println(report);
+                                writer.flush();
+                                if (writer.checkError()) {
+                                    throw new UncheckedIOException(
+                                            new IOException("journey run client disconnected"));
+                                }
+                            });
+                } catch (UncheckedIOException e) {
+                    LOGGER.warn("⛔ stopped journey run: {}", e.getCause().getMessage());
+                }
+                return "";
+            };
+
     private void sendAuthorizationRequest(
             Request request,
             Response response,
@@ -275,7 +317,8 @@ public class CoreStubHandler {
                                 addressMap,
                                 "rowNumber",
                                 Optional.ofNullable(rowNumber).orElse("0")),
-                        "edit-user.mustache");
+                        "edit-user.mustache",
+                        response);
             };
 
     private Identity fetchOrCreateIdentity(String rowNumber) {
@@ -0,0 +1,116 @@
+package uk.gov.di.ipv.stub.core.handlers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import spark.Spark;
+import uk.gov.di.ipv.stub.core.config.CoreStubConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the stub's slow-the-first-time paths with synthetic input before it reports itself ready on
+ * {@code GET /ready}, so class loading, reflection caches and crypto provider setup happen here
+ * rather than on the first real requests. Each step is run {@code WARM_UP_ITERATIONS} times, and
+ * the first and later timings are logged to show what the warm-up saved.
+ *
+ * <p>A step that fails is logged and skipped, so a bad warm-up input can't keep the stub unready.
+ */
+public class WarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+
+    /** One path to warm up. Its result, if any, is thrown away. */
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final int iterations;
+    private volatile boolean ready;
+
+    WarmUp(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public static WarmUp fromConfig() {
+        return new WarmUp(Integer.parseInt(CoreStubConfig.WARM_UP_ITERATIONS));
+    }
+
+    public WarmUp step(String name, Step step) {
+        steps.put(name, step);
+        return this;
+    }
+
+    /**
+     * Warms up in the background once the server has started, so {@code /ready} can answer while it
+     * runs. Must be called after the routes are defined.
+     */
+    public void start() {
+        Thread warmUp =
+                new Thread(
+                        () -> {
+                            Spark.awaitInitialization();
+                            run();
+                        },
+                        "warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    void run() {
+        long started = System.nanoTime();
+        if (iterations > 0) {
+            steps.forEach(this::run);
+        }
+        ready = true;
+        LOGGER.info("Warm-up took {} ms, ready", millis(System.nanoTime() - started));
+    }
+
+    private void run(String name, Step step) {
+        try {
+            long first = time(step);
+            long rest = 0;
+            for (int i = 1; i < iterations; i++) {
+                rest += time(step);
+            }
+            if (iterations > 1) {
+                LOGGER.info(
+                        "Warmed up {}: first run {} ms, then {} ms on average",
+                        name,
+                        millis(first),
+                        millis(rest / (iterations - 1)));
+            } else {
+                LOGGER.info("Warmed up {}: {} ms", name, millis(first));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Warm-up of {} failed, skipping it", name, e);
+        }
+    }
+
+    private static long time(Step step) throws Exception {
+        long started = System.nanoTime();
+        step.run();
+        return System.nanoTime() - started;
+    }
+
+    private static String millis(long nanos) {
+        return "%.2f".formatted(nanos / 1e6);
+    }
+
+    public boolean ready() {
+        return ready;
+    }
+
+    public Route getReady =
+            (Request request, Response response) -> {
+                response.type("text/plain");
+                if (!ready) {
+                    response.status(503);
+                    return "warming up";
+                }
+                return "ready";
+            };
+}
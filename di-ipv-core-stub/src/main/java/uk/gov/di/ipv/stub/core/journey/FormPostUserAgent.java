@@ -0,0 +1,62 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import uk.gov.di.ipv.stub.core.utils.Tracing;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+/**
+ * Submits the credential issuer stub's authorize form directly, as if the tester had filled it in
+ * and pressed submit. The form fields depend on the type of CRI being stubbed, e.g. {@code
+ * strengthScore=3&validityScore=2} for an evidence CRI.
+ */
+public class FormPostUserAgent implements UserAgent {
+
+    private static final String DEFAULT_FORM_FIELDS = "jsonPayload=%7B%7D&ci=";
+
+    private final String formFields;
+
+    public FormPostUserAgent(String formFields) {
+        this.formFields =
+                formFields == null || formFields.isBlank()
+                        ? DEFAULT_FORM_FIELDS
+                        : DEFAULT_FORM_FIELDS + "&" + formFields;
+    }
+
+    @Override
+    public URI authorize(URI authorizationRequest) throws IOException, InterruptedException {
+        HttpRequest.Builder request =
+                HttpRequest.newBuilder(authorizationRequest)
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(
+                                HttpRequest.BodyPublishers.ofString(
+                                        formFields + "&resourceId=" + UUID.randomUUID()));
+        String traceparent = Tracing.traceparent();
+        if (traceparent != null) {
+            request.header(Tracing.TRACEPARENT, traceparent);
+        }
+        HttpResponse<String> response =
+                HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+
+        URI location =
+                response.headers()
+                        .firstValue("Location")
+                        .map(authorizationRequest::resolve)
+                        .orElseThrow(
+                                () ->
+                                        new IllegalStateException(
+                                                "authorize form returned %d without a redirect: %s"
+                                                        .formatted(
+                                                                response.statusCode(),
+                                                                response.body())));
+        if (!UserAgent.isCallback(location)) {
+            throw new IllegalStateException(
+                    "authorize form redirected to %s, not the callback".formatted(location));
+        }
+        return location;
+    }
+}
@@ -0,0 +1,116 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+public record JourneyRunRequest(
+        String criId,
+        int concurrency,
+        int journeys,
+        List<Integer> rowNumbers,
+        String userAgent,
+        String formFields) {
+
+    /** Most journeys run at once, each on its own thread. */
+    public static final int MAX_CONCURRENCY = 200;
+    /** Most rows a run can take its identities from. */
+    public static final int MAX_ROWS = 10_000;
+    /** Most journeys one run makes. */
+    public static final int MAX_JOURNEYS = 1_000_000;
+    /** The {@link UserAgent}s a run can drive the authorize step with. */
+    public static final List<String> USER_AGENTS = List.of("form", "redirect");
+
+    /**
+     * Parses and checks the run's parameters, throwing {@link IllegalArgumentException} for any
+     * that are missing or out of range.
+     */
+    public static JourneyRunRequest parse(Function<String, String> params) {
+        return new JourneyRunRequest(
+                required(params, "cri"),
+                number(params, "concurrency", 1, MAX_CONCURRENCY),
+                number(params, "journeys", 1, MAX_JOURNEYS),
+                parseRowNumbers(required(params, "rows")),
+                userAgent(params),
+                params.apply("form"));
+    }
+
+    private static String required(Function<String, String> params, String name) {
+        String value = params.apply(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("%s required".formatted(name));
+        }
+        return value;
+    }
+
+    private static String userAgent(Function<String, String> params) {
+        String userAgent = Optional.ofNullable(params.apply("userAgent")).orElse("form");
+        if (!USER_AGENTS.contains(userAgent)) {
+            throw new IllegalArgumentException(
+                    "userAgent must be one of %s".formatted(String.join(", ", USER_AGENTS)));
+        }
+        return userAgent;
+    }
+
+    private static int number(Function<String, String> params, String name, int min, int max) {
+        String value = Optional.ofNullable(params.apply(name)).orElse("1");
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("%s must be a number".formatted(name));
+        }
+        if (number < min || number > max) {
+            throw new IllegalArgumentException(
+                    "%s must be between %d and %d".formatted(name, min, max));
+        }
+        return number;
+    }
+
+    /** Parses {@code --name=value} command line arguments. */
+    public static JourneyRunRequest parse(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                params.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return parse(params::get);
+    }
+
+    /**
+     * Row numbers are comma separated, with ranges written as {@code 3-10}, and at most {@link
+     * #MAX_ROWS} in all.
+     */
+    private static List<Integer> parseRowNumbers(String rows) {
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (String part : rows.split(",")) {
+            String[] range = part.trim().split("-");
+            int from;
+            int to;
+            try {
+                from = Integer.parseInt(range[0].trim());
+                to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid rows '%s'".formatted(part));
+            }
+            if (range.length > 2 || to < from) {
+                throw new IllegalArgumentException("invalid rows '%s'".formatted(part));
+            }
+            if ((long) to - from + 1 > MAX_ROWS - rowNumbers.size()) {
+                throw new IllegalArgumentException(
+                        "at most %d rows in '%s'".formatted(MAX_ROWS, rows));
+            }
+            for (int rowNumber = from; rowNumber <= to; rowNumber++) {
+                rowNumbers.add(rowNumber);
+            }
+        }
+        if (rowNumbers.isEmpty()) {
+            throw new IllegalArgumentException("no row numbers in '%s'".formatted(rows));
+        }
+        return rowNumbers;
+    }
+}
@@ -0,0 +1,216 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.AuthorizationRequest;
+import com.nimbusds.oauth2.sdk.AuthorizationResponse;
+import com.nimbusds.oauth2.sdk.AuthorizationSuccessResponse;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.di.ipv.stub.core.config.CoreStubConfig;
+import uk.gov.di.ipv.stub.core.config.credentialissuer.CredentialIssuer;
+import uk.gov.di.ipv.stub.core.config.uatuser.IdentityMapper;
+import uk.gov.di.ipv.stub.core.config.uatuser.SharedClaims;
+import uk.gov.di.ipv.stub.core.utils.HandlerHelper;
+import uk.gov.di.ipv.stub.core.utils.Tracing;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Drives complete CRI journeys headlessly: build the JAR, pass it through a {@link UserAgent},
+ * exchange the code and fetch the VC. Per-phase latency stats are reported every second while the
+ * run is in progress.
+ */
+public class JourneyRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JourneyRunner.class);
+
+    private interface PhaseCall<T> {
+        T call() throws Exception;
+    }
+
+    private final HandlerHelper handlerHelper;
+    private final BiFunction<String, String, UserAgent> userAgents;
+
+    public JourneyRunner(HandlerHelper handlerHelper) {
+        this(handlerHelper, UserAgent::create);
+    }
+
+    JourneyRunner(HandlerHelper handlerHelper, BiFunction<String, String, UserAgent> userAgents) {
+        this.handlerHelper = handlerHelper;
+        this.userAgents = userAgents;
+    }
+
+    public void run(JourneyRunRequest runRequest, Consumer<String> progress)
+            throws InterruptedException {
+        CredentialIssuer credentialIssuer = handlerHelper.findCredentialIssuer(runRequest.criId());
+        UserAgent userAgent = userAgents.apply(runRequest.userAgent(), runRequest.formFields());
+
+        IdentityMapper identityMapper = new IdentityMapper();
+        List<SharedClaims> sharedClaims = new ArrayList<>();
+        for (Integer rowNumber : runRequest.rowNumbers()) {
+            sharedClaims.add(
+                    credentialIssuer.sendIdentityClaims()
+                            ? identityMapper.mapToSharedClaim(
+                                    handlerHelper.findIdentityByRowNumber(rowNumber),
+                                    CoreStubConfig.CORE_STUB_CONFIG_AGED_DOB)
+                            : null);
+        }
+
+        Run run = new Run(credentialIssuer, userAgent);
+        LOGGER.info(
+                "🏃 starting {} journeys against {} with concurrency {}",
+                runRequest.journeys(),
+                credentialIssuer.id(),
+                runRequest.concurrency());
+
+        long start = System.nanoTime();
+        // Each worker takes the next journey from the counter, so none are queued up front
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(runRequest.concurrency());
+        for (int worker = 0; worker < runRequest.concurrency(); worker++) {
+            executor.execute(
+                    () -> {
+                        int journey;
+                        while (!Thread.currentThread().isInterrupted()
+                                && (journey = next.getAndIncrement()) < runRequest.journeys()) {
+                            run.journey(sharedClaims.get(journey % sharedClaims.size()));
+                        }
+                    });
+        }
+        executor.shutdown();
+
+        // Stops the journeys in flight if interrupted, or if progress can't be reported
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                progress.accept(run.report(start, runRequest.journeys()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        progress.accept(run.report(start, runRequest.journeys()));
+    }
+
+    private class Run {
+        private final CredentialIssuer credentialIssuer;
+        private final UserAgent userAgent;
+        private final LatencyStats jar = new LatencyStats("jar");
+        private final LatencyStats authorize = new LatencyStats("authorize");
+        private final LatencyStats token = new LatencyStats("token");
+        private final LatencyStats credential = new LatencyStats("credential");
+        private final LatencyStats journey = new LatencyStats("journey");
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Run(CredentialIssuer credentialIssuer, UserAgent userAgent) {
+            this.credentialIssuer = credentialIssuer;
+            this.userAgent = userAgent;
+        }
+
+        /** Runs one journey as its own trace, with a span for each phase. */
+        private void journey(SharedClaims sharedClaims) {
+            long start = System.nanoTime();
+            Tracing.Span span = Tracing.start("journey " + credentialIssuer.id());
+            try {
+                State state = new State();
+                AuthorizationRequest authorizationRequest =
+                        time(
+                                jar,
+                                () ->
+                                        handlerHelper.createAuthorizationJAR(
+                                                state, credentialIssuer, sharedClaims));
+                AuthorizationSuccessResponse authorizationResponse =
+                        time(
+                                authorize,
+                                () -> {
+                                    URI callback =
+                                            userAgent.authorize(authorizationRequest.toURI());
+                                    return toSuccessResponse(callback, state);
+                                });
+                AccessToken accessToken =
+                        time(
+                                token,
+                                () -> {
+                                    AccessToken issued =
+                                            handlerHelper.exchangeCodeForToken(
+                                                    authorizationResponse.getAuthorizationCode(),
+                                                    credentialIssuer,
+                                                    state);
+                                    if (issued == null) {
+                                        throw new IllegalStateException("token request failed");
+                                    }
+                                    return issued;
+                                });
+                time(
+                        credential,
+                        () ->
+                                SignedJWT.parse(
+                                        handlerHelper.getUserInfo(
+                                                accessToken, credentialIssuer, state)));
+                journey.record(System.nanoTime() - start);
+                completed.incrementAndGet();
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                span.error();
+                failed.incrementAndGet();
+            } finally {
+                span.close();
+            }
+        }
+
+        private AuthorizationSuccessResponse toSuccessResponse(URI callback, State state)
+                throws ParseException {
+            AuthorizationResponse response = AuthorizationResponse.parse(callback);
+            if (!response.indicatesSuccess()) {
+                throw new IllegalStateException(
+                        response.toErrorResponse().getErrorObject().toString());
+            }
+            if (!state.equals(response.getState())) {
+                throw new IllegalStateException("callback state does not match");
+            }
+            return response.toSuccessResponse();
+        }
+
+        private <T> T time(LatencyStats stats, PhaseCall<T> call) throws Exception {
+            long start = System.nanoTime();
+            Tracing.Span span = Tracing.start(stats.name());
+            try {
+                T result = call.call();
+                stats.record(System.nanoTime() - start);
+                return result;
+            } catch (Exception e) {
+                span.error();
+                stats.recordError(e);
+                throw e;
+            } finally {
+                span.close();
+            }
+        }
+
+        private String report(long runStart, int journeys) {
+            long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - runStart);
+            return String.join(
+                    "\n",
+                    "[%ds] completed=%d failed=%d of %d"
+                            .formatted(elapsed, completed.get(), failed.get(), journeys),
+                    jar.report(),
+                    authorize.report(),
+                    token.report(),
+                    credential.report(),
+                    journey.report(),
+                    "");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency samples for one phase of a journey run. Up to {@link #MAX_SAMPLES} are kept, so
+ * percentiles are exact for shorter runs and estimated from a uniform sample of longer ones. The
+ * count, mean and max are always exact.
+ */
+public class LatencyStats {
+
+    static final int MAX_SAMPLES = 10_000;
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int sampled;
+    private long count;
+    private long total;
+    private long max;
+    private int errors;
+    private String lastError;
+
+    public LatencyStats(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized void record(long nanos) {
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+        if (sampled < MAX_SAMPLES) {
+            if (sampled == samples.length) {
+                samples = Arrays.copyOf(samples, Math.min(sampled * 2, MAX_SAMPLES));
+            }
+            samples[sampled++] = nanos;
+        } else {
+            // Reservoir sampling, so every sample so far is equally likely to be kept
+            long replace = ThreadLocalRandom.current().nextLong(count);
+            if (replace < MAX_SAMPLES) {
+                samples[(int) replace] = nanos;
+            }
+        }
+    }
+
+    public synchronized void recordError(Exception e) {
+        errors++;
+        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    public String report() {
+        long[] sorted;
+        long recorded;
+        long totalNanos;
+        long maxNanos;
+        int errorCount;
+        String error;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, sampled);
+            recorded = count;
+            totalNanos = total;
+            maxNanos = max;
+            errorCount = errors;
+            error = lastError;
+        }
+        Arrays.sort(sorted);
+
+        StringBuilder report =
+                new StringBuilder("%-10s count=%d errors=%d".formatted(name, recorded, errorCount));
+        if (recorded > 0) {
+            report.append(
+                    " mean=%.1fms p50=%dms p95=%dms p99=%dms max=%dms"
+                            .formatted(
+                                    (double) totalNanos / recorded / 1_000_000,
+                                    millis(percentile(sorted, 50)),
+                                    millis(percentile(sorted, 95)),
+                                    millis(percentile(sorted, 99)),
+                                    millis(maxNanos)));
+        }
+        if (error != null) {
+            report.append(" lastError=\"").append(error).append('"');
+        }
+        return report.toString();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,72 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import uk.gov.di.ipv.stub.core.utils.Tracing;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Follows redirects from the authorization request until the CRI sends us back to the callback,
+ * carrying any cookies it sets along the way. Suits CRIs which complete the authorize step without
+ * user input.
+ */
+public class RedirectFollowingUserAgent implements UserAgent {
+
+    private static final int MAX_REDIRECTS = 10;
+
+    @Override
+    public URI authorize(URI authorizationRequest) throws IOException, InterruptedException {
+        Map<String, String> cookies = new LinkedHashMap<>();
+        URI uri = authorizationRequest;
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            HttpRequest.Builder request =
+                    HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET();
+            String traceparent = Tracing.traceparent();
+            if (traceparent != null) {
+                request.header(Tracing.TRACEPARENT, traceparent);
+            }
+            if (!cookies.isEmpty()) {
+                request.header(
+                        "Cookie",
+                        cookies.entrySet().stream()
+                                .map(cookie -> cookie.getKey() + "=" + cookie.getValue())
+                                .collect(Collectors.joining("; ")));
+            }
+            HttpResponse<Void> response =
+                    HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.discarding());
+
+            response.headers()
+                    .allValues("Set-Cookie")
+                    .forEach(
+                            header ->
+                                    HttpCookie.parse(header)
+                                            .forEach(
+                                                    cookie ->
+                                                            cookies.put(
+                                                                    cookie.getName(),
+                                                                    cookie.getValue())));
+
+            URI location =
+                    response.headers()
+                            .firstValue("Location")
+                            .map(uri::resolve)
+                            .orElseThrow(
+                                    () ->
+                                            new IllegalStateException(
+                                                    "authorize step returned %d without a redirect"
+                                                            .formatted(response.statusCode())));
+            if (UserAgent.isCallback(location)) {
+                return location;
+            }
+            uri = location;
+        }
+        throw new IllegalStateException(
+                "no callback after %d redirects from %s".formatted(MAX_REDIRECTS, uri));
+    }
+}
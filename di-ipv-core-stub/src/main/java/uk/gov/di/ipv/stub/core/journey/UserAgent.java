@@ -0,0 +1,39 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import uk.gov.di.ipv.stub.core.config.CoreStubConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Stands in for the browser during a headless journey: takes the CRI authorization request and
+ * returns the callback URI the CRI redirects back to.
+ */
+public interface UserAgent {
+
+    HttpClient HTTP_CLIENT =
+            HttpClient.newBuilder()
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+    /** How long to wait for the CRI to answer each request, so a hung CRI fails the journey. */
+    Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    URI authorize(URI authorizationRequest) throws IOException, InterruptedException;
+
+    static UserAgent create(String name, String formFields) {
+        return switch (name) {
+            case "form" -> new FormPostUserAgent(formFields);
+            case "redirect" -> new RedirectFollowingUserAgent();
+            default -> throw new IllegalArgumentException(
+                    "unknown user agent '%s'".formatted(name));
+        };
+    }
+
+    static boolean isCallback(URI uri) {
+        return uri.toString().startsWith(CoreStubConfig.CORE_STUB_REDIRECT_URL.toString());
+    }
+}
@@ -76,7 +76,7 @@ public class HandlerHelper {
         }
 
         void signJWT(SignedJWT jwtToSign) throws JOSEException {
-            jwtToSign.sign(this.jwsSigner);
+            Tracing.inSpan("jwt.sign", () -> jwtToSign.sign(this.jwsSigner));
         }
 
         String getKeyId() {
@@ -86,7 +86,6 @@ public class HandlerHelper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HandlerHelper.class);
     public static final String SHARED_CLAIMS = "shared_claims";
-    public static final String UNKNOWN_ENV_VAR = "unknown";
     public static final String API_KEY_HEADER = "x-api-key";
 
     private final ECKey ecSigningKey;
@@ -132,20 +131,23 @@ public class HandlerHelper {
                         authorizationCode, CoreStubConfig.CORE_STUB_REDIRECT_URL);
 
         PrivateKeyJWT privateKeyJWT =
-                new PrivateKeyJWT(
-                        new JWTAuthenticationClaimsSet(
-                                clientID, new Audience(credentialIssuer.audience())),
-                        JWSAlgorithm.ES256,
-                        this.ecSigningKey.toECPrivateKey(),
-                        this.ecSigningKey.getKeyID(),
-                        null);
+                Tracing.inSpan(
+                        "jwt.sign",
+                        () ->
+                                new PrivateKeyJWT(
+                                        new JWTAuthenticationClaimsSet(
+                                                clientID,
+                                                new Audience(credentialIssuer.audience())),
+                                        JWSAlgorithm.ES256,
+                                        this.ecSigningKey.toECPrivateKey(),
+                                        this.ecSigningKey.getKeyID(),
+                                        null));
 
         TokenRequest tokenRequest = new TokenRequest(tokenURI, privateKeyJWT, authzGrant);
 
         HTTPRequest httpRequest = tokenRequest.toHTTPRequest();
-        String apiKey =
-                CoreStubConfig.getConfigValue(credentialIssuer.apiKeyEnvVar(), UNKNOWN_ENV_VAR);
-        if (!apiKey.equals(UNKNOWN_ENV_VAR)) {
+        String apiKey = credentialIssuer.apiKey();
+        if (apiKey != null) {
             LOGGER.info(
                     "Found api key and sending it in token request to cri: {}",
                     credentialIssuer.id());
@@ -185,9 +187,8 @@ public class HandlerHelper {
         HTTPRequest userInfoRequest =
                 new HTTPRequest(HTTPRequest.Method.POST, credentialIssuer.credentialUrl());
 
-        String apiKey =
-                CoreStubConfig.getConfigValue(credentialIssuer.apiKeyEnvVar(), UNKNOWN_ENV_VAR);
-        if (!apiKey.equals(UNKNOWN_ENV_VAR)) {
+        String apiKey = credentialIssuer.apiKey();
+        if (apiKey != null) {
             LOGGER.info(
                     "Found api key and sending it in credential request to cri: {}",
                     credentialIssuer.id());
@@ -208,9 +209,15 @@ public class HandlerHelper {
         return userInfoHttpResponse.getContent();
     }
 
+    /** Sends a backchannel request as a span of the current trace, passing the trace on. */
     public HTTPResponse sendHttpRequest(HTTPRequest httpRequest) {
         try {
-            return httpRequest.send();
+            return Tracing.inSpan(
+                    "backchannel " + httpRequest.getURL().getPath(),
+                    () -> {
+                        httpRequest.setHeader(Tracing.TRACEPARENT, Tracing.traceparent());
+                        return httpRequest.send();
+                    });
         } catch (IOException | SerializeException exception) {
             LOGGER.error("Failed to send a http request", exception);
             throw new RuntimeException("Failed to send a http request", exception);
@@ -266,31 +273,40 @@ public class HandlerHelper {
     }
 
     public CredentialIssuer findCredentialIssuer(String credentialIssuerId) {
-        return CoreStubConfig.credentialIssuers.stream()
-                .filter(cri -> credentialIssuerId.equals(cri.id()))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("illegal cri"));
+        return Tracing.inSpan(
+                "store.credential-issuer.find",
+                () ->
+                        CoreStubConfig.credentialIssuers
+                                .find(credentialIssuerId)
+                                .orElseThrow(() -> new IllegalStateException("illegal cri")));
     }
 
     public List<Identity> findByName(String searchTerm) {
         if (StringUtils.isNotBlank(searchTerm)) {
-            return CoreStubConfig.identities.stream()
-                    .filter(
-                            identity ->
-                                    identity.name()
-                                            .firstLastName()
-                                            .toLowerCase()
-                                            .contains(searchTerm.toLowerCase()))
-                    .collect(Collectors.toList());
+            return Tracing.inSpan(
+                    "store.identity.search",
+                    () ->
+                            CoreStubConfig.identities.stream()
+                                    .filter(
+                                            identity ->
+                                                    identity.name()
+                                                            .firstLastName()
+                                                            .toLowerCase()
+                                                            .contains(searchTerm.toLowerCase()))
+                                    .collect(Collectors.toList()));
         }
         return new ArrayList<>();
     }
 
     public Identity findIdentityByRowNumber(Integer rowNumber) {
-        return CoreStubConfig.identities.stream()
-                .filter(identity -> rowNumber == identity.rowNumber())
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("unmatched rowNumber"));
+        return Tracing.inSpan(
+                "store.identity.find",
+                () ->
+                        CoreStubConfig.identities.stream()
+                                .filter(identity -> rowNumber == identity.rowNumber())
+                                .findFirst()
+                                .orElseThrow(
+                                        () -> new IllegalStateException("unmatched rowNumber")));
     }
 
     public SignedJWT createSignedJWT(Object identity, CredentialIssuer credentialIssuer)
@@ -341,7 +357,8 @@ public class HandlerHelper {
                                     .contentType("JWT")
                                     .build(),
                             new Payload(signedJWT));
-            jweObject.encrypt(new RSAEncrypter(getEncryptionPublicKey(credentialIssuer)));
+            RSAEncrypter rsaEncrypter = new RSAEncrypter(getEncryptionPublicKey(credentialIssuer));
+            Tracing.inSpan("jwe.encrypt", () -> jweObject.encrypt(rsaEncrypter));
 
             return EncryptedJWT.parse(jweObject.serialize());
         } catch (JOSEException | java.text.ParseException e) {
@@ -0,0 +1,415 @@
+package uk.gov.di.ipv.stub.core.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Spark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Times each request and the phases within it as spans of a trace. The trace is taken from the W3C
+ * {@code traceparent} header when the caller sends one, and is sent on in that header with every
+ * backchannel call, so the spans of one journey line up across the stubs.
+ *
+ * <p>Spans are exported OTLP/JSON encoded, either appended to a file or posted to an OTLP/HTTP
+ * collector. They are queued and exported in batches by one thread, so a request only pays for the
+ * enqueue, and are dropped rather than blocking the request when the queue is full.
+ */
+public class Tracing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Tracing.class);
+
+    public static final String TRACEPARENT = "traceparent";
+
+    private static final Pattern TRACEPARENT_FORMAT =
+            Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+    private static final String SERVER_SPAN = Tracing.class.getName() + ".span";
+    private static final long EPOCH_OFFSET_NANOS =
+            System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+    private static final int INTERNAL = 1;
+    private static final int SERVER = 2;
+    private static final int MAX_BATCH = 512;
+
+    private record Context(String traceId, String spanId) {
+        String traceparent() {
+            return "00-" + traceId + "-" + spanId + "-01";
+        }
+    }
+
+    private static final ThreadLocal<Context> current = new ThreadLocal<>();
+    private static volatile Exporter exporter;
+
+    /** A phase being timed. Closing it ends the span and makes its parent current again. */
+    public static class Span implements AutoCloseable {
+        private final Context context;
+        private final Context parent;
+        private final String parentSpanId;
+        private final String name;
+        private final int kind;
+        private final long startNanos;
+        private final Map<String, String> attributes = new LinkedHashMap<>(4);
+        private long endNanos;
+        private boolean error;
+
+        private Span(Context context, Context parent, String parentSpanId, String name, int kind) {
+            this.context = context;
+            this.parent = parent;
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.kind = kind;
+            this.startNanos = System.nanoTime();
+        }
+
+        public Span attribute(String key, String value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        public void error() {
+            error = true;
+        }
+
+        @Override
+        public void close() {
+            endNanos = System.nanoTime();
+            if (parent == null) {
+                current.remove();
+            } else {
+                current.set(parent);
+            }
+            Exporter spans = exporter;
+            if (spans != null) {
+                spans.add(this);
+            }
+        }
+    }
+
+    /** Adds the filters that start and end a span for every request, and exports the spans. */
+    public static void install(String serviceName, String export, int bufferSize) {
+        exportTo(serviceName, export, bufferSize);
+        Spark.before(Tracing::startRequest);
+        Spark.afterAfter(Tracing::endRequest);
+    }
+
+    /**
+     * Exports spans to {@code export} when it's an {@code http(s)://} OTLP endpoint or a file path,
+     * and not at all when it's {@code off}. The trace header is passed on either way.
+     */
+    public static void exportTo(String serviceName, String export, int bufferSize) {
+        if (!"off".equals(export)) {
+            exporter = new Exporter(serviceName, export, bufferSize);
+        }
+    }
+
+    /** Starts a span as a child of the current one, or as a new trace if there is none. */
+    public static Span start(String name) {
+        return start(name, INTERNAL, current.get());
+    }
+
+    private static Span start(String name, int kind, Context parent) {
+        return start(
+                name,
+                kind,
+                parent,
+                parent == null ? newId(16) : parent.traceId(),
+                parent == null ? null : parent.spanId());
+    }
+
+    private static Span start(
+            String name, int kind, Context parent, String traceId, String parentSpanId) {
+        Context context = new Context(traceId, newId(8));
+        current.set(context);
+        return new Span(context, parent, parentSpanId, name, kind);
+    }
+
+    /** A task to time in a span, returning a value. */
+    public interface SpanCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /** A task to time in a span. */
+    public interface SpanTask<E extends Exception> {
+        void run() throws E;
+    }
+
+    /** Runs the task in a span of its own, marked as an error if the task throws. */
+    public static <T, E extends Exception> T inSpan(String name, SpanCall<T, E> task) throws E {
+        Span span = start(name);
+        try {
+            return task.call();
+        } catch (Throwable t) {
+            span.error();
+            throw t;
+        } finally {
+            span.close();
+        }
+    }
+
+    /** Runs the task in a span of its own, marked as an error if the task throws. */
+    public static <E extends Exception> void inSpan(String name, SpanTask<E> task) throws E {
+        inSpan(
+                name,
+                () -> {
+                    task.run();
+                    return null;
+                });
+    }
+
+    /** The header to send on an outgoing call, or null outside any trace. */
+    public static String traceparent() {
+        Context context = current.get();
+        return context == null ? null : context.traceparent();
+    }
+
+    /** Wraps a task to run on another thread as part of the current trace. */
+    public static <T> Supplier<T> inCurrentTrace(Supplier<T> task) {
+        Context context = current.get();
+        return () -> {
+            Context previous = current.get();
+            current.set(context);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    private static void startRequest(Request request, Response response) {
+        Matcher traceparent = TRACEPARENT_FORMAT.matcher(nullToEmpty(request.headers(TRACEPARENT)));
+        String name = request.requestMethod() + " " + request.pathInfo();
+        Span span =
+                traceparent.matches()
+                        ? start(name, SERVER, null, traceparent.group(1), traceparent.group(2))
+                        : start(name, SERVER, null);
+        span.attribute("http.method", request.requestMethod())
+                .attribute("http.target", request.pathInfo());
+        request.attribute(SERVER_SPAN, span);
+        response.header(TRACEPARENT, span.context.traceparent());
+    }
+
+    /** Runs however the request ended, including when it was halted or failed. */
+    private static void endRequest(Request request, Response response) {
+        Span span = request.attribute(SERVER_SPAN);
+        if (span == null) {
+            return;
+        }
+        int status = response.raw().getStatus();
+        span.attribute("http.status_code", Integer.toString(status));
+        if (status >= 500) {
+            span.error();
+        }
+        span.close();
+    }
+
+    private static String newId(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder id = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i += 8) {
+            String hex = Long.toHexString(random.nextLong());
+            id.append("0".repeat(16 - hex.length())).append(hex);
+        }
+        return id.toString();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static class Exporter {
+        private final String serviceName;
+        private final URI endpoint;
+        private final BufferedWriter file;
+        private final HttpClient client;
+        private final BlockingQueue<Span> buffer;
+        private final LongAdder dropped = new LongAdder();
+
+        Exporter(String serviceName, String export, int bufferSize) {
+            this.serviceName = serviceName;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            if (export.startsWith("http://") || export.startsWith("https://")) {
+                this.endpoint = URI.create(export);
+                this.file = null;
+                this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            } else {
+                try {
+                    this.file =
+                            Files.newBufferedWriter(
+                                    Path.of(export),
+                                    StandardCharsets.UTF_8,
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open trace file " + export, e);
+                }
+                this.endpoint = null;
+                this.client = null;
+            }
+
+            Thread writer = new Thread(this::drain, "trace-exporter");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+            LOGGER.info("Exporting {} spans to {}", serviceName, export);
+        }
+
+        void add(Span span) {
+            if (!buffer.offer(span)) {
+                dropped.increment();
+            }
+        }
+
+        private void drain() {
+            List<Span> batch = new ArrayList<>();
+            while (true) {
+                try {
+                    batch.add(buffer.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                buffer.drainTo(batch, MAX_BATCH - 1);
+                export(batch);
+                batch.clear();
+
+                long lost = dropped.sumThenReset();
+                if (lost > 0) {
+                    LOGGER.warn("Dropped {} spans, buffer full", lost);
+                }
+            }
+        }
+
+        private void flush() {
+            List<Span> remaining = new ArrayList<>();
+            buffer.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                export(remaining);
+            }
+        }
+
+        private synchronized void export(List<Span> batch) {
+            String json = toOtlpJson(batch);
+            try {
+                if (file != null) {
+                    file.write(json);
+                    file.newLine();
+                    file.flush();
+                } else {
+                    HttpResponse<Void> response =
+                            client.send(
+                                    HttpRequest.newBuilder(endpoint)
+                                            .header("Content-Type", "application/json")
+                                            .timeout(Duration.ofSeconds(10))
+                                            .POST(HttpRequest.BodyPublishers.ofString(json))
+                                            .build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() >= 300) {
+                        LOGGER.warn(
+                                "Collector rejected {} spans with {}",
+                                batch.size(),
+                                response.statusCode());
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to export {} spans", batch.size(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** One OTLP ExportTraceServiceRequest, the same as a collector's file exporter writes. */
+        private String toOtlpJson(List<Span> batch) {
+            StringBuilder json = new StringBuilder(300 * batch.size());
+            json.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+            attribute(json, "service.name", serviceName);
+            json.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"di-ipv-stubs\"},\"spans\":[");
+            for (int i = 0; i < batch.size(); i++) {
+                Span span = batch.get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"traceId\":\"").append(span.context.traceId());
+                json.append("\",\"spanId\":\"").append(span.context.spanId());
+                if (span.parentSpanId != null) {
+                    json.append("\",\"parentSpanId\":\"").append(span.parentSpanId);
+                }
+                json.append("\",\"name\":");
+                string(json, span.name);
+                json.append(",\"kind\":").append(span.kind);
+                json.append(",\"startTimeUnixNano\":\"")
+                        .append(span.startNanos + EPOCH_OFFSET_NANOS);
+                json.append("\",\"endTimeUnixNano\":\"").append(span.endNanos + EPOCH_OFFSET_NANOS);
+                json.append("\",\"attributes\":[");
+                boolean first = true;
+                for (Map.Entry<String, String> attribute : span.attributes.entrySet()) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    attribute(json, attribute.getKey(), attribute.getValue());
+                    first = false;
+                }
+                json.append(']');
+                if (span.error) {
+                    json.append(",\"status\":{\"code\":2}");
+                }
+                json.append('}');
+            }
+            return json.append("]}]}]}").toString();
+        }
+
+        private static void attribute(StringBuilder json, String key, String value) {
+            json.append("{\"key\":");
+            string(json, key);
+            json.append(",\"value\":{\"stringValue\":");
+            string(json, value);
+            json.append("}}");
+        }
+
+        private static void string(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package uk.gov.di.ipv.stub.core.config.credentialissuer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CredentialIssuerRegistryTest {
+    @TempDir Path dir;
+
+    @Test
+    void shouldFindLoadedCredentialIssuersById() throws Exception {
+        Path config = write("passport", "address");
+        CredentialIssuerRegistry registry = new CredentialIssuerRegistry(config);
+
+        registry.load();
+
+        assertEquals(List.of("passport", "address"), ids(registry));
+        CredentialIssuer passport = registry.find("passport").orElseThrow();
+        assertEquals("passport name", passport.name());
+        assertEquals(URI.create("https://passport.example/token"), passport.tokenUrl());
+        assertTrue(registry.find("unknown").isEmpty());
+    }
+
+    @Test
+    void shouldReloadWhenTheFileChanges() throws Exception {
+        Path config = write("passport");
+        CredentialIssuerRegistry registry = new CredentialIssuerRegistry(config);
+        registry.load();
+
+        registry.watch();
+        write("passport", "fraud");
+
+        await(() -> ids(registry).equals(List.of("passport", "fraud")));
+        assertEquals("fraud name", registry.find("fraud").orElseThrow().name());
+    }
+
+    @Test
+    void shouldKeepThePreviousConfigWhenTheNewFileIsMalformed() throws Exception {
+        Path config = write("passport");
+        CredentialIssuerRegistry registry = new CredentialIssuerRegistry(config);
+        registry.load();
+        registry.watch();
+
+        Files.writeString(config, "credentialIssuerConfigs: [ {id: unterminated");
+        assertThrows(Exception.class, registry::load);
+        Thread.sleep(500);
+        assertEquals(List.of("passport"), ids(registry));
+
+        // The watcher is still running after the failed reload
+        write("passport", "kbv");
+        await(() -> ids(registry).equals(List.of("passport", "kbv")));
+    }
+
+    @Test
+    void shouldRejectDuplicateIdsAndKeepThePreviousConfig() throws Exception {
+        Path config = write("passport");
+        CredentialIssuerRegistry registry = new CredentialIssuerRegistry(config);
+        registry.load();
+
+        write("fraud", "fraud");
+
+        assertThrows(IllegalStateException.class, registry::load);
+        assertEquals(List.of("passport"), ids(registry));
+        assertTrue(registry.find("fraud").isEmpty());
+    }
+
+    private Path write(String... ids) throws Exception {
+        StringBuilder yaml = new StringBuilder("credentialIssuerConfigs:\n");
+        for (String id : ids) {
+            yaml.append("  - id: ").append(id).append('\n');
+            yaml.append("    name: ").append(id).append(" name\n");
+            for (String url : List.of("authorizeUrl", "tokenUrl", "credentialUrl", "audience")) {
+                String path = url.replace("Url", "");
+                yaml.append("    %s: https://%s.example/%s\n".formatted(url, id, path));
+            }
+        }
+        Path config = dir.resolve("cris.yaml");
+        Files.writeString(config, yaml);
+        return config;
+    }
+
+    private static List<String> ids(CredentialIssuerRegistry registry) {
+        return registry.all().stream().map(CredentialIssuer::id).toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && !condition.getAsBoolean(); attempt++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean(), "Config was not reloaded");
+    }
+}
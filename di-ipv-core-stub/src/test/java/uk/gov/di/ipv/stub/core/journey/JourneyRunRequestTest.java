@@ -0,0 +1,118 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JourneyRunRequestTest {
+
+    @Test
+    void shouldParseTheRunParameters() {
+        JourneyRunRequest request =
+                parse(
+                        Map.of(
+                                "cri", "passport",
+                                "concurrency", "10",
+                                "journeys", "500",
+                                "rows", "3, 7,10-12",
+                                "userAgent", "redirect",
+                                "form", "strengthScore=3"));
+
+        assertEquals("passport", request.criId());
+        assertEquals(10, request.concurrency());
+        assertEquals(500, request.journeys());
+        assertEquals(List.of(3, 7, 10, 11, 12), request.rowNumbers());
+        assertEquals("redirect", request.userAgent());
+        assertEquals("strengthScore=3", request.formFields());
+    }
+
+    @Test
+    void shouldDefaultToOneJourneyAtATimeWithTheFormUserAgent() {
+        JourneyRunRequest request = parse(Map.of("cri", "passport", "rows", "3"));
+
+        assertEquals(1, request.concurrency());
+        assertEquals(1, request.journeys());
+        assertEquals(List.of(3), request.rowNumbers());
+        assertEquals("form", request.userAgent());
+        assertNull(request.formFields());
+    }
+
+    @Test
+    void shouldParseCommandLineArguments() {
+        JourneyRunRequest request =
+                JourneyRunRequest.parse(
+                        new String[] {"--cri=passport", "--rows=3-4", "--form=a=b", "ignored"});
+
+        assertEquals("passport", request.criId());
+        assertEquals(List.of(3, 4), request.rowNumbers());
+        assertEquals("a=b", request.formFields());
+    }
+
+    @Test
+    void shouldRejectMissingParameters() {
+        assertRejected("cri required", Map.of("rows", "3"));
+        assertRejected("rows required", Map.of("cri", "passport"));
+        assertRejected("rows required", Map.of("cri", "passport", "rows", " "));
+    }
+
+    @Test
+    void shouldRejectConcurrencyOutOfRange() {
+        assertRejected(
+                "concurrency must be between 1 and 200",
+                Map.of("cri", "passport", "rows", "3", "concurrency", "0"));
+        assertRejected(
+                "concurrency must be between 1 and 200",
+                Map.of("cri", "passport", "rows", "3", "concurrency", "201"));
+        assertRejected(
+                "concurrency must be a number",
+                Map.of("cri", "passport", "rows", "3", "concurrency", "lots"));
+        assertRejected(
+                "journeys must be between 1 and 1000000",
+                Map.of("cri", "passport", "rows", "3", "journeys", "-1"));
+        assertRejected(
+                "journeys must be between 1 and 1000000",
+                Map.of("cri", "passport", "rows", "3", "journeys", "2000000000"));
+    }
+
+    @Test
+    void shouldRejectUnknownUserAgents() {
+        assertRejected(
+                "userAgent must be one of form, redirect",
+                Map.of("cri", "passport", "rows", "3", "userAgent", "curl"));
+    }
+
+    @Test
+    void shouldRejectTooManyOrInvalidRows() {
+        assertEquals(
+                JourneyRunRequest.MAX_ROWS,
+                parse(Map.of("cri", "passport", "rows", "1-10000")).rowNumbers().size());
+
+        assertRejected(
+                "at most 10000 rows in '1-10001'", Map.of("cri", "passport", "rows", "1-10001"));
+        assertRejected(
+                "at most 10000 rows in '1-5000,6000-11000'",
+                Map.of("cri", "passport", "rows", "1-5000,6000-11000"));
+        assertRejected(
+                "at most 10000 rows in '0-2147483647'",
+                Map.of("cri", "passport", "rows", "0-2147483647"));
+        assertRejected("invalid rows '10-3'", Map.of("cri", "passport", "rows", "10-3"));
+        assertRejected("invalid rows '1-2-3'", Map.of("cri", "passport", "rows", "1-2-3"));
+        assertRejected("invalid rows 'x'", Map.of("cri", "passport", "rows", "x"));
+        assertRejected("no row numbers in ','", Map.of("cri", "passport", "rows", ","));
+    }
+
+    private static JourneyRunRequest parse(Map<String, String> params) {
+        return JourneyRunRequest.parse(params::get);
+    }
+
+    private static void assertRejected(String message, Map<String, String> params) {
+        IllegalArgumentException e =
+                assertThrows(IllegalArgumentException.class, () -> parse(params));
+        assertEquals(message, e.getMessage());
+    }
+}
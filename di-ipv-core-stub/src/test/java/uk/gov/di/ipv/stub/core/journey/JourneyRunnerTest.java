@@ -0,0 +1,182 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.oauth2.sdk.AuthorizationCode;
+import com.nimbusds.oauth2.sdk.AuthorizationRequest;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.oauth2.sdk.token.AccessToken;
+import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import org.junit.jupiter.api.Test;
+import uk.gov.di.ipv.stub.core.config.credentialissuer.CredentialIssuer;
+import uk.gov.di.ipv.stub.core.config.uatuser.SharedClaims;
+import uk.gov.di.ipv.stub.core.utils.HandlerHelper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JourneyRunnerTest {
+    private static final URI AUTHORIZE_URL = URI.create("https://cri.example/authorize");
+    private static final CredentialIssuer CREDENTIAL_ISSUER =
+            new CredentialIssuer(
+                    "passport",
+                    "Passport",
+                    AUTHORIZE_URL,
+                    URI.create("https://cri.example/token"),
+                    URI.create("https://cri.example/credential"),
+                    URI.create("https://cri.example"),
+                    false,
+                    "ES256",
+                    null,
+                    null,
+                    null);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger authorizeCalls = new AtomicInteger();
+
+    @Test
+    void shouldRunEveryJourneyAndReportEachPhase() throws Exception {
+        List<String> reports = new ArrayList<>();
+        List<String> userAgentArguments = new ArrayList<>();
+        JourneyRunner runner =
+                new JourneyRunner(
+                        new StubbedHandlerHelper(),
+                        (name, formFields) -> {
+                            userAgentArguments.add(name);
+                            userAgentArguments.add(formFields);
+                            return this::authorize;
+                        });
+
+        runner.run(
+                new JourneyRunRequest("passport", 4, 20, List.of(3, 4), "form", "score=2"),
+                reports::add);
+
+        assertEquals(List.of("form", "score=2"), userAgentArguments);
+        assertEquals(20, authorizeCalls.get());
+        assertTrue(maxInFlight.get() <= 4, "more than 4 journeys ran at once");
+
+        List<String> lines = reports.get(reports.size() - 1).lines().toList();
+        assertTrue(lines.get(0).endsWith("completed=16 failed=4 of 20"), lines.get(0));
+        assertTrue(lines.get(1).startsWith("jar        count=20 errors=0 "), lines.get(1));
+        assertTrue(lines.get(2).startsWith("authorize  count=16 errors=4 mean="), lines.get(2));
+        assertTrue(
+                lines.get(2).endsWith("lastError=\"IOException: connection refused\""),
+                lines.get(2));
+        assertTrue(lines.get(3).startsWith("token      count=16 errors=0 "), lines.get(3));
+        assertTrue(lines.get(4).startsWith("credential count=16 errors=0 "), lines.get(4));
+        assertTrue(lines.get(5).startsWith("journey    count=16 errors=0 "), lines.get(5));
+    }
+
+    @Test
+    void shouldStopTheJourneysInFlightWhenProgressCannotBeReported() throws Exception {
+        JourneyRunner runner =
+                new JourneyRunner(
+                        new StubbedHandlerHelper(), (name, formFields) -> this::authorize);
+
+        assertThrows(
+                UncheckedIOException.class,
+                () ->
+                        runner.run(
+                                new JourneyRunRequest(
+                                        "passport", 4, 1_000_000, List.of(3), "form", null),
+                                report -> {
+                                    throw new UncheckedIOException(
+                                            new IOException("client disconnected"));
+                                }));
+
+        Thread.sleep(100);
+        int calls = authorizeCalls.get();
+        Thread.sleep(200);
+        assertEquals(calls, authorizeCalls.get());
+        assertEquals(0, inFlight.get());
+    }
+
+    /** Fails every fifth authorization, and otherwise calls back with the request's state. */
+    private URI authorize(URI authorizationRequest) throws IOException, InterruptedException {
+        int running = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(running, Math::max);
+        try {
+            Thread.sleep(5);
+            if (authorizeCalls.incrementAndGet() % 5 == 0) {
+                throw new IOException("connection refused");
+            }
+            State state = AuthorizationRequest.parse(authorizationRequest).getState();
+            return URI.create("http://localhost/callback?code=code&state=" + state.getValue());
+        } catch (ParseException e) {
+            throw new IOException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /** Answers the backchannel calls locally, without the config or a credential issuer. */
+    private static class StubbedHandlerHelper extends HandlerHelper {
+        private final ECKey signingKey;
+
+        StubbedHandlerHelper() throws Exception {
+            this(new ECKeyGenerator(Curve.P_256).generate());
+        }
+
+        private StubbedHandlerHelper(ECKey signingKey) {
+            super(signingKey);
+            this.signingKey = signingKey;
+        }
+
+        @Override
+        public CredentialIssuer findCredentialIssuer(String credentialIssuerId) {
+            assertEquals("passport", credentialIssuerId);
+            return CREDENTIAL_ISSUER;
+        }
+
+        @Override
+        public AuthorizationRequest createAuthorizationJAR(
+                State state, CredentialIssuer credentialIssuer, SharedClaims sharedClaims) {
+            return new AuthorizationRequest.Builder(ResponseType.CODE, new ClientID("core"))
+                    .state(state)
+                    .endpointURI(credentialIssuer.authorizeUrl())
+                    .build();
+        }
+
+        @Override
+        public AccessToken exchangeCodeForToken(
+                AuthorizationCode authorizationCode,
+                CredentialIssuer credentialIssuer,
+                State state) {
+            assertEquals("code", authorizationCode.getValue());
+            return new BearerAccessToken();
+        }
+
+        @Override
+        public String getUserInfo(
+                AccessToken accessToken, CredentialIssuer credentialIssuer, State state) {
+            try {
+                SignedJWT vc =
+                        new SignedJWT(
+                                new JWSHeader(JWSAlgorithm.ES256),
+                                new JWTClaimsSet.Builder().issuer("passport").build());
+                vc.sign(new ECDSASigner(signingKey));
+                return vc.serialize();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
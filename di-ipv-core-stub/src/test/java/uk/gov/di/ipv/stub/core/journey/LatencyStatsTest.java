@@ -0,0 +1,64 @@
+package uk.gov.di.ipv.stub.core.journey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyStatsTest {
+
+    @Test
+    void shouldReportExactPercentiles() {
+        LatencyStats stats = new LatencyStats("token");
+        // Recorded out of order, and more than the initial sample buffer holds
+        for (int i = 2000; i >= 1; i--) {
+            stats.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(
+                "token      count=2000 errors=0 mean=1000.5ms p50=1000ms p95=1900ms p99=1980ms max=2000ms",
+                stats.report());
+    }
+
+    @Test
+    void shouldReportASingleSampleAsEveryPercentile() {
+        LatencyStats stats = new LatencyStats("jar");
+        stats.record(TimeUnit.MILLISECONDS.toNanos(7));
+
+        assertEquals(
+                "jar        count=1 errors=0 mean=7.0ms p50=7ms p95=7ms p99=7ms max=7ms",
+                stats.report());
+    }
+
+    @Test
+    void shouldKeepABoundedSampleOfLongRuns() {
+        LatencyStats stats = new LatencyStats("journey");
+        for (int i = 1; i <= 200_000; i++) {
+            stats.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        String report = stats.report();
+        assertTrue(
+                report.startsWith("journey    count=200000 errors=0 mean=100000.5ms p50="), report);
+        assertTrue(report.endsWith(" max=200000ms"), report);
+        // Estimated from the sample, which is uniform over the whole run
+        Matcher p50 = Pattern.compile("p50=(\\d+)ms").matcher(report);
+        assertTrue(p50.find(), report);
+        assertEquals(100_000, Integer.parseInt(p50.group(1)), 5_000, report);
+    }
+
+    @Test
+    void shouldReportErrorsWithTheLastOne() {
+        LatencyStats stats = new LatencyStats("credential");
+        stats.recordError(new IllegalStateException("first"));
+        stats.recordError(new IllegalStateException("token request failed"));
+
+        assertEquals(
+                "credential count=0 errors=2 lastError=\"IllegalStateException: token request failed\"",
+                stats.report());
+    }
+}
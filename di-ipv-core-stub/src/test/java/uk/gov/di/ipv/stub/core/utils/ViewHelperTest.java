@@ -0,0 +1,56 @@
+package uk.gov.di.ipv.stub.core.utils;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import spark.ModelAndView;
+import spark.template.mustache.MustacheTemplateEngine;
+import uk.gov.di.ipv.stub.core.config.uatuser.DisplayIdentity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ViewHelperTest {
+
+    @BeforeAll
+    static void setup() throws Exception {
+        ViewHelper.init(false);
+    }
+
+    @Test
+    void shouldRenderSearchResultsWithMaxRowsLikeTheTemplateEngine() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("cri", "stub-cri");
+        model.put("criName", "Stub CRI");
+        model.put(
+                "identities",
+                IntStream.range(0, 200)
+                        .mapToObj(i -> new DisplayIdentity(i + 3, "FIRST LAST " + i, i % 4))
+                        .toList());
+
+        assertRendersLikeTheTemplateEngine("search-results.mustache", model);
+    }
+
+    @Test
+    void shouldRenderUserInfoLikeTheTemplateEngine() {
+        StringBuilder data = new StringBuilder("{\n");
+        for (int i = 0; i < 500; i++) {
+            data.append("  \"claim").append(i).append("\": \"<value & ").append(i).append(">\",\n");
+        }
+        data.append("}");
+        Map<String, Object> model =
+                Map.of("cri", "stub-cri", "criName", "Stub CRI", "data", data.toString());
+
+        assertRendersLikeTheTemplateEngine("userinfo.mustache", model);
+    }
+
+    private static void assertRendersLikeTheTemplateEngine(
+            String template, Map<String, Object> model) {
+        String expected = new MustacheTemplateEngine().render(new ModelAndView(model, template));
+        assertEquals(expected, ViewHelper.render(model, template));
+        // A second render comes from the precompiled template
+        assertEquals(expected, ViewHelper.render(model, template));
+    }
+}
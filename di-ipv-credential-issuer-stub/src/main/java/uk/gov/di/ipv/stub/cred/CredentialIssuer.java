@@ -1,28 +1,72 @@
 package uk.gov.di.ipv.stub.cred;
 
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSADecrypter;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
 import spark.Spark;
 import uk.gov.di.ipv.stub.cred.auth.ClientJwtVerifier;
 import uk.gov.di.ipv.stub.cred.config.CredentialIssuerConfig;
+import uk.gov.di.ipv.stub.cred.handlers.AdmissionControl;
 import uk.gov.di.ipv.stub.cred.handlers.AuthorizeHandler;
+import uk.gov.di.ipv.stub.cred.domain.Credential;
 import uk.gov.di.ipv.stub.cred.handlers.CredentialHandler;
 import uk.gov.di.ipv.stub.cred.handlers.TokenHandler;
+import uk.gov.di.ipv.stub.cred.handlers.WarmUp;
 import uk.gov.di.ipv.stub.cred.service.AuthCodeService;
 import uk.gov.di.ipv.stub.cred.service.CredentialService;
 import uk.gov.di.ipv.stub.cred.service.RequestedErrorResponseService;
 import uk.gov.di.ipv.stub.cred.service.TokenService;
+import uk.gov.di.ipv.stub.cred.utils.ES256SignatureVerifier;
+import uk.gov.di.ipv.stub.cred.utils.StaticAssets;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 import uk.gov.di.ipv.stub.cred.utils.ViewHelper;
 import uk.gov.di.ipv.stub.cred.validation.Validator;
 import uk.gov.di.ipv.stub.cred.vc.VerifiableCredentialGenerator;
 
+import java.io.IOException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Map;
+
 public class CredentialIssuer {
 
     private final AuthorizeHandler authorizeHandler;
     private final TokenHandler tokenHandler;
     private final CredentialHandler credentialHandler;
+    private final AdmissionControl admissionControl;
+    private final WarmUp warmUp;
+    private final StaticAssets staticAssets;
+
+    public CredentialIssuer() throws IOException, JOSEException {
+        ViewHelper viewHelper = new ViewHelper();
+        viewHelper.init(CredentialIssuerConfig.RELOAD_TEMPLATES);
 
-    public CredentialIssuer() {
-        Spark.staticFileLocation("/public");
         Spark.port(Integer.parseInt(CredentialIssuerConfig.PORT));
+        Tracing.install(
+                CredentialIssuerConfig.TRACE_SERVICE_NAME,
+                CredentialIssuerConfig.TRACE_EXPORT,
+                Integer.parseInt(CredentialIssuerConfig.TRACE_BUFFER_SIZE));
+
+        admissionControl = AdmissionControl.fromConfig();
+        admissionControl.install();
+
+        staticAssets = StaticAssets.load("/public");
+        admissionControl.exempt(staticAssets.paths());
 
         AuthCodeService authCodeService = new AuthCodeService();
         TokenService tokenService = new TokenService();
@@ -35,7 +79,7 @@ public class CredentialIssuer {
 
         authorizeHandler =
                 new AuthorizeHandler(
-                        new ViewHelper(),
+                        viewHelper,
                         authCodeService,
                         credentialService,
                         requestedErrorResponseService);
@@ -47,9 +91,69 @@ public class CredentialIssuer {
                         clientJwtVerifier,
                         requestedErrorResponseService);
         credentialHandler = new CredentialHandler(credentialService, tokenService, vcGenerator);
+        warmUp = warmUp(viewHelper, vcGenerator);
 
         initRoutes();
         initErrorMapping();
+        warmUp.start();
+    }
+
+    /**
+     * Signs a synthetic VC, verifies an ES256 signature, decrypts a JWE with the first client's key
+     * and renders the authorize page.
+     */
+    private static WarmUp warmUp(ViewHelper viewHelper, VerifiableCredentialGenerator vcGenerator)
+            throws JOSEException {
+        ECKey signingKey = new ECKeyGenerator(Curve.P_256).generate();
+        SignedJWT signed =
+                new SignedJWT(
+                        new JWSHeader(JWSAlgorithm.ES256),
+                        new JWTClaimsSet.Builder().subject("warm-up").build());
+        signed.sign(new ECDSASigner(signingKey));
+        String publicJwk = signingKey.toPublicJWK().toJSONString();
+        ES256SignatureVerifier verifier = new ES256SignatureVerifier();
+
+        return WarmUp.fromConfig()
+                .step(
+                        "vc sign",
+                        () -> {
+                            String clientId =
+                                    CredentialIssuerConfig.getClientConfigs()
+                                            .keySet()
+                                            .iterator()
+                                            .next();
+                            vcGenerator.generate(
+                                    new Credential(Map.of(), Map.of(), "warm-up", clientId));
+                        })
+                .step("signature verify", () -> verifier.valid(signed, publicJwk))
+                .step(
+                        "jwe decrypt",
+                        () -> {
+                            RSAPrivateCrtKey privateKey =
+                                    (RSAPrivateCrtKey)
+                                            CredentialIssuerConfig.getClientConfigs()
+                                                    .values()
+                                                    .iterator()
+                                                    .next()
+                                                    .getEncryptionPrivateKey();
+                            RSAPublicKey publicKey =
+                                    (RSAPublicKey)
+                                            KeyFactory.getInstance("RSA")
+                                                    .generatePublic(
+                                                            new RSAPublicKeySpec(
+                                                                    privateKey.getModulus(),
+                                                                    privateKey
+                                                                            .getPublicExponent()));
+                            JWEObject jwe =
+                                    new JWEObject(
+                                            new JWEHeader(
+                                                    JWEAlgorithm.RSA_OAEP_256,
+                                                    EncryptionMethod.A256GCM),
+                                            new Payload(signed));
+                            jwe.encrypt(new RSAEncrypter(publicKey));
+                            JWEObject.parse(jwe.serialize()).decrypt(new RSADecrypter(privateKey));
+                        })
+                .step("templates", () -> viewHelper.render(Map.of(), "authorize.mustache"));
     }
 
     private void initRoutes() {
@@ -57,6 +161,9 @@ public class CredentialIssuer {
         Spark.post("/authorize", authorizeHandler.generateResponse);
         Spark.post("/token", tokenHandler.issueAccessToken);
         Spark.post("/credentials/issue", credentialHandler.getResource);
+        Spark.get("/metrics", admissionControl.getMetrics);
+        Spark.get("/ready", warmUp.getReady);
+        staticAssets.install();
     }
 
     private void initErrorMapping() {
@@ -12,6 +12,7 @@ import uk.gov.di.ipv.stub.cred.config.ClientConfig;
 import uk.gov.di.ipv.stub.cred.config.CredentialIssuerConfig;
 import uk.gov.di.ipv.stub.cred.error.ClientAuthenticationException;
 import uk.gov.di.ipv.stub.cred.utils.ES256SignatureVerifier;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -66,11 +67,16 @@ public class ClientJwtVerifier {
             } else {
                 concatSignatureAuthJwt = authenticationJwt;
             }
-            clientAuthVerifier.verify(concatSignatureAuthJwt, null, null);
-        } catch (InvalidClientException
-                | JOSEException
-                | ParseException
-                | java.text.ParseException e) {
+            Tracing.inSpan("signature.verify", () -> verifySignature(concatSignatureAuthJwt));
+        } catch (JOSEException | ParseException | java.text.ParseException e) {
+            throw new ClientAuthenticationException(e);
+        }
+    }
+
+    private void verifySignature(PrivateKeyJWT authJwt) throws ClientAuthenticationException {
+        try {
+            clientAuthVerifier.verify(authJwt, null, null);
+        } catch (InvalidClientException | JOSEException e) {
             throw new ClientAuthenticationException(e);
         }
     }
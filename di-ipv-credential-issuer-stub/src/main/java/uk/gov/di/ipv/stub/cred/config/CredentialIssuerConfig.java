@@ -12,7 +12,24 @@ public class CredentialIssuerConfig {
     public static final String PORT = getConfigValue("CREDENTIAL_ISSUER_PORT", "8084");
     public static final String NAME =
             getConfigValue("CREDENTIAL_ISSUER_NAME", "Credential Issuer Stub");
+    public static final String LIMITER_MODE = getConfigValue("LIMITER_MODE", "off");
+    public static final String LIMITER_ROUTES = getConfigValue("LIMITER_ROUTES", "*");
+    public static final String LIMITER_LIMIT = getConfigValue("LIMITER_LIMIT", "64");
+    public static final String LIMITER_MAX_LIMIT = getConfigValue("LIMITER_MAX_LIMIT", "512");
+    public static final String LIMITER_LATENCY_TARGET_MILLIS =
+            getConfigValue("LIMITER_LATENCY_TARGET_MILLIS", "500");
+    public static final String LIMITER_QUEUE_TIMEOUT_MILLIS =
+            getConfigValue("LIMITER_QUEUE_TIMEOUT_MILLIS", "0");
+    public static final String LIMITER_RETRY_AFTER_SECONDS =
+            getConfigValue("LIMITER_RETRY_AFTER_SECONDS", "1");
+    public static final String TRACE_EXPORT = getConfigValue("TRACE_EXPORT", "off");
+    public static final String TRACE_BUFFER_SIZE = getConfigValue("TRACE_BUFFER_SIZE", "10000");
+    public static final String TRACE_SERVICE_NAME =
+            getConfigValue("TRACE_SERVICE_NAME", "credential-issuer-stub");
+    public static final String WARM_UP_ITERATIONS = getConfigValue("WARM_UP_ITERATIONS", "50");
     public static final String VC_DEFAULT_TTL = "300";
+    public static final boolean RELOAD_TEMPLATES =
+            Boolean.parseBoolean(getConfigValue("CREDENTIAL_ISSUER_RELOAD_TEMPLATES", "false"));
 
     public static String CLIENT_AUDIENCE = getConfigValue("CLIENT_AUDIENCE", null);
 
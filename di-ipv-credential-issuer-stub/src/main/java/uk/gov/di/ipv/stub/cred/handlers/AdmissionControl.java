@@ -0,0 +1,281 @@
+package uk.gov.di.ipv.stub.cred.handlers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import spark.Spark;
+import uk.gov.di.ipv.stub.cred.config.CredentialIssuerConfig;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caps how many requests the stub works on at once, and turns the rest away straight away with a
+ * 503 and {@code Retry-After} rather than letting them queue in Jetty. Admitted requests then see
+ * the latency of a lightly loaded stub however hard it is being driven.
+ *
+ * <p>The cap is either fixed or adaptive. An adaptive cap grows by one for each full window of fast
+ * requests and shrinks by a tenth, at most once per latency target, while requests are slower than
+ * the target or failing, so it settles at the concurrency the stub can actually serve.
+ *
+ * <p>There is one limiter for the whole stub, or one per path for the paths listed in {@code
+ * LIMITER_ROUTES}. {@code /metrics}, {@code /ready} and the static assets are never limited.
+ */
+public class AdmissionControl {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionControl.class);
+    private static final String ADMITTED = AdmissionControl.class.getName() + ".admitted";
+    private static final String ANY_ROUTE = "*";
+    private static final Set<String> UNLIMITED_PATHS = Set.of("/metrics", "/ready");
+
+    private final Set<String> exemptPaths = ConcurrentHashMap.newKeySet();
+    private final Map<String, Limiter> limiters;
+    private final long queueTimeoutNanos;
+    private final String retryAfterSeconds;
+    private final LongSupplier nanoClock;
+
+    AdmissionControl(
+            Map<String, Limiter> limiters,
+            long queueTimeoutNanos,
+            String retryAfterSeconds,
+            LongSupplier nanoClock) {
+        this.limiters = limiters;
+        this.queueTimeoutNanos = queueTimeoutNanos;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.nanoClock = nanoClock;
+    }
+
+    /** Builds the limiters set by the {@code LIMITER_} settings, or none if the mode is off. */
+    public static AdmissionControl fromConfig() {
+        String mode = CredentialIssuerConfig.LIMITER_MODE;
+        if (!mode.equals("off") && !mode.equals("fixed") && !mode.equals("adaptive")) {
+            throw new IllegalArgumentException(
+                    "Unknown LIMITER_MODE '%s', expected off, fixed or adaptive".formatted(mode));
+        }
+        String[] routes =
+                Arrays.stream(CredentialIssuerConfig.LIMITER_ROUTES.split(","))
+                        .map(String::trim)
+                        .filter(route -> !route.isEmpty())
+                        .toArray(String[]::new);
+
+        Map<String, Limiter> limiters = new LinkedHashMap<>();
+        if (!mode.equals("off")) {
+            for (String route : routes.length == 0 ? new String[] {ANY_ROUTE} : routes) {
+                limiters.put(
+                        route,
+                        new Limiter(
+                                mode.equals("adaptive"),
+                                Integer.parseInt(CredentialIssuerConfig.LIMITER_LIMIT),
+                                Integer.parseInt(CredentialIssuerConfig.LIMITER_MAX_LIMIT),
+                                TimeUnit.MILLISECONDS.toNanos(
+                                        Long.parseLong(
+                                                CredentialIssuerConfig
+                                                        .LIMITER_LATENCY_TARGET_MILLIS)),
+                                System::nanoTime));
+            }
+            LOGGER.info("Admission control is {} for {}", mode, limiters.keySet());
+        }
+        return new AdmissionControl(
+                limiters,
+                TimeUnit.MILLISECONDS.toNanos(
+                        Long.parseLong(CredentialIssuerConfig.LIMITER_QUEUE_TIMEOUT_MILLIS)),
+                CredentialIssuerConfig.LIMITER_RETRY_AFTER_SECONDS,
+                System::nanoTime);
+    }
+
+    /** Adds the filters that admit and release requests. Must be called before any route. */
+    public void install() {
+        if (limiters.isEmpty()) {
+            return;
+        }
+        Spark.before(this::admit);
+        Spark.afterAfter(this::release);
+    }
+
+    /** Never limits requests for these paths. */
+    public void exempt(Collection<String> paths) {
+        exemptPaths.addAll(paths);
+    }
+
+    private record Admitted(Limiter limiter, long startedNanos) {}
+
+    void admit(Request request, Response response) throws InterruptedException {
+        Limiter limiter = limiterFor(request.pathInfo());
+        if (limiter == null) {
+            return;
+        }
+        if (!limiter.acquire(queueTimeoutNanos)) {
+            response.header("Retry-After", retryAfterSeconds);
+            Spark.halt(503, "Too many requests in flight, retry later");
+        }
+        request.attribute(ADMITTED, new Admitted(limiter, nanoClock.getAsLong()));
+    }
+
+    /** Runs however the request ended, including when it was halted or failed. */
+    void release(Request request, Response response) {
+        Admitted admitted = request.attribute(ADMITTED);
+        if (admitted == null) {
+            return;
+        }
+        admitted.limiter()
+                .release(
+                        nanoClock.getAsLong() - admitted.startedNanos(),
+                        response.raw().getStatus() >= 500);
+    }
+
+    private Limiter limiterFor(String path) {
+        if (UNLIMITED_PATHS.contains(path) || exemptPaths.contains(path)) {
+            return null;
+        }
+        Limiter limiter = limiters.get(path);
+        return limiter != null ? limiter : limiters.get(ANY_ROUTE);
+    }
+
+    /** The state of each limiter, keyed by metric name with the route as a label. */
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        limiters.forEach(
+                (route, limiter) -> {
+                    String label = "{route=\"" + route + "\"}";
+                    Limiter.Snapshot snapshot = limiter.snapshot();
+                    metrics.put("admission_limit" + label, snapshot.limit());
+                    metrics.put("admission_in_flight" + label, snapshot.inFlight());
+                    metrics.put("admission_admitted_total" + label, snapshot.admitted());
+                    metrics.put("admission_rejected_total" + label, snapshot.rejected());
+                    metrics.put("admission_queued_total" + label, snapshot.queued());
+                    metrics.put(
+                            "admission_queue_wait_seconds_sum" + label,
+                            snapshot.queueWaitNanos() / 1e9);
+                });
+        return metrics;
+    }
+
+    public Route getMetrics =
+            (Request request, Response response) -> {
+                response.type("text/plain;version=0.0.4");
+                return metrics().entrySet().stream()
+                        .map(metric -> metric.getKey() + " " + metric.getValue())
+                        .collect(Collectors.joining("\n", "", "\n"));
+            };
+
+    /** A concurrency cap, with the waits and rejections it has caused. */
+    static class Limiter {
+        private static final int MIN_LIMIT = 1;
+        private static final double BACKOFF = 0.9;
+
+        record Snapshot(
+                int limit,
+                int inFlight,
+                long admitted,
+                long rejected,
+                long queued,
+                long queueWaitNanos) {}
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private final boolean adaptive;
+        private final int maxLimit;
+        private final long latencyTargetNanos;
+        private final LongSupplier nanoClock;
+
+        private double limit;
+        private int inFlight;
+        private long lastDecreaseNanos;
+        private long admitted;
+        private long rejected;
+        private long queued;
+        private long queueWaitNanos;
+
+        Limiter(
+                boolean adaptive,
+                int limit,
+                int maxLimit,
+                long latencyTargetNanos,
+                LongSupplier nanoClock) {
+            if (limit < MIN_LIMIT || (adaptive && maxLimit < limit)) {
+                throw new IllegalArgumentException(
+                        "Limiter needs 1 <= limit <= maxLimit, got %d and %d"
+                                .formatted(limit, maxLimit));
+            }
+            this.adaptive = adaptive;
+            this.limit = limit;
+            this.maxLimit = maxLimit;
+            this.latencyTargetNanos = latencyTargetNanos;
+            this.nanoClock = nanoClock;
+            this.lastDecreaseNanos = nanoClock.getAsLong() - latencyTargetNanos;
+        }
+
+        /** Takes a slot, waiting up to the timeout for one to come free. */
+        boolean acquire(long timeoutNanos) throws InterruptedException {
+            lock.lock();
+            try {
+                if (inFlight >= (int) limit) {
+                    if (timeoutNanos <= 0) {
+                        rejected++;
+                        return false;
+                    }
+                    long waitStarted = nanoClock.getAsLong();
+                    long remaining = timeoutNanos;
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            rejected++;
+                            return false;
+                        }
+                        remaining = released.awaitNanos(remaining);
+                    }
+                    queued++;
+                    queueWaitNanos += nanoClock.getAsLong() - waitStarted;
+                }
+                inFlight++;
+                admitted++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Gives back a slot, adjusting an adaptive limit by how the request went. */
+        void release(long latencyNanos, boolean failed) {
+            lock.lock();
+            try {
+                if (adaptive) {
+                    long now = nanoClock.getAsLong();
+                    if (failed || latencyNanos > latencyTargetNanos) {
+                        // Once per target, so one slow burst doesn't collapse the limit
+                        if (now - lastDecreaseNanos >= latencyTargetNanos) {
+                            limit = Math.max(MIN_LIMIT, limit * BACKOFF);
+                            lastDecreaseNanos = now;
+                        }
+                    } else if (inFlight * 2 >= limit) {
+                        // Only grow while the limit is being used, not when traffic is light
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                }
+                inFlight--;
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Snapshot snapshot() {
+            lock.lock();
+            try {
+                return new Snapshot(
+                        (int) limit, inFlight, admitted, rejected, queued, queueWaitNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
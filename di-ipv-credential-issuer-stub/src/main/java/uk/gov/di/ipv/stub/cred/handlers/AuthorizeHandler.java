@@ -36,6 +36,7 @@ import uk.gov.di.ipv.stub.cred.service.AuthCodeService;
 import uk.gov.di.ipv.stub.cred.service.CredentialService;
 import uk.gov.di.ipv.stub.cred.service.RequestedErrorResponseService;
 import uk.gov.di.ipv.stub.cred.utils.ES256SignatureVerifier;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 import uk.gov.di.ipv.stub.cred.utils.ViewHelper;
 import uk.gov.di.ipv.stub.cred.validation.ValidationResult;
 import uk.gov.di.ipv.stub.cred.validation.Validator;
@@ -174,7 +175,7 @@ public class AuthorizeHandler {
 
                 frontendParams.put(CRI_NAME_PARAM, CredentialIssuerConfig.NAME);
 
-                return viewHelper.render(frontendParams, "authorize.mustache");
+                return viewHelper.render(frontendParams, "authorize.mustache", response);
             };
 
     public Route generateResponse =
@@ -528,7 +529,7 @@ public class AuthorizeHandler {
                     JOSEException {
         JWEObject encryptedJweObject = JWEObject.parse(requestParam);
         RSADecrypter rsaDecrypter = new RSADecrypter(encryptionPrivateKey);
-        encryptedJweObject.decrypt(rsaDecrypter);
+        Tracing.inSpan("jwe.decrypt", () -> encryptedJweObject.decrypt(rsaDecrypter));
         return encryptedJweObject;
     }
 
@@ -1,6 +1,7 @@
 package uk.gov.di.ipv.stub.cred.service;
 
 import com.nimbusds.oauth2.sdk.AuthorizationCode;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,9 +16,16 @@ public class AuthCodeService {
     }
 
     public void persist(AuthorizationCode authCode, String resourcePayload, String redirectUrl) {
-        this.authCodes.put(
-                authCode.getValue(),
-                Map.of(RESOURCE_PAYLOAD, resourcePayload, REDIRECT_URL, redirectUrl));
+        Tracing.inSpan(
+                "store.auth-code.persist",
+                () ->
+                        this.authCodes.put(
+                                authCode.getValue(),
+                                Map.of(
+                                        RESOURCE_PAYLOAD,
+                                        resourcePayload,
+                                        REDIRECT_URL,
+                                        redirectUrl)));
     }
 
     public String getPayload(String authCode) {
@@ -29,14 +37,18 @@ public class AuthCodeService {
     }
 
     private String getAuthCodesEntryAttribute(String authCode, String attribute) {
-        Map<String, String> maybeAuthCodesEntry = this.authCodes.get(authCode);
-        if (!(maybeAuthCodesEntry == null)) {
-            return maybeAuthCodesEntry.get(attribute);
-        }
-        return null;
+        return Tracing.inSpan(
+                "store.auth-code.get",
+                () -> {
+                    Map<String, String> maybeAuthCodesEntry = this.authCodes.get(authCode);
+                    if (!(maybeAuthCodesEntry == null)) {
+                        return maybeAuthCodesEntry.get(attribute);
+                    }
+                    return null;
+                });
     }
 
     public void revoke(String authCode) {
-        this.authCodes.remove(authCode);
+        Tracing.inSpan("store.auth-code.revoke", () -> this.authCodes.remove(authCode));
     }
 }
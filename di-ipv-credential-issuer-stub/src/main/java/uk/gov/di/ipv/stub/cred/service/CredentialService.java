@@ -1,6 +1,7 @@
 package uk.gov.di.ipv.stub.cred.service;
 
 import uk.gov.di.ipv.stub.cred.domain.Credential;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -10,10 +11,10 @@ public class CredentialService {
     Map<String, Credential> credentials = new HashMap<>();
 
     public Credential getCredential(String resourceId) {
-        return credentials.get(resourceId);
+        return Tracing.inSpan("store.credential.get", () -> credentials.get(resourceId));
     }
 
     public void persist(Credential credential, String resourceId) {
-        credentials.put(resourceId, credential);
+        Tracing.inSpan("store.credential.persist", () -> credentials.put(resourceId, credential));
     }
 }
@@ -14,6 +14,7 @@ import spark.QueryParamsMap;
 import uk.gov.di.ipv.stub.cred.config.ClientConfig;
 import uk.gov.di.ipv.stub.cred.config.CredentialIssuerConfig;
 import uk.gov.di.ipv.stub.cred.handlers.RequestParamConstants;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.net.URI;
 import java.security.NoSuchAlgorithmException;
@@ -119,7 +120,7 @@ public class RequestedErrorResponseService {
                     JOSEException {
         JWEObject encryptedJweObject = JWEObject.parse(requestParam);
         RSADecrypter rsaDecrypter = new RSADecrypter(encryptionPrivateKey);
-        encryptedJweObject.decrypt(rsaDecrypter);
+        Tracing.inSpan("jwe.decrypt", () -> encryptedJweObject.decrypt(rsaDecrypter));
         return encryptedJweObject;
     }
 }
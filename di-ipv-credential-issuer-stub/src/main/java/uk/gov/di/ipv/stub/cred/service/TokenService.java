@@ -2,6 +2,7 @@ package uk.gov.di.ipv.stub.cred.service;
 
 import com.nimbusds.oauth2.sdk.token.AccessToken;
 import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -16,15 +17,19 @@ public class TokenService {
     }
 
     public void persist(AccessToken accessToken, String resourcePayload) {
-        this.accessTokens.put(accessToken.toAuthorizationHeader(), resourcePayload);
+        Tracing.inSpan(
+                "store.token.persist",
+                () -> this.accessTokens.put(accessToken.toAuthorizationHeader(), resourcePayload));
     }
 
     public String getPayload(String authorizationHeaderValue) {
-        return this.accessTokens.get(authorizationHeaderValue);
+        return Tracing.inSpan(
+                "store.token.get", () -> this.accessTokens.get(authorizationHeaderValue));
     }
 
     public void revoke(String authorizationHeaderValue) {
-        this.accessTokens.remove(authorizationHeaderValue);
+        Tracing.inSpan(
+                "store.token.revoke", () -> this.accessTokens.remove(authorizationHeaderValue));
     }
 
     public AccessToken createBearerAccessToken() {
@@ -16,10 +16,9 @@ public class ES256SignatureVerifier {
             throws JOSEException, ParseException {
         ECKey signingPublicJwk = ECKey.parse(publicJwk);
         ECDSAVerifier ecdsaVerifier = new ECDSAVerifier(signingPublicJwk);
-        if (signatureIsDerFormat(signedJWT)) {
-            return transcodeSignature(signedJWT).verify(ecdsaVerifier);
-        }
-        return signedJWT.verify(ecdsaVerifier);
+        SignedJWT concatSignedJWT =
+                signatureIsDerFormat(signedJWT) ? transcodeSignature(signedJWT) : signedJWT;
+        return Tracing.inSpan("signature.verify", () -> concatSignedJWT.verify(ecdsaVerifier));
     }
 
     public SignedJWT transcodeSignature(SignedJWT signedJWT)
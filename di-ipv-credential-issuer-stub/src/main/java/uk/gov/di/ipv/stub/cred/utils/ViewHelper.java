@@ -1,12 +1,97 @@
 package uk.gov.di.ipv.stub.cred.utils;
 
-import spark.ModelAndView;
-import spark.template.mustache.MustacheTemplateEngine;
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Response;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public class ViewHelper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ViewHelper.class);
+    private static final String TEMPLATE_ROOT = "templates";
+
+    private final MustacheFactory mustacheFactory = new DefaultMustacheFactory(TEMPLATE_ROOT);
+    private volatile boolean reloadTemplates;
+
+    /**
+     * Compiles every template up front. With reloading on, templates are instead compiled afresh on
+     * every render so edits show up without a restart.
+     */
+    public void init(boolean reload) throws IOException {
+        reloadTemplates = reload;
+        List<String> templates = listTemplates();
+        templates.forEach(mustacheFactory::compile);
+        LOGGER.info("✅  compiled {} templates", templates.size());
+    }
+
     public String render(Map model, String templatePath) {
-        return new MustacheTemplateEngine().render(new ModelAndView(model, templatePath));
+        return Tracing.inSpan(
+                "template.render",
+                () -> {
+                    StringWriter writer = new StringWriter();
+                    template(templatePath).execute(writer, model);
+                    return writer.toString();
+                });
+    }
+
+    /** Renders straight into the response body, returning the empty body for the route. */
+    public String render(Map model, String templatePath, Response response) throws IOException {
+        response.type("text/html;charset=utf-8");
+        Writer writer =
+                new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8);
+        Tracing.inSpan(
+                "template.render", () -> template(templatePath).execute(writer, model).flush());
+        return "";
+    }
+
+    private Mustache template(String templatePath) {
+        if (reloadTemplates) {
+            return new DefaultMustacheFactory(TEMPLATE_ROOT).compile(templatePath);
+        }
+        return mustacheFactory.compile(templatePath);
+    }
+
+    private static List<String> listTemplates() throws IOException {
+        URL root = ViewHelper.class.getClassLoader().getResource(TEMPLATE_ROOT);
+        if (root == null) {
+            return List.of();
+        }
+        try {
+            URI uri = root.toURI();
+            if (uri.getScheme().equals("jar")) {
+                try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of())) {
+                    return listTemplates(jar.getPath(TEMPLATE_ROOT));
+                }
+            }
+            return listTemplates(Paths.get(uri));
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<String> listTemplates(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".mustache"))
+                    .toList();
+        }
     }
 }
@@ -9,6 +9,7 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import uk.gov.di.ipv.stub.cred.config.CredentialIssuerConfig;
 import uk.gov.di.ipv.stub.cred.domain.Credential;
+import uk.gov.di.ipv.stub.cred.utils.Tracing;
 
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
@@ -124,7 +125,7 @@ public class VerifiableCredentialGenerator {
                 new JWSHeader.Builder(JWSAlgorithm.ES256).type(JOSEObjectType.JWT).build();
 
         SignedJWT signedJWT = new SignedJWT(jwsHeader, claimsSet);
-        signedJWT.sign(ecdsaSigner);
+        Tracing.inSpan("vc.sign", () -> signedJWT.sign(ecdsaSigner));
 
         return signedJWT;
     }
@@ -127,12 +127,13 @@ class AuthorizeHandlerTest {
         when(mockRequest.queryMap()).thenReturn(validQueryParamsMap);
 
         String renderOutput = "rendered output";
-        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"))).thenReturn(renderOutput);
+        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"), eq(mockResponse)))
+                .thenReturn(renderOutput);
 
         String result = (String) authorizeHandler.doAuthorize.handle(mockRequest, mockResponse);
 
         assertEquals(renderOutput, result);
-        verify(mockViewHelper).render(anyMap(), eq("authorize.mustache"));
+        verify(mockViewHelper).render(anyMap(), eq("authorize.mustache"), eq(mockResponse));
     }
 
     @Test
@@ -147,7 +148,8 @@ class AuthorizeHandlerTest {
         assertEquals(
                 "redirect_uri param provided does not match any of the redirect_uri values configured",
                 result);
-        verify(mockViewHelper, never()).render(Collections.emptyMap(), "authorize.mustache");
+        verify(mockViewHelper, never())
+                .render(Collections.emptyMap(), "authorize.mustache", mockResponse);
         verify(mockResponse).status(HttpServletResponse.SC_BAD_REQUEST);
     }
 
@@ -212,7 +214,8 @@ class AuthorizeHandlerTest {
         when(mockRequest.queryMap()).thenReturn(queryParamsMap);
 
         String renderOutput = "rendered output";
-        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"))).thenReturn(renderOutput);
+        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"), eq(mockResponse)))
+                .thenReturn(renderOutput);
 
         String result = (String) authorizeHandler.doAuthorize.handle(mockRequest, mockResponse);
 
@@ -220,7 +223,8 @@ class AuthorizeHandlerTest {
 
         ArgumentCaptor<Map<String, Object>> frontendParamsCaptor =
                 ArgumentCaptor.forClass(Map.class);
-        verify(mockViewHelper).render(frontendParamsCaptor.capture(), eq("authorize.mustache"));
+        verify(mockViewHelper)
+                .render(frontendParamsCaptor.capture(), eq("authorize.mustache"), eq(mockResponse));
 
         assertTrue(
                 Boolean.parseBoolean(
@@ -241,7 +245,8 @@ class AuthorizeHandlerTest {
         when(mockRequest.queryMap()).thenReturn(queryParamsMap);
 
         String renderOutput = "rendered output";
-        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"))).thenReturn(renderOutput);
+        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"), eq(mockResponse)))
+                .thenReturn(renderOutput);
 
         String result = (String) authorizeHandler.doAuthorize.handle(mockRequest, mockResponse);
 
@@ -249,7 +254,8 @@ class AuthorizeHandlerTest {
 
         ArgumentCaptor<Map<String, Object>> frontendParamsCaptor =
                 ArgumentCaptor.forClass(Map.class);
-        verify(mockViewHelper).render(frontendParamsCaptor.capture(), eq("authorize.mustache"));
+        verify(mockViewHelper)
+                .render(frontendParamsCaptor.capture(), eq("authorize.mustache"), eq(mockResponse));
 
         assertTrue(
                 Boolean.parseBoolean(
@@ -277,14 +283,16 @@ class AuthorizeHandlerTest {
         when(mockRequest.queryMap()).thenReturn(queryParamsMap);
 
         String renderOutput = "rendered output";
-        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"))).thenReturn(renderOutput);
+        when(mockViewHelper.render(anyMap(), eq("authorize.mustache"), eq(mockResponse)))
+                .thenReturn(renderOutput);
 
         String result = (String) authorizeHandler.doAuthorize.handle(mockRequest, mockResponse);
 
         assertEquals(renderOutput, result);
         ArgumentCaptor<Map<String, String>> frontendParamsCaptor =
                 ArgumentCaptor.forClass(Map.class);
-        verify(mockViewHelper).render(frontendParamsCaptor.capture(), eq("authorize.mustache"));
+        verify(mockViewHelper)
+                .render(frontendParamsCaptor.capture(), eq("authorize.mustache"), eq(mockResponse));
         assertEquals(
                 "Error: Signature of the shared attribute JWT is not valid",
                 frontendParamsCaptor.getValue().get("shared_claims"));
@@ -390,7 +398,8 @@ class AuthorizeHandlerTest {
         String result = (String) authorizeHandler.doAuthorize.handle(mockRequest, mockResponse);
 
         assertNull(result);
-        verify(mockViewHelper, never()).render(Collections.emptyMap(), "authorize.mustache");
+        verify(mockViewHelper, never())
+                .render(Collections.emptyMap(), "authorize.mustache", mockResponse);
         verify(mockResponse).type(DEFAULT_RESPONSE_CONTENT_TYPE);
         verify(mockResponse).redirect(VALID_REDIRECT_URI + expectedErrorCodeAndDescription);
     }
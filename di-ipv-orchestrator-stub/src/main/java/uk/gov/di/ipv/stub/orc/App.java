@@ -2,7 +2,7 @@ package uk.gov.di.ipv.stub.orc;
 
 public class App {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         new Orchestrator();
     }
 }
@@ -1,27 +1,102 @@
 package uk.gov.di.ipv.stub.orc;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
 import spark.Spark;
 import uk.gov.di.ipv.stub.orc.config.OrchestratorConfig;
+import uk.gov.di.ipv.stub.orc.handlers.AdmissionControl;
 import uk.gov.di.ipv.stub.orc.handlers.HomeHandler;
 import uk.gov.di.ipv.stub.orc.handlers.IpvHandler;
+import uk.gov.di.ipv.stub.orc.handlers.MetricsHandler;
+import uk.gov.di.ipv.stub.orc.handlers.WarmUp;
+import uk.gov.di.ipv.stub.orc.service.CredentialDecoder;
+import uk.gov.di.ipv.stub.orc.service.StateService;
+import uk.gov.di.ipv.stub.orc.utils.JwtBuilder;
+import uk.gov.di.ipv.stub.orc.utils.StaticAssets;
+import uk.gov.di.ipv.stub.orc.utils.Tracing;
+import uk.gov.di.ipv.stub.orc.utils.ViewHelper;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 public class Orchestrator {
 
     private final IpvHandler ipvHandler;
+    private final MetricsHandler metricsHandler;
+    private final WarmUp warmUp;
+    private final StaticAssets staticAssets;
 
-    public Orchestrator() {
-        Spark.staticFileLocation("/public");
+    public Orchestrator() throws IOException, JOSEException {
+        ViewHelper.init(OrchestratorConfig.ORCHESTRATOR_RELOAD_TEMPLATES);
+        JwtBuilder.init();
         Spark.port(Integer.parseInt(OrchestratorConfig.PORT));
+        Tracing.install(
+                OrchestratorConfig.TRACE_SERVICE_NAME,
+                OrchestratorConfig.TRACE_EXPORT,
+                Integer.parseInt(OrchestratorConfig.TRACE_BUFFER_SIZE));
+
+        AdmissionControl admissionControl = AdmissionControl.fromConfig();
+        admissionControl.install();
+
+        staticAssets = StaticAssets.load("/public");
+        admissionControl.exempt(staticAssets.paths());
+
+        StateService stateService =
+                new StateService(
+                        Duration.ofSeconds(
+                                Long.parseLong(OrchestratorConfig.ORCHESTRATOR_STATE_TTL_SECONDS)),
+                        Integer.parseInt(OrchestratorConfig.ORCHESTRATOR_STATE_MAX_ENTRIES),
+                        Clock.systemUTC());
+        stateService.startExpiring(Duration.ofSeconds(30));
 
-        ipvHandler = new IpvHandler();
+        CredentialDecoder credentialDecoder =
+                new CredentialDecoder(
+                        Integer.parseInt(OrchestratorConfig.ORCHESTRATOR_VC_DECODER_THREADS),
+                        CredentialDecoder.parseIssuerKeys(
+                                OrchestratorConfig.ORCHESTRATOR_VC_ISSUER_KEYS_BASE64));
+
+        ipvHandler = new IpvHandler(stateService, credentialDecoder);
+        metricsHandler = new MetricsHandler(stateService, admissionControl);
+        warmUp = warmUp(credentialDecoder);
 
         initRoutes();
+        warmUp.start();
+    }
+
+    /** Signs, encrypts and decodes synthetic JWTs and renders each template. */
+    private static WarmUp warmUp(CredentialDecoder credentialDecoder) {
+        return WarmUp.fromConfig()
+                .step(
+                        "jwt sign and encrypt",
+                        () ->
+                                JwtBuilder.encryptJwt(
+                                        JwtBuilder.createSignedJwt(
+                                                JwtBuilder.buildClientAuthenticationClaims())))
+                .step(
+                        "vc decode",
+                        () -> {
+                            JWTClaimsSet claims = JwtBuilder.buildClientAuthenticationClaims();
+                            String vc = JwtBuilder.createSignedJwt(claims).serialize();
+                            credentialDecoder.decodeAll(List.of(vc));
+                        })
+                .step(
+                        "templates",
+                        () -> {
+                            ViewHelper.render(Map.of(), "home.mustache");
+                            ViewHelper.render(Map.of(), "userinfo.mustache");
+                        });
     }
 
     public void initRoutes() {
         Spark.get("/", HomeHandler.serveHomePage);
         Spark.get("/authorize", ipvHandler.doAuthorize);
         Spark.get("/callback", ipvHandler.doCallback);
+        Spark.get("/metrics", metricsHandler.getMetrics);
+        Spark.get("/ready", warmUp.getReady);
+        staticAssets.install();
 
         Spark.internalServerError(
                 "<html><body><h1>Waaargh!!! Da Orc Boss sez we'ze got some gremlinz in da gearz.</h1></body></html>");
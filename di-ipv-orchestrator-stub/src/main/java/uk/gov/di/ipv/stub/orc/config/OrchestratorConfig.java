@@ -26,6 +26,31 @@ public class OrchestratorConfig {
             getConfigValue(
                     "IPV_CORE_AUDIENCE",
                     "https://build-di-ipv-cri-uk-passport-front.london.cloudapps.digital");
+    public static final String ORCHESTRATOR_STATE_TTL_SECONDS =
+            getConfigValue("ORCHESTRATOR_STATE_TTL_SECONDS", "3600");
+    public static final String ORCHESTRATOR_STATE_MAX_ENTRIES =
+            getConfigValue("ORCHESTRATOR_STATE_MAX_ENTRIES", "100000");
+    public static final String ORCHESTRATOR_VC_ISSUER_KEYS_BASE64 =
+            getConfigValue("ORCHESTRATOR_VC_ISSUER_KEYS_BASE64", "");
+    public static final String ORCHESTRATOR_VC_DECODER_THREADS =
+            getConfigValue("ORCHESTRATOR_VC_DECODER_THREADS", "4");
+    public static final String LIMITER_MODE = getConfigValue("LIMITER_MODE", "off");
+    public static final String LIMITER_ROUTES = getConfigValue("LIMITER_ROUTES", "*");
+    public static final String LIMITER_LIMIT = getConfigValue("LIMITER_LIMIT", "64");
+    public static final String LIMITER_MAX_LIMIT = getConfigValue("LIMITER_MAX_LIMIT", "512");
+    public static final String LIMITER_LATENCY_TARGET_MILLIS =
+            getConfigValue("LIMITER_LATENCY_TARGET_MILLIS", "500");
+    public static final String LIMITER_QUEUE_TIMEOUT_MILLIS =
+            getConfigValue("LIMITER_QUEUE_TIMEOUT_MILLIS", "0");
+    public static final String LIMITER_RETRY_AFTER_SECONDS =
+            getConfigValue("LIMITER_RETRY_AFTER_SECONDS", "1");
+    public static final String TRACE_EXPORT = getConfigValue("TRACE_EXPORT", "off");
+    public static final String TRACE_BUFFER_SIZE = getConfigValue("TRACE_BUFFER_SIZE", "10000");
+    public static final String TRACE_SERVICE_NAME =
+            getConfigValue("TRACE_SERVICE_NAME", "orchestrator-stub");
+    public static final String WARM_UP_ITERATIONS = getConfigValue("WARM_UP_ITERATIONS", "50");
+    public static final boolean ORCHESTRATOR_RELOAD_TEMPLATES =
+            Boolean.parseBoolean(getConfigValue("ORCHESTRATOR_RELOAD_TEMPLATES", "false"));
 
     private static String getConfigValue(String key, String defaultValue) {
         var envValue = System.getenv(key);
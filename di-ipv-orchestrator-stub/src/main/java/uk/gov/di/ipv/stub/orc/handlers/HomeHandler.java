@@ -13,6 +13,6 @@ public class HomeHandler {
                 var modelMap = new HashMap<String, Object>();
                 modelMap.put("welcome", "Hello world");
 
-                return ViewHelper.render(modelMap, "home.mustache");
+                return ViewHelper.render(modelMap, "home.mustache", response);
             };
 }
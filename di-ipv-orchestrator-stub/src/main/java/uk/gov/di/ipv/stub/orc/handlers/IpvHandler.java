@@ -1,7 +1,5 @@
 package uk.gov.di.ipv.stub.orc.handlers;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jwt.EncryptedJWT;
@@ -11,6 +9,7 @@ import com.nimbusds.oauth2.sdk.AuthorizationCode;
 import com.nimbusds.oauth2.sdk.AuthorizationCodeGrant;
 import com.nimbusds.oauth2.sdk.AuthorizationRequest;
 import com.nimbusds.oauth2.sdk.AuthorizationResponse;
+import com.nimbusds.oauth2.sdk.ErrorObject;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.ResponseType;
 import com.nimbusds.oauth2.sdk.Scope;
@@ -37,14 +36,16 @@ import spark.Response;
 import spark.Route;
 import uk.gov.di.ipv.stub.orc.exceptions.OauthException;
 import uk.gov.di.ipv.stub.orc.exceptions.OrchestratorStubException;
+import uk.gov.di.ipv.stub.orc.service.CredentialDecoder;
+import uk.gov.di.ipv.stub.orc.service.CredentialDecoder.DecodedCredential;
+import uk.gov.di.ipv.stub.orc.service.StateService;
 import uk.gov.di.ipv.stub.orc.utils.JwtBuilder;
+import uk.gov.di.ipv.stub.orc.utils.Tracing;
 import uk.gov.di.ipv.stub.orc.utils.ViewHelper;
 
 import java.io.IOException;
 import java.net.URI;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
-import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -64,12 +65,18 @@ public class IpvHandler {
             "https://vocab.account.gov.uk/v1/credentialJWT";
 
     private final Logger logger = LoggerFactory.getLogger(IpvHandler.class);
-    private final Map<String, Object> stateSession = new HashMap<>();
+    private StateService stateService;
+    private CredentialDecoder credentialDecoder;
+
+    public IpvHandler(StateService stateService, CredentialDecoder credentialDecoder) {
+        this.stateService = stateService;
+        this.credentialDecoder = credentialDecoder;
+    }
 
     public Route doAuthorize =
             (Request request, Response response) -> {
                 var state = new State();
-                stateSession.put(state.getValue(), null);
+                stateService.persist(state);
                 String journeyType = request.queryMap().get("journeyType").value();
                 URI journeyTypeEndpointURI =
                         journeyType.equals("debug")
@@ -78,7 +85,7 @@ public class IpvHandler {
 
                 String errorType = request.queryMap().get("error").value();
 
-                JWTClaimsSet claims = JwtBuilder.buildAuthorizationRequestClaims(errorType);
+                JWTClaimsSet claims = JwtBuilder.buildAuthorizationRequestClaims(state, errorType);
                 SignedJWT signedJwt = JwtBuilder.createSignedJwt(claims);
                 EncryptedJWT encryptedJwt = JwtBuilder.encryptJwt(signedJwt);
                 var authRequest =
@@ -89,7 +96,7 @@ public class IpvHandler {
                                 .scope(new Scope("openid"))
                                 .redirectionURI(new URI(ORCHESTRATOR_REDIRECT_URL))
                                 .endpointURI(journeyTypeEndpointURI)
-                                .requestObject(EncryptedJWT.parse(encryptedJwt.serialize()))
+                                .requestObject(encryptedJwt)
                                 .build();
 
                 response.redirect(authRequest.toURI().toString());
@@ -107,13 +114,15 @@ public class IpvHandler {
 
                     var userInfo = getUserInfo(accessToken);
 
-                    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                    String userInfoJson = gson.toJson(userInfo);
-                    moustacheDataModel.put("rawUserInfo", userInfoJson);
+                    // Pretty printed in the browser when the section is expanded
+                    moustacheDataModel.put("rawUserInfo", userInfo.toJSONString());
 
                     mustacheData = buildMustacheData(userInfo);
                     moustacheDataModel.put("data", mustacheData);
-                } catch (OrchestratorStubException | ParseException | JsonSyntaxException e) {
+                } catch (OrchestratorStubException
+                        | ParseException
+                        | java.text.ParseException
+                        | JsonSyntaxException e) {
                     List<Map<String, Object>> errorObject =
                             List.of(Map.of("error_message", e.getMessage()));
                     moustacheDataModel.put("error", errorObject);
@@ -128,7 +137,7 @@ public class IpvHandler {
                     moustacheDataModel.put("error", errorObject);
                 }
 
-                return ViewHelper.render(moustacheDataModel, "userinfo.mustache");
+                return ViewHelper.render(moustacheDataModel, "userinfo.mustache", response);
             };
 
     private AuthorizationCode getAuthorizationCode(Request request)
@@ -138,9 +147,18 @@ public class IpvHandler {
         if (!authorizationResponse.indicatesSuccess()) {
             var error = authorizationResponse.toErrorResponse().getErrorObject();
             logger.error("Failed authorization code request: {}", error);
+            if (authorizationResponse.getState() != null) {
+                stateService.consume(authorizationResponse.getState());
+            }
             throw new OauthException(error);
         }
 
+        if (!stateService.consume(authorizationResponse.getState())) {
+            logger.error("Unknown or expired state: {}", authorizationResponse.getState());
+            throw new OauthException(
+                    new ErrorObject("invalid_state", "Unknown or expired state in callback"));
+        }
+
         return authorizationResponse.toSuccessResponse().getAuthorizationCode();
     }
 
@@ -153,7 +171,7 @@ public class IpvHandler {
         try {
             JWTClaimsSet claims = buildClientAuthenticationClaims();
             signedClientJwt = JwtBuilder.createSignedJwt(claims);
-        } catch (JOSEException | InvalidKeySpecException | NoSuchAlgorithmException e) {
+        } catch (JOSEException e) {
             logger.error("Failed to generate orch client JWT", e);
             throw new OrchestratorStubException("Failed to generate orch client JWT");
         }
@@ -196,32 +214,35 @@ public class IpvHandler {
     }
 
     private List<Map<String, Object>> buildMustacheData(JSONObject credentials)
-            throws ParseException, JsonSyntaxException, java.text.ParseException {
+            throws java.text.ParseException {
         List<Map<String, Object>> moustacheDataModel = new ArrayList<>();
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
         List<String> vcJwts = (List<String>) credentials.get(CREDENTIALS_URL_PROPERTY);
 
-        for (String vc : vcJwts) {
-            SignedJWT signedJWT = SignedJWT.parse(vc);
-
-            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
-            Map<String, Object> claims = claimsSet.toJSONObject();
-
-            String json = gson.toJson(claims);
-
+        List<DecodedCredential> decoded;
+        decoded = Tracing.inSpan("vc.decode", () -> credentialDecoder.decodeAll(vcJwts));
+        for (DecodedCredential credential : decoded) {
             Map<String, Object> criMap = new HashMap<>();
-            criMap.put("VC", json);
-            criMap.put("criType", claims.get("iss"));
+            criMap.put("VC", credential.claimsJson());
+            criMap.put("criType", credential.issuer());
+            criMap.put("signature", credential.signature());
+            criMap.put("decodeMillis", "%.2f".formatted(credential.decodeMillis()));
+            criMap.put("verifyMillis", "%.2f".formatted(credential.verifyMillis()));
             moustacheDataModel.add(criMap);
         }
 
         return moustacheDataModel;
     }
 
+    /** Sends a backchannel request as a span of the current trace, passing the trace on. */
     private HTTPResponse sendHttpRequest(HTTPRequest httpRequest) {
         try {
-            return httpRequest.send();
+            return Tracing.inSpan(
+                    "backchannel " + httpRequest.getURL().getPath(),
+                    () -> {
+                        httpRequest.setHeader(Tracing.TRACEPARENT, Tracing.traceparent());
+                        return httpRequest.send();
+                    });
         } catch (IOException | SerializeException exception) {
             logger.error("Failed to send a http request", exception);
             throw new RuntimeException("Failed to send a http request", exception);
@@ -0,0 +1,35 @@
+package uk.gov.di.ipv.stub.orc.handlers;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import uk.gov.di.ipv.stub.orc.service.StateService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MetricsHandler {
+
+    private StateService stateService;
+    private AdmissionControl admissionControl;
+
+    public MetricsHandler(StateService stateService, AdmissionControl admissionControl) {
+        this.stateService = stateService;
+        this.admissionControl = admissionControl;
+    }
+
+    public Route getMetrics =
+            (Request request, Response response) -> {
+                response.type("text/plain;version=0.0.4");
+                Map<String, Number> metrics = new LinkedHashMap<>(stateService.metrics());
+                metrics.putAll(admissionControl.metrics());
+                return toText(metrics);
+            };
+
+    private static String toText(Map<String, ? extends Number> metrics) {
+        return metrics.entrySet().stream()
+                .map(metric -> metric.getKey() + " " + metric.getValue())
+                .collect(Collectors.joining("\n", "", "\n"));
+    }
+}
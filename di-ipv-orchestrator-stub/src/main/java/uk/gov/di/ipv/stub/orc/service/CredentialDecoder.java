@@ -0,0 +1,153 @@
+package uk.gov.di.ipv.stub.orc.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.di.ipv.stub.orc.utils.Tracing;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the VCs in a user identity response in parallel, verifying each signature when a key is
+ * configured for its issuer. Verifiers are built once per issuer and reused for every callback.
+ */
+public class CredentialDecoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CredentialDecoder.class);
+
+    public record DecodedCredential(
+            String issuer,
+            String claimsJson,
+            String signature,
+            double decodeMillis,
+            double verifyMillis) {}
+
+    private final Map<String, JWSVerifier> verifiers = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public CredentialDecoder(int threads, Map<String, JWK> issuerKeys) throws JOSEException {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor =
+                Executors.newFixedThreadPool(
+                        threads,
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "vc-decoder-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+
+        for (Map.Entry<String, JWK> issuerKey : issuerKeys.entrySet()) {
+            verifiers.put(
+                    issuerKey.getKey(), createVerifier(issuerKey.getKey(), issuerKey.getValue()));
+        }
+        LOGGER.info("✅  loaded VC verification keys for {} issuers", verifiers.size());
+    }
+
+    /** Parses an issuer to JWK map from a base64 encoded JSON object. */
+    public static Map<String, JWK> parseIssuerKeys(String base64Json) {
+        if (base64Json == null || base64Json.isBlank()) {
+            return Map.of();
+        }
+        JsonObject keys =
+                JsonParser.parseString(
+                                new String(
+                                        Base64.getDecoder().decode(base64Json),
+                                        StandardCharsets.UTF_8))
+                        .getAsJsonObject();
+        Map<String, JWK> issuerKeys = new ConcurrentHashMap<>();
+        for (Map.Entry<String, JsonElement> key : keys.entrySet()) {
+            try {
+                issuerKeys.put(key.getKey(), JWK.parse(key.getValue().toString()));
+            } catch (ParseException e) {
+                throw new IllegalStateException(
+                        "Invalid JWK for issuer %s".formatted(key.getKey()), e);
+            }
+        }
+        return issuerKeys;
+    }
+
+    private static JWSVerifier createVerifier(String issuer, JWK key) throws JOSEException {
+        if (key instanceof ECKey ecKey) {
+            return new ECDSAVerifier(ecKey.toPublicJWK());
+        }
+        if (key instanceof RSAKey rsaKey) {
+            return new RSASSAVerifier(rsaKey.toPublicJWK());
+        }
+        throw new IllegalStateException(
+                "Unsupported %s key for issuer %s".formatted(key.getKeyType(), issuer));
+    }
+
+    /** Decodes every VC, returning them in the order given. */
+    public List<DecodedCredential> decodeAll(List<String> vcJwts) throws ParseException {
+        List<CompletableFuture<DecodedCredential>> decoding =
+                vcJwts.stream()
+                        .map(
+                                vc ->
+                                        CompletableFuture.supplyAsync(
+                                                Tracing.inCurrentTrace(() -> decode(vc)), executor))
+                        .toList();
+        try {
+            return decoding.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ParseException parseException) {
+                throw parseException;
+            }
+            throw e;
+        }
+    }
+
+    private DecodedCredential decode(String vc) {
+        long start = System.nanoTime();
+        SignedJWT signedJWT;
+        String issuer;
+        try {
+            signedJWT = SignedJWT.parse(vc);
+            issuer = signedJWT.getJWTClaimsSet().getIssuer();
+        } catch (ParseException e) {
+            throw new CompletionException(e);
+        }
+        long decoded = System.nanoTime();
+
+        String signature = "not verified, no key for issuer";
+        JWSVerifier verifier = issuer == null ? null : verifiers.get(issuer);
+        if (verifier != null) {
+            try (Tracing.Span span = Tracing.start("signature.verify")) {
+                span.attribute("vc.issuer", issuer);
+                signature = signedJWT.verify(verifier) ? "valid" : "INVALID";
+            } catch (JOSEException e) {
+                LOGGER.warn("Failed to verify VC from {}", issuer, e);
+                signature = "INVALID: " + e.getMessage();
+            }
+        }
+        long verified = System.nanoTime();
+
+        return new DecodedCredential(
+                issuer,
+                signedJWT.getPayload().toString(),
+                signature,
+                (decoded - start) / 1e6,
+                (verified - decoded) / 1e6);
+    }
+}
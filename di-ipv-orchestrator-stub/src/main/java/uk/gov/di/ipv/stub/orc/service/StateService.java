@@ -0,0 +1,135 @@
+package uk.gov.di.ipv.stub.orc.service;
+
+import com.nimbusds.oauth2.sdk.id.State;
+import uk.gov.di.ipv.stub.orc.utils.Tracing;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the state of every journey started by the orchestrator until its callback arrives. States
+ * expire after a fixed TTL and the number held is capped, evicting the oldest first, so the store
+ * stays bounded however long the stub runs.
+ */
+public class StateService {
+
+    private record Entry(String state, long expiresAt) {}
+
+    private final Map<String, Long> states = new ConcurrentHashMap<>();
+    // TTL is fixed, so insertion order is also expiry order
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+
+    public StateService(Duration ttl, int maxEntries, Clock clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public void startExpiring(Duration interval) {
+        ScheduledExecutorService scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "state-expiry");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        scheduler.scheduleWithFixedDelay(
+                this::removeExpired,
+                interval.toMillis(),
+                interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void persist(State state) {
+        Tracing.inSpan(
+                "store.state.persist",
+                () -> {
+                    long expiresAt = clock.millis() + ttlMillis;
+                    states.put(state.getValue(), expiresAt);
+                    insertionOrder.add(new Entry(state.getValue(), expiresAt));
+                    created.increment();
+
+                    if (queued.incrementAndGet() > maxEntries) {
+                        Entry oldest = poll();
+                        if (oldest != null && states.remove(oldest.state(), oldest.expiresAt())) {
+                            evicted.increment();
+                        }
+                    }
+                });
+    }
+
+    /** Removes the state, returning whether it was known and had not yet expired. */
+    public boolean consume(State state) {
+        return Tracing.inSpan(
+                "store.state.consume",
+                () -> {
+                    Long expiresAt = state == null ? null : states.remove(state.getValue());
+                    if (expiresAt == null) {
+                        rejected.increment();
+                        return false;
+                    }
+                    if (expiresAt <= clock.millis()) {
+                        expired.increment();
+                        rejected.increment();
+                        return false;
+                    }
+                    consumed.increment();
+                    return true;
+                });
+    }
+
+    public void removeExpired() {
+        long now = clock.millis();
+        Entry head;
+        while ((head = insertionOrder.peek()) != null && head.expiresAt() <= now) {
+            Entry oldest = poll();
+            if (oldest != null && states.remove(oldest.state(), oldest.expiresAt())) {
+                expired.increment();
+            }
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public Map<String, Long> metrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("orchestrator_state_store_size", (long) states.size());
+        metrics.put("orchestrator_state_store_max_entries", (long) maxEntries);
+        metrics.put("orchestrator_state_created_total", created.sum());
+        metrics.put("orchestrator_state_consumed_total", consumed.sum());
+        metrics.put("orchestrator_state_rejected_total", rejected.sum());
+        metrics.put("orchestrator_state_expired_total", expired.sum());
+        metrics.put("orchestrator_state_evicted_total", evicted.sum());
+        return metrics;
+    }
+
+    private Entry poll() {
+        Entry entry = insertionOrder.poll();
+        if (entry != null) {
+            queued.decrementAndGet();
+        }
+        return entry;
+    }
+}
@@ -3,6 +3,7 @@ package uk.gov.di.ipv.stub.orc.utils;
 import com.nimbusds.jose.EncryptionMethod;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWEEncrypter;
 import com.nimbusds.jose.JWEAlgorithm;
 import com.nimbusds.jose.JWEHeader;
 import com.nimbusds.jose.JWEObject;
@@ -17,6 +18,7 @@ import com.nimbusds.jwt.EncryptedJWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.id.State;
 
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
@@ -44,7 +46,31 @@ public class JwtBuilder {
     public static final String INVALID_AUDIENCE = "invalid-audience";
     public static final String INVALID_REDIRECT_URI = "http://example.com";
 
-    public static JWTClaimsSet buildAuthorizationRequestClaims(String errorType) {
+    private static final JWSHeader JWS_HEADER =
+            new JWSHeader.Builder(JWSAlgorithm.ES256).type(JOSEObjectType.JWT).build();
+    private static final JWEHeader JWE_HEADER =
+            new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A256GCM)
+                    .contentType("JWT")
+                    .build();
+
+    private static JWSSigner signer;
+    private static JWEEncrypter encrypter;
+
+    /** Loads the signing and encryption keys once, failing fast if they are not usable. */
+    public static void init() {
+        try {
+            signer = new ECDSASigner(getSigningKey());
+            encrypter = new RSAEncrypter(getEncryptionKey());
+        } catch (IllegalArgumentException
+                | NoSuchAlgorithmException
+                | InvalidKeySpecException
+                | ParseException
+                | JOSEException e) {
+            throw new IllegalStateException("Failed to load orchestrator signing keys", e);
+        }
+    }
+
+    public static JWTClaimsSet buildAuthorizationRequestClaims(State state, String errorType) {
         String audience = IPV_CORE_AUDIENCE;
         String redirectUri = ORCHESTRATOR_REDIRECT_URL;
         if (errorType != null) {
@@ -66,7 +92,7 @@ public class JwtBuilder {
                 .claim("client_id", ORCHESTRATOR_CLIENT_ID)
                 .claim("response_type", ResponseType.Value.CODE.toString())
                 .claim("redirect_uri", redirectUri)
-                .claim("state", UUID.randomUUID().toString())
+                .claim("state", state.getValue())
                 .build();
     }
 
@@ -81,24 +107,23 @@ public class JwtBuilder {
                 .build();
     }
 
-    public static SignedJWT createSignedJwt(JWTClaimsSet claims)
-            throws JOSEException, NoSuchAlgorithmException, InvalidKeySpecException {
-        JWSSigner signer = new ECDSASigner(getSigningKey());
-        SignedJWT signedJwt = new SignedJWT(generateHeader(), claims);
-        signedJwt.sign(signer);
+    public static SignedJWT createSignedJwt(JWTClaimsSet claims) throws JOSEException {
+        SignedJWT signedJwt = new SignedJWT(JWS_HEADER, claims);
+        Tracing.inSpan("jwt.sign", () -> signedJwt.sign(signer));
         return signedJwt;
     }
 
     public static EncryptedJWT encryptJwt(SignedJWT signedJwt)
             throws ParseException, JOSEException {
-        JWEObject jweObject =
-                new JWEObject(
-                        new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A256GCM)
-                                .contentType("JWT")
-                                .build(),
-                        new Payload(signedJwt));
-        jweObject.encrypt(new RSAEncrypter(getEncryptionKey()));
-        return EncryptedJWT.parse(jweObject.serialize());
+        JWEObject jweObject = new JWEObject(JWE_HEADER, new Payload(signedJwt));
+        Tracing.inSpan("jwe.encrypt", () -> jweObject.encrypt(encrypter));
+        // Wrap the encrypted parts directly, rather than serializing and parsing them again
+        return new EncryptedJWT(
+                jweObject.getHeader().toBase64URL(),
+                jweObject.getEncryptedKey(),
+                jweObject.getIV(),
+                jweObject.getCipherText(),
+                jweObject.getAuthTag());
     }
 
     private static ECPrivateKey getSigningKey()
@@ -109,15 +134,11 @@ public class JwtBuilder {
         return (ECPrivateKey) factory.generatePrivate(privateKeySpec);
     }
 
-    private static RSAPublicKey getEncryptionKey() throws java.text.ParseException, JOSEException {
+    private static RSAPublicKey getEncryptionKey() throws ParseException, JOSEException {
         byte[] binaryKey = Base64.getDecoder().decode(ORCHESTRATOR_JAR_ENCRYPTION_PUBLIC_KEY);
         return RSAKey.parse(new String(binaryKey)).toRSAPublicKey();
     }
 
-    private static JWSHeader generateHeader() {
-        return new JWSHeader.Builder(JWSAlgorithm.ES256).type(JOSEObjectType.JWT).build();
-    }
-
     private static Date generateExpirationTime(Instant now) {
         return Date.from(now.plus(Long.parseLong(ORCHESTRATOR_CLIENT_JWT_TTL), ChronoUnit.SECONDS));
     }
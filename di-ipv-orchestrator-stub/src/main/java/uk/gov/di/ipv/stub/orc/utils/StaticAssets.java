@@ -0,0 +1,224 @@
+package uk.gov.di.ipv.stub.orc.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Spark;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the static files from memory instead of reading them from the jar for every request. Each
+ * file is read and gzipped once at startup, and sent with an {@code ETag} of its content hash and
+ * {@code Cache-Control: immutable}, so a browser fetches it once per journey run at most. The
+ * gzipped copy is sent when {@code Accept-Encoding} allows it, and only kept for files it shrinks.
+ */
+public class StaticAssets {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StaticAssets.class);
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final Map<String, String> CONTENT_TYPES =
+            Map.of(
+                    "css", "text/css; charset=utf-8",
+                    "js", "application/javascript; charset=utf-8",
+                    "txt", "text/plain; charset=utf-8",
+                    "svg", "image/svg+xml",
+                    "png", "image/png",
+                    "jpg", "image/jpeg",
+                    "ico", "image/x-icon",
+                    "woff", "font/woff",
+                    "woff2", "font/woff2");
+
+    record Asset(String contentType, byte[] identity, byte[] gzip, String etag) {
+        String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+    }
+
+    private final Map<String, Asset> assets;
+
+    StaticAssets(Map<String, Asset> assets) {
+        this.assets = assets;
+    }
+
+    /** Loads every file under {@code location} on the classpath, from the jar or a directory. */
+    public static StaticAssets load(String location) throws IOException {
+        URI uri;
+        try {
+            uri = StaticAssets.class.getResource(location).toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (uri.getScheme().equals("jar")) {
+            try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of())) {
+                return load(jar.provider().getPath(uri));
+            }
+        }
+        return load(Path.of(uri));
+    }
+
+    static StaticAssets load(Path root) throws IOException {
+        long started = System.nanoTime();
+        Map<String, Asset> assets = new LinkedHashMap<>();
+        long identityBytes = 0;
+        long servedBytes = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                String path = "/" + root.relativize(file).toString().replace('\\', '/');
+                Asset asset = asset(path, Files.readAllBytes(file));
+                assets.put(path, asset);
+                identityBytes += asset.identity().length;
+                servedBytes += asset.gzip() != null ? asset.gzip().length : asset.identity().length;
+            }
+        }
+        LOGGER.info(
+                "Loaded {} static assets in {} ms, {} KB or {} KB gzipped",
+                assets.size(),
+                (System.nanoTime() - started) / 1_000_000,
+                identityBytes / 1024,
+                servedBytes / 1024);
+        return new StaticAssets(assets);
+    }
+
+    private static Asset asset(String path, byte[] identity) throws IOException {
+        byte[] gzip = gzip(identity);
+        // Fonts and images are compressed already, gzipping them again only adds overhead
+        if (gzip.length >= identity.length * 0.9) {
+            gzip = null;
+        }
+        return new Asset(contentType(path), identity, gzip, etag(identity));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(bytes);
+        }
+        return gzipped.toByteArray();
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String contentType(String path) {
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    public Set<String> paths() {
+        return assets.keySet();
+    }
+
+    Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /** Adds a {@code GET} route for each asset. */
+    public void install() {
+        assets.forEach(
+                (path, asset) ->
+                        Spark.get(path, (request, response) -> serve(request, response, asset)));
+    }
+
+    private static Object serve(Request request, Response response, Asset asset)
+            throws IOException {
+        boolean gzip = asset.gzip() != null && acceptsGzip(request.headers("Accept-Encoding"));
+        HttpServletResponse raw = response.raw();
+        raw.setContentType(asset.contentType());
+        raw.setHeader("Cache-Control", CACHE_CONTROL);
+        raw.setHeader("ETag", gzip ? asset.gzipEtag() : asset.etag());
+        if (asset.gzip() != null) {
+            raw.setHeader("Vary", "Accept-Encoding");
+        }
+
+        if (notModified(request.headers("If-None-Match"), asset)) {
+            raw.setStatus(304);
+        } else {
+            byte[] body = gzip ? asset.gzip() : asset.identity();
+            if (gzip) {
+                raw.setHeader("Content-Encoding", "gzip");
+            }
+            raw.setContentLength(body.length);
+            raw.getOutputStream().write(body);
+        }
+        // Spark gzips any body sent with Content-Encoding: gzip, and leaves a committed response
+        // alone, so commit it here to send the stored bytes as they are
+        raw.flushBuffer();
+        return "";
+    }
+
+    /** Whether the {@code Accept-Encoding} header allows gzip, by name or {@code *}. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = parts.length == 1 || qualityOf(parts[1]) > 0;
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double qualityOf(String parameter) {
+        String[] nameAndValue = parameter.split("=", 2);
+        if (nameAndValue.length != 2 || !nameAndValue[0].trim().equalsIgnoreCase("q")) {
+            return 1;
+        }
+        try {
+            return Double.parseDouble(nameAndValue[1].trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Whether {@code If-None-Match} names either version of the asset, or is {@code *}. */
+    static boolean notModified(String ifNoneMatch, Asset asset) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        List<String> etags = List.of(asset.etag(), asset.gzipEtag());
+        for (String etag : ifNoneMatch.split(",")) {
+            String tag = etag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || etags.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,182 @@
+package uk.gov.di.ipv.stub.orc.handlers;
+
+import org.junit.jupiter.api.Test;
+import spark.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlTest {
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void shouldRejectOnceAFixedLimitIsReached() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(false, 2, 2, TARGET, clock::get);
+
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(0));
+
+        limiter.release(TARGET * 10, true);
+        assertTrue(limiter.acquire(0));
+
+        AdmissionControl.Limiter.Snapshot snapshot = limiter.snapshot();
+        assertEquals(2, snapshot.limit());
+        assertEquals(2, snapshot.inFlight());
+        assertEquals(3, snapshot.admitted());
+        assertEquals(1, snapshot.rejected());
+    }
+
+    @Test
+    void shouldAdmitQueuedRequestWhenASlotIsReleased() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(false, 1, 1, TARGET, System::nanoTime);
+        assertTrue(limiter.acquire(0));
+
+        CompletableFuture<Boolean> waiting =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return limiter.acquire(TimeUnit.SECONDS.toNanos(10));
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        limiter.release(0, false);
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.snapshot().queued());
+        assertTrue(limiter.snapshot().queueWaitNanos() > 0);
+
+        assertFalse(limiter.acquire(TimeUnit.MILLISECONDS.toNanos(20)));
+    }
+
+    @Test
+    void shouldGrowAnAdaptiveLimitWhileRequestsAreFastAndUsingIt() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(true, 4, 5, TARGET, clock::get);
+
+        // About one window of fast requests at the limit adds one
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire(0));
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.release(TARGET / 2, false);
+            assertTrue(limiter.acquire(0));
+        }
+        assertEquals(5, limiter.snapshot().limit());
+
+        // Capped at the maximum
+        for (int i = 0; i < 100; i++) {
+            limiter.release(TARGET / 2, false);
+            assertTrue(limiter.acquire(0));
+        }
+        assertEquals(5, limiter.snapshot().limit());
+    }
+
+    @Test
+    void shouldShrinkAnAdaptiveLimitOncePerTargetWhileSlow() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(true, 100, 100, TARGET, clock::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(0));
+        }
+
+        // A burst of slow completions together only backs off once
+        for (int i = 0; i < 5; i++) {
+            limiter.release(TARGET * 2, false);
+        }
+        assertEquals(90, limiter.snapshot().limit());
+
+        clock.addAndGet(TARGET);
+        limiter.release(TARGET * 2, false);
+        assertEquals(81, limiter.snapshot().limit());
+
+        clock.addAndGet(TARGET);
+        limiter.release(0, true);
+        assertEquals(72, limiter.snapshot().limit());
+    }
+
+    @Test
+    void shouldRejectInvalidLimits() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdmissionControl.Limiter(false, 0, 0, TARGET, clock::get));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdmissionControl.Limiter(true, 10, 5, TARGET, clock::get));
+    }
+
+    @Test
+    void shouldNotLimitExemptPaths() throws Exception {
+        AdmissionControl admissionControl =
+                new AdmissionControl(
+                        Map.of("*", new AdmissionControl.Limiter(false, 1, 1, TARGET, clock::get)),
+                        0,
+                        "1",
+                        clock::get);
+        admissionControl.exempt(List.of("/assets/app.css"));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Service http = Service.ignite().port(0);
+        http.before(admissionControl::admit);
+        http.afterAfter(admissionControl::release);
+        http.get(
+                "/slow",
+                (request, response) -> {
+                    holding.countDown();
+                    release.await();
+                    return "slow";
+                });
+        http.get("/other", (request, response) -> "other");
+        http.get("/assets/app.css", (request, response) -> "css");
+        http.awaitInitialization();
+        HttpClient client = HttpClient.newHttpClient();
+        try {
+            CompletableFuture<HttpResponse<String>> slow =
+                    client.sendAsync(get(http, "/slow"), HttpResponse.BodyHandlers.ofString());
+            assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+            HttpResponse<String> other =
+                    client.send(get(http, "/other"), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, other.statusCode());
+            assertEquals("1", other.headers().firstValue("Retry-After").orElseThrow());
+            assertEquals(
+                    "css",
+                    client.send(get(http, "/assets/app.css"), HttpResponse.BodyHandlers.ofString())
+                            .body());
+
+            release.countDown();
+            assertEquals("slow", slow.get(5, TimeUnit.SECONDS).body());
+            assertEquals(0, admissionControl.metrics().get("admission_in_flight{route=\"*\"}"));
+            assertEquals(
+                    1L, admissionControl.metrics().get("admission_rejected_total{route=\"*\"}"));
+        } finally {
+            release.countDown();
+            http.stop();
+            http.awaitStop();
+        }
+    }
+
+    private static HttpRequest get(Service http, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + http.port() + path)).build();
+    }
+}
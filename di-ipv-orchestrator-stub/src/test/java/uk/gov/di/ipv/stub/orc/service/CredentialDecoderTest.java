@@ -0,0 +1,116 @@
+package uk.gov.di.ipv.stub.orc.service;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uk.gov.di.ipv.stub.orc.service.CredentialDecoder.DecodedCredential;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CredentialDecoderTest {
+    private static final String PASSPORT_ISSUER = "https://passport.example";
+    private static final String ADDRESS_ISSUER = "https://address.example";
+
+    private static ECKey passportKey;
+    private static ECKey otherKey;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        passportKey = new ECKeyGenerator(Curve.P_256).generate();
+        otherKey = new ECKeyGenerator(Curve.P_256).generate();
+    }
+
+    @Test
+    void shouldDecodeCredentialsInOrderAndVerifyKnownIssuers() throws Exception {
+        CredentialDecoder decoder =
+                new CredentialDecoder(4, Map.of(PASSPORT_ISSUER, passportKey.toPublicJWK()));
+
+        List<DecodedCredential> credentials =
+                decoder.decodeAll(
+                        List.of(
+                                signedVc(PASSPORT_ISSUER, passportKey, 1),
+                                signedVc(PASSPORT_ISSUER, otherKey, 2),
+                                signedVc(ADDRESS_ISSUER, otherKey, 3)));
+
+        assertEquals(3, credentials.size());
+        assertEquals("valid", credentials.get(0).signature());
+        assertEquals("INVALID", credentials.get(1).signature());
+        assertEquals("not verified, no key for issuer", credentials.get(2).signature());
+        assertEquals(ADDRESS_ISSUER, credentials.get(2).issuer());
+        assertEquals(3L, JWTClaimsSet.parse(credentials.get(2).claimsJson()).getClaim("n"));
+    }
+
+    @Test
+    void shouldKeepOrderForManyCredentials() throws Exception {
+        CredentialDecoder decoder =
+                new CredentialDecoder(4, Map.of(PASSPORT_ISSUER, passportKey.toPublicJWK()));
+        List<String> vcs =
+                IntStream.range(0, 50)
+                        .mapToObj(i -> signedVc(PASSPORT_ISSUER, passportKey, i))
+                        .toList();
+
+        List<DecodedCredential> credentials = decoder.decodeAll(vcs);
+
+        for (int i = 0; i < vcs.size(); i++) {
+            assertEquals(
+                    (long) i, JWTClaimsSet.parse(credentials.get(i).claimsJson()).getClaim("n"));
+            assertEquals("valid", credentials.get(i).signature());
+        }
+    }
+
+    @Test
+    void shouldThrowParseExceptionForMalformedCredential() throws Exception {
+        CredentialDecoder decoder = new CredentialDecoder(2, Map.of());
+
+        assertThrows(
+                ParseException.class,
+                () -> decoder.decodeAll(List.of(signedVc(ADDRESS_ISSUER, otherKey, 1), "bad")));
+    }
+
+    @Test
+    void shouldParseBase64IssuerKeys() {
+        String json =
+                "{\"%s\": %s}".formatted(PASSPORT_ISSUER, passportKey.toPublicJWK().toJSONString());
+
+        Map<String, JWK> keys =
+                CredentialDecoder.parseIssuerKeys(
+                        Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(passportKey.toPublicJWK(), keys.get(PASSPORT_ISSUER));
+        assertTrue(CredentialDecoder.parseIssuerKeys("").isEmpty());
+    }
+
+    private static String signedVc(String issuer, ECKey signingKey, int n) {
+        try {
+            SignedJWT jwt =
+                    new SignedJWT(
+                            new JWSHeader(JWSAlgorithm.ES256),
+                            new JWTClaimsSet.Builder()
+                                    .issuer(issuer)
+                                    .claim("n", n)
+                                    .subject("urn:uuid:" + n)
+                                    .build());
+            jwt.sign(new ECDSASigner(signingKey));
+            return jwt.serialize();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
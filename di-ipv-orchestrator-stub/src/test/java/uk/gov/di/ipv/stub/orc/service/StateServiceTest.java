@@ -0,0 +1,124 @@
+package uk.gov.di.ipv.stub.orc.service;
+
+import com.nimbusds.oauth2.sdk.id.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StateServiceTest {
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final int MAX_ENTRIES = 3;
+
+    private TestClock clock;
+    private StateService stateService;
+
+    @BeforeEach
+    void setup() {
+        clock = new TestClock();
+        stateService = new StateService(TTL, MAX_ENTRIES, clock);
+    }
+
+    @Test
+    void shouldConsumePersistedStateOnce() {
+        State state = new State();
+        stateService.persist(state);
+
+        assertTrue(stateService.consume(state));
+        assertFalse(stateService.consume(state));
+        assertEquals(0, stateService.size());
+    }
+
+    @Test
+    void shouldRejectUnknownState() {
+        assertFalse(stateService.consume(new State()));
+        assertFalse(stateService.consume(null));
+        assertEquals(2L, stateService.metrics().get("orchestrator_state_rejected_total"));
+    }
+
+    @Test
+    void shouldRejectExpiredState() {
+        State state = new State();
+        stateService.persist(state);
+
+        clock.advance(TTL);
+
+        assertFalse(stateService.consume(state));
+        assertEquals(1L, stateService.metrics().get("orchestrator_state_expired_total"));
+    }
+
+    @Test
+    void shouldRemoveExpiredStates() {
+        stateService.persist(new State());
+        stateService.persist(new State());
+        clock.advance(Duration.ofMinutes(1));
+        State fresh = new State();
+        stateService.persist(fresh);
+
+        clock.advance(TTL.minusSeconds(30));
+        stateService.removeExpired();
+
+        assertEquals(1, stateService.size());
+        assertEquals(2L, stateService.metrics().get("orchestrator_state_expired_total"));
+        assertTrue(stateService.consume(fresh));
+    }
+
+    @Test
+    void shouldEvictOldestStateWhenFull() {
+        State oldest = new State();
+        stateService.persist(oldest);
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            stateService.persist(new State());
+        }
+
+        assertEquals(MAX_ENTRIES, stateService.size());
+        assertFalse(stateService.consume(oldest));
+        assertEquals(1L, stateService.metrics().get("orchestrator_state_evicted_total"));
+    }
+
+    @Test
+    void shouldNotCountConsumedStatesTowardsCap() {
+        for (int i = 0; i < MAX_ENTRIES * 10; i++) {
+            State state = new State();
+            stateService.persist(state);
+            assertTrue(stateService.consume(state));
+        }
+
+        State state = new State();
+        stateService.persist(state);
+
+        assertTrue(stateService.consume(state));
+        assertEquals(0L, stateService.metrics().get("orchestrator_state_evicted_total"));
+    }
+
+    private static class TestClock extends Clock {
+        private Instant now = Instant.parse("2022-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.di.ipv.stub.orc.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StaticAssetsTest {
+    @TempDir Path dir;
+
+    @Test
+    void shouldLoadAndGzipOnlyTheAssetsItShrinks() throws Exception {
+        byte[] css = ".govuk-body { margin: 0; }\n".repeat(100).getBytes(StandardCharsets.UTF_8);
+        byte[] font = new byte[1024];
+        new Random(1).nextBytes(font);
+        Files.createDirectories(dir.resolve("gds/assets/fonts"));
+        Files.write(dir.resolve("gds/govuk-frontend.min.css"), css);
+        Files.write(dir.resolve("gds/assets/fonts/bold.woff2"), font);
+
+        StaticAssets assets = StaticAssets.load(dir);
+
+        assertEquals(
+                Set.of("/gds/govuk-frontend.min.css", "/gds/assets/fonts/bold.woff2"),
+                assets.paths());
+
+        StaticAssets.Asset stylesheet = assets.get("/gds/govuk-frontend.min.css");
+        assertEquals("text/css; charset=utf-8", stylesheet.contentType());
+        assertArrayEquals(css, stylesheet.identity());
+        try (GZIPInputStream gunzip =
+                new GZIPInputStream(new ByteArrayInputStream(stylesheet.gzip()))) {
+            assertArrayEquals(css, gunzip.readAllBytes());
+        }
+        assertTrue(stylesheet.etag().matches("\"[A-Za-z0-9_-]{43}\""));
+        assertNotEquals(stylesheet.etag(), stylesheet.gzipEtag());
+
+        StaticAssets.Asset bold = assets.get("/gds/assets/fonts/bold.woff2");
+        assertEquals("font/woff2", bold.contentType());
+        assertNull(bold.gzip());
+        assertNotEquals(stylesheet.etag(), bold.etag());
+    }
+
+    @Test
+    void shouldNegotiateGzipFromAcceptEncoding() {
+        assertTrue(StaticAssets.acceptsGzip("gzip, deflate, br"));
+        assertTrue(StaticAssets.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(StaticAssets.acceptsGzip("*"));
+        assertFalse(StaticAssets.acceptsGzip(null));
+        assertFalse(StaticAssets.acceptsGzip("identity"));
+        assertFalse(StaticAssets.acceptsGzip("gzip;q=0"));
+        assertFalse(StaticAssets.acceptsGzip("*, gzip;q=0"));
+        assertFalse(StaticAssets.acceptsGzip("br, *;q=0"));
+    }
+
+    @Test
+    void shouldMatchEitherVersionOfTheAssetInIfNoneMatch() {
+        StaticAssets.Asset asset =
+                new StaticAssets.Asset("text/css", new byte[0], new byte[0], "\"abc\"");
+
+        assertTrue(StaticAssets.notModified("\"abc\"", asset));
+        assertTrue(StaticAssets.notModified("\"other\", W/\"abc-gzip\"", asset));
+        assertTrue(StaticAssets.notModified("*", asset));
+        assertFalse(StaticAssets.notModified(null, asset));
+        assertFalse(StaticAssets.notModified("\"abcd\"", asset));
+    }
+}
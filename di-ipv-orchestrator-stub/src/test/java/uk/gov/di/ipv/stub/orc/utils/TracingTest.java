@@ -0,0 +1,142 @@
+package uk.gov.di.ipv.stub.orc.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TracingTest {
+    @TempDir Path dir;
+
+    @Test
+    void shouldNestSpansAndExportThemToAFile() throws Exception {
+        Path file = dir.resolve("spans.jsonl");
+        Tracing.exportTo("orchestrator-stub", file.toString(), 100);
+
+        String traceparent =
+                Tracing.inSpan(
+                        "journey",
+                        () -> {
+                            String journey = Tracing.traceparent();
+                            try (Tracing.Span phase = Tracing.start("jwt.sign")) {
+                                phase.attribute("note", "quoted \"value\"\n");
+                                phase.error();
+                            }
+                            assertEquals(journey, Tracing.traceparent());
+                            assertEquals(
+                                    journey,
+                                    CompletableFuture.supplyAsync(
+                                                    Tracing.inCurrentTrace(Tracing::traceparent))
+                                            .get());
+                            return journey;
+                        });
+        assertNull(Tracing.traceparent());
+        assertTrue(traceparent.matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"));
+
+        Map<String, JsonObject> spans = readSpans(file, 2);
+        JsonObject journey = spans.get("journey");
+        JsonObject phase = spans.get("jwt.sign");
+        assertEquals(traceparent.substring(3, 35), journey.get("traceId").getAsString());
+        assertEquals(traceparent.substring(36, 52), journey.get("spanId").getAsString());
+        assertFalse(journey.has("parentSpanId"));
+        assertEquals(journey.get("traceId"), phase.get("traceId"));
+        assertEquals(journey.get("spanId"), phase.get("parentSpanId"));
+        assertEquals(2, phase.getAsJsonObject("status").get("code").getAsInt());
+        assertEquals(
+                "quoted \"value\"\n",
+                phase.getAsJsonArray("attributes")
+                        .get(0)
+                        .getAsJsonObject()
+                        .getAsJsonObject("value")
+                        .get("stringValue")
+                        .getAsString());
+        assertTrue(
+                phase.get("endTimeUnixNano").getAsLong()
+                        >= phase.get("startTimeUnixNano").getAsLong());
+    }
+
+    @Test
+    void shouldMarkTheSpanAsAnErrorWhenTheTaskThrows() throws Exception {
+        Path file = dir.resolve("spans.jsonl");
+        Tracing.exportTo("orchestrator-stub", file.toString(), 100);
+
+        assertEquals("signed", Tracing.inSpan("jwt.sign", () -> "signed"));
+        IOException thrown =
+                assertThrows(
+                        IOException.class,
+                        () ->
+                                Tracing.inSpan(
+                                        "backchannel /token",
+                                        () -> {
+                                            throw new IOException("connection refused");
+                                        }));
+        assertEquals("connection refused", thrown.getMessage());
+        assertNull(Tracing.traceparent());
+
+        Map<String, JsonObject> spans = readSpans(file, 2);
+        assertFalse(spans.get("jwt.sign").has("status"));
+        assertEquals(
+                2,
+                spans.get("backchannel /token").getAsJsonObject("status").get("code").getAsInt());
+    }
+
+    private static Map<String, JsonObject> readSpans(Path file, int expected) throws Exception {
+        // Exported in the background, so wait for the batches to be written
+        for (int attempt = 0; attempt < 100; attempt++) {
+            List<JsonObject> spans = new ArrayList<>();
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file)) {
+                    JsonObject resourceSpans =
+                            JsonParser.parseString(line)
+                                    .getAsJsonObject()
+                                    .getAsJsonArray("resourceSpans")
+                                    .get(0)
+                                    .getAsJsonObject();
+                    assertEquals(
+                            "orchestrator-stub",
+                            resourceSpans
+                                    .getAsJsonObject("resource")
+                                    .getAsJsonArray("attributes")
+                                    .get(0)
+                                    .getAsJsonObject()
+                                    .getAsJsonObject("value")
+                                    .get("stringValue")
+                                    .getAsString());
+                    JsonArray batch =
+                            resourceSpans
+                                    .getAsJsonArray("scopeSpans")
+                                    .get(0)
+                                    .getAsJsonObject()
+                                    .getAsJsonArray("spans");
+                    for (JsonElement span : batch) {
+                        spans.add(span.getAsJsonObject());
+                    }
+                }
+            }
+            if (spans.size() >= expected) {
+                Map<String, JsonObject> byName = new HashMap<>();
+                spans.forEach(span -> byName.put(span.get("name").getAsString(), span));
+                return byName;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Spans were not exported");
+    }
+}
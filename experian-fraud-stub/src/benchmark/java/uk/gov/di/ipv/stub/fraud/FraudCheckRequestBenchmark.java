@@ -0,0 +1,70 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Contact;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.IdentityVerificationRequest;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares requests per second and bytes allocated per request for streaming the fraud check
+ * request with binding it to the DTOs, as the handler used to. Run with {@code ./gradlew
+ * benchmark}.
+ */
+public class FraudCheckRequestBenchmark {
+    private static final long BENCHMARK_MILLIS = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void benchmarkStreamingAgainstBindingTheRequest() throws Exception {
+        byte[] body = FraudCheckRequestTest.REQUEST.getBytes(StandardCharsets.UTF_8);
+
+        report(
+                "binding",
+                () -> {
+                    // As the handler used to: the whole body as a String, then the DTO tree
+                    String json = new String(body, StandardCharsets.UTF_8);
+                    Contact contact =
+                            mapper.readValue(json, IdentityVerificationRequest.class)
+                                    .getPayload()
+                                    .getContacts()
+                                    .get(0);
+                    mapper.writeValueAsBytes(contact.getPerson().getNames());
+                    mapper.writeValueAsBytes(contact.getAddresses());
+                });
+        report("streaming", () -> FraudCheckRequest.read(new ByteArrayInputStream(body), mapper));
+    }
+
+    private interface Parse {
+        void parse() throws Exception;
+    }
+
+    private static void report(String name, Parse parse) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < 1000; i++) {
+            parse.parse();
+        }
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BENCHMARK_MILLIS);
+        long start = System.nanoTime();
+        int requests = 0;
+        while (System.nanoTime() < deadline) {
+            parse.parse();
+            requests++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf(
+                "%s: %.0f requests/s, %d bytes allocated per request%n",
+                name, requests / seconds, allocated / requests);
+    }
+}
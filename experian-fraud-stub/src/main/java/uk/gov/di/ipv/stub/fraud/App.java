@@ -1,16 +1,31 @@
 package uk.gov.di.ipv.stub.fraud;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import spark.Spark;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class App {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         new App();
     }
 
-    public App() {
+    public App() throws IOException {
+        FaultInjector faultInjector = FaultInjector.fromConfig(new ObjectMapper());
+        if ("replay".equals(Config.FRAUD_TRAFFIC_MODE)) {
+            faultInjector.install(
+                    TrafficReplayer.load(Path.of(Config.FRAUD_TRAFFIC_PATH), new ObjectMapper()));
+        } else {
+            faultInjector.install();
+        }
+
         Spark.port(Integer.parseInt(Config.PORT));
 
+        AdmissionControl admissionControl = AdmissionControl.fromConfig();
+        admissionControl.install();
+
         Handler handler = new Handler();
 
         Spark.get("/", handler.root);
@@ -21,5 +36,26 @@ public class App {
         Spark.put("/fraud-response", handler.addFraudResponse);
         Spark.delete("/fraud-response", handler.deleteFraudResponse);
         Spark.get("/fraud-response", handler.getFraudResponse);
+
+        Spark.put("/fraud-responses", handler.importFraudResponses);
+        Spark.get("/fraud-responses", handler.exportFraudResponses);
+        Spark.get("/fraud-responses/ids", handler.listFraudResponseIds);
+        Spark.delete("/fraud-responses", handler.deleteFraudResponses);
+
+        Spark.get("/fraud-match-rules", handler.getMatchRules);
+        Spark.put("/fraud-match-rules", handler.updateMatchRules);
+
+        Spark.get("/logging", BodyLogger.getSettings);
+        Spark.put("/logging", BodyLogger.updateSettings);
+
+        Spark.get("/faults", faultInjector.getProfile);
+        Spark.put("/faults", faultInjector.updateProfile);
+
+        Spark.get("/metrics", admissionControl.getMetrics);
+
+        WarmUp warmUp = WarmUp.fromConfig();
+        handler.warmUp(warmUp);
+        Spark.get("/ready", warmUp.getReady);
+        warmUp.start();
     }
 }
@@ -5,6 +5,35 @@ import java.util.Optional;
 
 public class Config {
     public static final String PORT = getConfigValue("PORT", "8080");
+    public static final String LOG_BUFFER_SIZE = getConfigValue("LOG_BUFFER_SIZE", "10000");
+    public static final String LOG_FULL_BODIES = getConfigValue("LOG_FULL_BODIES", "false");
+    public static final String LOG_SAMPLE_RATES = getConfigValue("LOG_SAMPLE_RATES", "");
+    public static final String FAULT_PROFILES_PATH = getConfigValue("FAULT_PROFILES_PATH", "");
+    public static final String FAULT_PROFILE = getConfigValue("FAULT_PROFILE", "none");
+    public static final String LIMITER_MODE = getConfigValue("LIMITER_MODE", "off");
+    public static final String LIMITER_ROUTES = getConfigValue("LIMITER_ROUTES", "*");
+    public static final String LIMITER_LIMIT = getConfigValue("LIMITER_LIMIT", "64");
+    public static final String LIMITER_MAX_LIMIT = getConfigValue("LIMITER_MAX_LIMIT", "512");
+    public static final String LIMITER_LATENCY_TARGET_MILLIS =
+            getConfigValue("LIMITER_LATENCY_TARGET_MILLIS", "500");
+    public static final String LIMITER_QUEUE_TIMEOUT_MILLIS =
+            getConfigValue("LIMITER_QUEUE_TIMEOUT_MILLIS", "0");
+    public static final String LIMITER_RETRY_AFTER_SECONDS =
+            getConfigValue("LIMITER_RETRY_AFTER_SECONDS", "1");
+    public static final String FRAUD_STORE_PATH = getConfigValue("FRAUD_STORE_PATH", "");
+    public static final String FRAUD_STORE_CACHE_SIZE =
+            getConfigValue("FRAUD_STORE_CACHE_SIZE", "500");
+    public static final String FRAUD_STORE_POLL_MILLIS =
+            getConfigValue("FRAUD_STORE_POLL_MILLIS", "1000");
+    public static final String FRAUD_STORE_COMPACT_SECONDS =
+            getConfigValue("FRAUD_STORE_COMPACT_SECONDS", "300");
+    public static final String FRAUD_TRAFFIC_MODE = getConfigValue("FRAUD_TRAFFIC_MODE", "off");
+    public static final String FRAUD_TRAFFIC_PATH = getConfigValue("FRAUD_TRAFFIC_PATH", "");
+    public static final String FRAUD_TRAFFIC_BUFFER_SIZE =
+            getConfigValue("FRAUD_TRAFFIC_BUFFER_SIZE", "10000");
+    public static final String FRAUD_MATCH_RULES_PATH =
+            getConfigValue("FRAUD_MATCH_RULES_PATH", "");
+    public static final String WARM_UP_ITERATIONS = getConfigValue("WARM_UP_ITERATIONS", "50");
     public static final String[] CI1 = getConfigValue("CI1");
     public static final String[] CI2 = getConfigValue("CI2");
     public static final String[] CI3 = getConfigValue("CI3");
@@ -18,9 +47,9 @@ public class Config {
     }
 
     private static String[] getConfigValue(String key) {
-        return Optional.of(
-                        System.getenv(Objects.requireNonNull(key, "no env var specified"))
-                                .split(","))
+        return Optional.ofNullable(
+                        System.getenv(Objects.requireNonNull(key, "no env var specified")))
+                .map(value -> value.split(","))
                 .orElse(new String[] {});
     }
 }
@@ -0,0 +1,164 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * The parts of a fraud check request the stub answers with: the first contact's names, date of
+ * birth and addresses. Names and addresses are kept as the raw JSON sent, ready to be echoed back.
+ */
+public record FraudCheckRequest(
+        String surname, String forename, byte[] names, String dateOfBirth, byte[] addresses) {
+
+    private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Streams the request, reading only {@code payload.contacts[0]} and skipping everything else
+     * without binding it. Parsing stops once the first contact has been read, leaving the rest of
+     * the body unread.
+     */
+    public static FraudCheckRequest read(InputStream body, ObjectMapper mapper) throws IOException {
+        try (JsonParser parser = mapper.createParser(body)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("payload") && parser.currentToken() == JsonToken.START_OBJECT) {
+                    FraudCheckRequest request = readPayload(parser, mapper);
+                    if (request != null) {
+                        return request;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        throw new IOException("No contacts in fraud check request");
+    }
+
+    private static FraudCheckRequest readPayload(JsonParser parser, ObjectMapper mapper)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("contacts")
+                    && parser.currentToken() == JsonToken.START_ARRAY
+                    && parser.nextToken() == JsonToken.START_OBJECT) {
+                return readContact(parser, mapper);
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    private static FraudCheckRequest readContact(JsonParser parser, ObjectMapper mapper)
+            throws IOException {
+        String surname = null;
+        String forename = null;
+        byte[] names = EMPTY_ARRAY;
+        String dateOfBirth = null;
+        byte[] addresses = EMPTY_ARRAY;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("addresses")) {
+                addresses = copyRaw(parser, mapper);
+            } else if (field.equals("person") && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String personField = parser.getCurrentName();
+                    parser.nextToken();
+                    if (personField.equals("names")) {
+                        // Small enough to read as a tree, which also gives us the surname
+                        JsonNode nameNodes = parser.readValueAsTree();
+                        surname = nameNodes.path(0).path("surName").textValue();
+                        forename = nameNodes.path(0).path("firstName").textValue();
+                        names = mapper.writeValueAsBytes(nameNodes);
+                    } else if (personField.equals("personDetails")
+                            && parser.currentToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String detailsField = parser.getCurrentName();
+                            parser.nextToken();
+                            if (detailsField.equals("dateOfBirth")) {
+                                dateOfBirth = parser.getValueAsString();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new FraudCheckRequest(surname, forename, names, dateOfBirth, addresses);
+    }
+
+    /**
+     * The postcode of the current address, or the first address if none is marked current. Parses
+     * the addresses, so is only worth calling when something needs the postcode.
+     */
+    public String postcode(ObjectMapper mapper) throws IOException {
+        JsonNode addressNodes = mapper.readTree(addresses);
+        for (JsonNode address : addressNodes) {
+            if ("CURRENT".equals(address.path("addressType").textValue())) {
+                return address.path("postal").textValue();
+            }
+        }
+        return addressNodes.path(0).path("postal").textValue();
+    }
+
+    /**
+     * Identifies the applicant across requests, from their surname, forename, date of birth and
+     * postcode with spaces removed and upper-cased. Request IDs and timestamps are left out, so the
+     * same applicant checked again has the same fingerprint.
+     */
+    public String fingerprint(ObjectMapper mapper) throws IOException {
+        return String.join(
+                "|",
+                normalise(surname),
+                normalise(forename),
+                normalise(dateOfBirth),
+                normalise(postcode(mapper)));
+    }
+
+    private static String normalise(String value) {
+        return value == null ? "" : value.replace(" ", "").toUpperCase(Locale.ROOT);
+    }
+
+    /** The applicant's details as JSON, for logging. */
+    public String toJson() {
+        return "{\"names\":%s,\"dateOfBirth\":%s,\"addresses\":%s}"
+                .formatted(
+                        new String(names, StandardCharsets.UTF_8),
+                        dateOfBirth == null ? "null" : "\"" + dateOfBirth + "\"",
+                        new String(addresses, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] copyRaw(JsonParser parser, ObjectMapper mapper) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(512);
+        try (JsonGenerator generator = mapper.createGenerator(raw)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return raw.toByteArray();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException(
+                    "Expected %s in fraud check request but found %s".formatted(expected, actual));
+        }
+    }
+}
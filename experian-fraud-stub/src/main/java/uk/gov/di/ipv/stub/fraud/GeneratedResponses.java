@@ -0,0 +1,95 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds responses from an outcome encoded in the applicant's surname, so test scenarios need no
+ * stored response. The surname is {@code GEN_<outcome>[_<ruleId>...][_SCORE<score>]}, e.g. {@code
+ * GEN_REFER_U001_U015_SCORE45}, where the outcome is one of {@code AUTH1}, {@code AUTH2}, {@code
+ * NOAUTH} or {@code REFER}. The response is the base response for the outcome with the rule IDs and
+ * score spliced in, so memory stays the same however many scenarios are requested.
+ */
+public class GeneratedResponses {
+    private static final String PREFIX = "GEN_";
+    private static final String SCORE = "SCORE";
+    private static final Map<String, String> OUTCOMES =
+            Map.of(
+                    "AUTH", "AUTH1",
+                    "AUTH1", "AUTH1",
+                    "AUTH2", "AUTH2",
+                    "NOAUTH", "NOAUTH",
+                    "REFER", "REFER");
+
+    public record Scenario(String outcome, List<String> ruleIds, Integer score) {
+
+        /**
+         * The scenario encoded in the surname, or null if it is an ordinary surname.
+         *
+         * @throws IllegalArgumentException if the surname is reserved but not a valid scenario
+         */
+        public static Scenario parse(String surname) {
+            if (surname == null || !surname.toUpperCase(Locale.ROOT).startsWith(PREFIX)) {
+                return null;
+            }
+            String[] parts = surname.toUpperCase(Locale.ROOT).split("_");
+            String outcome = parts.length > 1 ? OUTCOMES.get(parts[1]) : null;
+            if (outcome == null) {
+                throw new IllegalArgumentException(
+                        "Unknown outcome in '%s', expected one of %s"
+                                .formatted(surname, OUTCOMES.keySet()));
+            }
+            List<String> ruleIds = new ArrayList<>();
+            Integer score = null;
+            for (int i = 2; i < parts.length; i++) {
+                if (parts[i].startsWith(SCORE)) {
+                    try {
+                        score = Integer.valueOf(parts[i].substring(SCORE.length()));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(
+                                "Invalid score '%s' in '%s'".formatted(parts[i], surname));
+                    }
+                } else if (!parts[i].isEmpty()) {
+                    ruleIds.add(parts[i]);
+                }
+            }
+            return new Scenario(outcome, List.copyOf(ruleIds), score);
+        }
+    }
+
+    private final Map<String, ResponseTemplate> bases;
+
+    public GeneratedResponses(InMemoryDataStore inMemoryDataStore, ObjectMapper mapper) {
+        this.bases =
+                Map.of(
+                        "AUTH1", base(inMemoryDataStore.getResponse("AUTH1"), mapper),
+                        "AUTH2", base(inMemoryDataStore.getResponse("AUTH2"), mapper),
+                        "NOAUTH", base(inMemoryDataStore.getResponse("NOAUTH"), mapper),
+                        "REFER", base(inMemoryDataStore.getResponse("REFER"), mapper));
+    }
+
+    public void writeTo(Scenario scenario, OutputStream out, ResponseTemplate.Applicant applicant)
+            throws IOException {
+        ResponseTemplate base = bases.get(scenario.outcome());
+        base.writeTo(
+                out,
+                applicant.withOutcome(base.rulesWithIds(scenario.ruleIds()), scenario.score()));
+    }
+
+    private static ResponseTemplate base(
+            IdentityVerificationResponse response, ObjectMapper mapper) {
+        try {
+            return ResponseTemplate.generative(response, mapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to build generative template", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package uk.gov.di.ipv.stub.fraud;
 
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,84 +10,203 @@ import spark.Route;
 import uk.gov.di.ipv.stub.fraud.gateway.dto.request.*;
 import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
 
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Handler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Handler.class);
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final byte[] WARM_UP_REQUEST =
+            """
+            {"payload": {"contacts": [{
+              "addresses": [{"addressType": "CURRENT", "postal": "BA2 5AA"}],
+              "person": {"names": [{"firstName": "Kenneth", "surName": "Decerqueira"}],
+                         "personDetails": {"dateOfBirth": "1965-07-08"}}
+            }]}}
+            """
+                    .getBytes(StandardCharsets.UTF_8);
     private ObjectMapper mapper;
     private InMemoryDataStore inMemoryDataStore;
+    // Replaced whole when the rules are updated, so a lookup always sees one consistent set
+    private volatile MatchRules matchRules;
+    private GeneratedResponses generatedResponses;
+    private TrafficRecorder trafficRecorder;
 
-    protected Handler() {
-        mapper = new ObjectMapper();
-        inMemoryDataStore = new InMemoryDataStore(mapper);
+    protected Handler() throws IOException {
+        this(new ObjectMapper());
     }
 
-    protected Route root = (Request request, Response response) -> "ok";
-
-    protected Route fraudCheck =
-            (Request request, Response response) -> {
-                LOGGER.info("Fraud request: " + request.body());
-
-                IdentityVerificationRequest fraudRequest =
-                        mapper.readValue(request.body(), IdentityVerificationRequest.class);
-
-                Contact requestContact = fraudRequest.getPayload().getContacts().get(0);
-                String requestDob = requestContact.getPerson().getPersonDetails().getDateOfBirth();
-                List<Name> requestNames = requestContact.getPerson().getNames();
-                List<Address> requestAddress = requestContact.getAddresses();
+    private Handler(ObjectMapper mapper) throws IOException {
+        this(
+                mapper,
+                new InMemoryDataStore(mapper, openResponseLog(mapper)),
+                loadMatchRules(mapper));
+        if ("record".equals(Config.FRAUD_TRAFFIC_MODE)) {
+            this.trafficRecorder =
+                    new TrafficRecorder(
+                            Path.of(Config.FRAUD_TRAFFIC_PATH),
+                            Integer.parseInt(Config.FRAUD_TRAFFIC_BUFFER_SIZE),
+                            mapper);
+        }
+    }
 
-                IdentityVerificationResponse experianResponse =
-                        inMemoryDataStore.getResponseOrElse(
-                                requestNames.get(0).getSurName().toUpperCase(),
-                                inMemoryDataStore.getResponse("AUTH1"));
-                LOGGER.debug("Stubbed experian response = " + experianResponse);
+    Handler(ObjectMapper mapper, InMemoryDataStore inMemoryDataStore) {
+        this(mapper, inMemoryDataStore, MatchRules.NONE);
+    }
 
-                Random randGen = new Random();
-                experianResponse
-                        .getResponseHeader()
-                        .setClientReferenceId(UUID.randomUUID().toString());
+    Handler(ObjectMapper mapper, InMemoryDataStore inMemoryDataStore, MatchRules matchRules) {
+        this.mapper = mapper;
+        this.inMemoryDataStore = inMemoryDataStore;
+        this.matchRules = matchRules;
+        this.generatedResponses = new GeneratedResponses(inMemoryDataStore, mapper);
+    }
 
-                experianResponse
-                        .getResponseHeader()
-                        .setExpRequestId(String.format("RB0000%08d", randGen.nextInt(99999999)));
+    private static MatchRules loadMatchRules(ObjectMapper mapper) throws IOException {
+        if (Config.FRAUD_MATCH_RULES_PATH.isBlank()) {
+            return MatchRules.NONE;
+        }
+        MatchRules matchRules =
+                MatchRules.read(Files.readAllBytes(Path.of(Config.FRAUD_MATCH_RULES_PATH)), mapper);
+        LOGGER.info("Loaded {} match rules", matchRules.rules().size());
+        return matchRules;
+    }
 
-                Contact responseContact =
-                        experianResponse.getOriginalRequestData().getContacts().get(0);
-                Person responseContactPerson = responseContact.getPerson();
+    private static ResponseLog openResponseLog(ObjectMapper mapper) throws IOException {
+        if (Config.FRAUD_STORE_PATH.isBlank()) {
+            return null;
+        }
+        ResponseLog responseLog =
+                ResponseLog.open(
+                        Path.of(Config.FRAUD_STORE_PATH),
+                        Integer.parseInt(Config.FRAUD_STORE_CACHE_SIZE),
+                        mapper);
+        responseLog.startMaintenance(
+                Duration.ofMillis(Long.parseLong(Config.FRAUD_STORE_POLL_MILLIS)),
+                Duration.ofSeconds(Long.parseLong(Config.FRAUD_STORE_COMPACT_SECONDS)));
+        return responseLog;
+    }
 
-                responseContact.setAddresses(requestAddress);
+    protected Route root = (Request request, Response response) -> "ok";
 
-                responseContactPerson.setNames(requestNames);
-                responseContactPerson.getPersonDetails().setDateOfBirth(requestDob);
+    protected Route fraudCheck =
+            (Request request, Response response) -> {
+                long started = System.nanoTime();
+                FraudCheckRequest fraudRequest;
+                try (InputStream body = body(request)) {
+                    fraudRequest = FraudCheckRequest.read(body, mapper);
+                    // Drain the rest so Jetty can reuse the connection
+                    body.transferTo(OutputStream.nullOutputStream());
+                }
+                BodyLogger.log(request.pathInfo(), "applicant", fraudRequest::toJson);
 
-                if (requestNames.get(0).getSurName().equalsIgnoreCase("SERVER_FAILURE")) {
+                if ("SERVER_FAILURE".equalsIgnoreCase(fraudRequest.surname())) {
                     response.status(503);
+                    if (trafficRecorder != null) {
+                        trafficRecorder.record(fraudRequest, 503, new byte[0], started);
+                    }
                     return "";
-                } else {
+                }
+
+                try {
                     response.header("Content-Type", "application/json");
                     response.status(200);
-                    return mapper.writeValueAsString(experianResponse);
+                    OutputStream out = response.raw().getOutputStream();
+                    if (trafficRecorder == null) {
+                        writeFraudResponse(fraudRequest, out);
+                    } else {
+                        // Kept for the recording, so only copied when recording
+                        ByteArrayOutputStream recorded = new ByteArrayOutputStream(4096);
+                        writeFraudResponse(fraudRequest, recorded);
+                        recorded.writeTo(out);
+                        trafficRecorder.record(fraudRequest, 200, recorded.toByteArray(), started);
+                    }
+                    return "";
+                } catch (IllegalArgumentException e) {
+                    // Thrown for an invalid scenario before anything is written
+                    response.header("Content-Type", "text/plain");
+                    response.status(400);
+                    return e.getMessage();
                 }
             };
 
+    /** Adds a synthetic fraud check and a stored response round trip to the warm-up. */
+    void warmUp(WarmUp warmUp) {
+        warmUp.step(
+                "fraud check",
+                () ->
+                        writeFraudResponse(
+                                FraudCheckRequest.read(
+                                        new ByteArrayInputStream(WARM_UP_REQUEST), mapper),
+                                OutputStream.nullOutputStream()));
+        warmUp.step(
+                "fraud response json",
+                () ->
+                        mapper.readValue(
+                                mapper.writeValueAsBytes(inMemoryDataStore.getResponse("AUTH1")),
+                                IdentityVerificationResponse.class));
+    }
+
+    void writeFraudResponse(FraudCheckRequest fraudRequest, OutputStream out) throws IOException {
+        ResponseTemplate.Applicant applicant =
+                new ResponseTemplate.Applicant(
+                        UUID.randomUUID().toString(),
+                        String.format("RB0000%08d", ThreadLocalRandom.current().nextInt(99999999)),
+                        fraudRequest.names(),
+                        fraudRequest.dateOfBirth(),
+                        fraudRequest.addresses());
+
+        GeneratedResponses.Scenario scenario =
+                GeneratedResponses.Scenario.parse(fraudRequest.surname());
+        if (scenario != null) {
+            generatedResponses.writeTo(scenario, out, applicant);
+            return;
+        }
+
+        ResponseTemplate template = null;
+        String matched = matchRules.match(fraudRequest, mapper);
+        if (matched != null) {
+            template = inMemoryDataStore.getTemplate(matched);
+        }
+        if (template == null && fraudRequest.surname() != null) {
+            template = inMemoryDataStore.getTemplate(fraudRequest.surname().toUpperCase());
+        }
+        if (template == null) {
+            template = inMemoryDataStore.getTemplate("AUTH1");
+        }
+
+        template.writeTo(out, applicant);
+    }
+
+    private static InputStream body(Request request) throws IOException {
+        // Spark's request wrapper would buffer the whole body first, so read past it
+        ServletRequest raw = request.raw();
+        if (raw instanceof ServletRequestWrapper wrapper) {
+            raw = wrapper.getRequest();
+        }
+        return raw.getInputStream();
+    }
+
     protected Route addFraudResponse =
             (Request request, Response response) -> {
-                LOGGER.info("identity verification response: " + request.body());
+                String body = request.body();
+                BodyLogger.log(request.pathInfo(), "identity verification response", () -> body);
 
                 IdentityVerificationResponse experianResponse =
-                        mapper.readValue(request.body(), IdentityVerificationResponse.class);
-                inMemoryDataStore.addResponse(
-                        experianResponse
-                                .getOriginalRequestData()
-                                .getContacts()
-                                .get(0)
-                                .getPerson()
-                                .getNames()
-                                .get(0)
-                                .getSurName()
-                                .toUpperCase(),
-                        experianResponse);
+                        mapper.readValue(body, IdentityVerificationResponse.class);
+                inMemoryDataStore.saveResponse(responseId(experianResponse), experianResponse);
 
                 IdentityVerificationRequest fraudRequest = new IdentityVerificationRequest();
                 Payload payload = new Payload();
@@ -95,11 +215,122 @@ public class Handler {
                 return mapper.writeValueAsString(fraudRequest);
             };
 
+    /**
+     * Imports newline-delimited responses streamed from the body, saving them in batches as they
+     * are read. Batches saved before an invalid response are kept.
+     */
+    protected Route importFraudResponses =
+            (Request request, Response response) -> {
+                int imported = 0;
+                Map<String, IdentityVerificationResponse> batch = new LinkedHashMap<>();
+                try (InputStream body = body(request);
+                        MappingIterator<IdentityVerificationResponse> responses =
+                                mapper.readerFor(IdentityVerificationResponse.class)
+                                        .readValues(body)) {
+                    while (responses.hasNextValue()) {
+                        IdentityVerificationResponse experianResponse = responses.nextValue();
+                        batch.put(responseId(experianResponse), experianResponse);
+                        if (batch.size() == IMPORT_BATCH_SIZE) {
+                            inMemoryDataStore.saveResponses(batch);
+                            imported += batch.size();
+                            batch.clear();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Fraud response import stopped after {}", imported, e);
+                    response.status(400);
+                    return "Invalid response after %d imported: %s"
+                            .formatted(imported, e.getMessage());
+                }
+                inMemoryDataStore.saveResponses(batch);
+                imported += batch.size();
+                LOGGER.info("Imported {} fraud responses", imported);
+
+                response.header("Content-Type", "application/json");
+                return mapper.writeValueAsString(Map.of("imported", imported));
+            };
+
+    /** Streams every response whose id starts with the prefix as newline-delimited JSON. */
+    protected Route exportFraudResponses =
+            (Request request, Response response) -> {
+                response.header("Content-Type", "application/x-ndjson");
+                OutputStream out = response.raw().getOutputStream();
+                for (String id : inMemoryDataStore.ids(prefix(request))) {
+                    if (inMemoryDataStore.writeResponse(id, out)) {
+                        out.write('\n');
+                    }
+                }
+                return "";
+            };
+
+    protected Route listFraudResponseIds =
+            (Request request, Response response) -> {
+                response.header("Content-Type", "application/json");
+                return mapper.writeValueAsString(inMemoryDataStore.ids(prefix(request)));
+            };
+
+    protected Route deleteFraudResponses =
+            (Request request, Response response) -> {
+                String prefix = request.queryParams("prefix");
+                if (prefix == null) {
+                    response.status(400);
+                    return "prefix is required, use prefix= to delete every response";
+                }
+                int removed = inMemoryDataStore.removeResponses(prefix.toUpperCase());
+                LOGGER.info("Removed {} fraud responses starting with '{}'", removed, prefix);
+                return String.format("%d removed", removed);
+            };
+
+    private static String prefix(Request request) {
+        return Optional.ofNullable(request.queryParams("prefix")).orElse("").toUpperCase();
+    }
+
+    private static String responseId(IdentityVerificationResponse experianResponse) {
+        return experianResponse
+                .getOriginalRequestData()
+                .getContacts()
+                .get(0)
+                .getPerson()
+                .getNames()
+                .get(0)
+                .getSurName()
+                .toUpperCase();
+    }
+
+    protected Route getMatchRules =
+            (Request request, Response response) -> {
+                response.header("Content-Type", "application/json");
+                return mapper.writeValueAsString(matchRules.rules());
+            };
+
+    /** Replaces the match rules, rejecting them all if any names a response that is not stored. */
+    protected Route updateMatchRules =
+            (Request request, Response response) -> {
+                byte[] body = request.bodyAsBytes();
+                BodyLogger.log(request.pathInfo(), "match rules", () -> new String(body));
+
+                MatchRules updated = MatchRules.read(body, mapper);
+                List<String> unknown =
+                        updated.rules().stream()
+                                .map(MatchRules.Rule::response)
+                                .filter(id -> id == null || !inMemoryDataStore.contains(id))
+                                .distinct()
+                                .toList();
+                if (!unknown.isEmpty()) {
+                    response.status(400);
+                    return String.format("Unknown responses %s", unknown);
+                }
+                matchRules = updated;
+                LOGGER.info("Updated to {} match rules", updated.rules().size());
+                return String.format("%d rules", updated.rules().size());
+            };
+
     protected Route deleteFraudResponse =
             (Request request, Response response) -> {
-                LOGGER.info("Fraud request: " + request.body());
+                String body = request.body();
+                BodyLogger.log(request.pathInfo(), "deletion request", () -> body);
 
-                Map<String, String> deletionRequest = mapper.readValue(request.body(), Map.class);
+                Map<String, String> deletionRequest = mapper.readValue(body, Map.class);
 
                 String id = deletionRequest.get("fraudResponseId");
 
@@ -112,7 +343,7 @@ public class Handler {
     protected Route getFraudResponse =
             (Request request, Response response) -> {
                 String fraudResponseId = request.queryParams("fraudResponseId");
-                LOGGER.info("Fraud request ID: " + fraudResponseId);
+                LOGGER.info("Fraud request ID: {}", fraudResponseId);
 
                 response.header("Content-Type", "application/json");
                 return mapper.writeValueAsString(inMemoryDataStore.getResponse(fraudResponseId));
@@ -1,100 +1,264 @@
 package uk.gov.di.ipv.stub.fraud;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
-import uk.gov.di.ipv.stub.fraud.gateway.dto.response.Rule;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static uk.gov.di.ipv.stub.fraud.Util.getResourceAsStream;
-import static uk.gov.di.ipv.stub.fraud.Util.mapFileToObject;
 
 public class InMemoryDataStore {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryDataStore.class);
-    private final HashMap<String, IdentityVerificationResponse> experianResponses = new HashMap<>();
+    private static final String REFER = "REFER";
+    private static final Map<String, String> STARTUP_RESOURCES =
+            Map.of(
+                    "AUTH1",
+                    "/GenericResponse/fraud-ex--auth1.json",
+                    "AUTH2",
+                    "/GenericResponse/fraud-ex--auth2.json",
+                    "NOAUTH",
+                    "/GenericResponse/fraud-ex--no-auth.json",
+                    REFER,
+                    "/GenericResponse/fraud-ex--refer.json");
+    private static final Map<String, String> ON_FIRST_USE_RESOURCES =
+            Map.of(
+                    "FARRELL", "/SpecificResponse/fraud-ex-ci1-farrell.json",
+                    "ARKIL", "/SpecificResponse/fraud-ex-ci1-arkil.json",
+                    "GILT", "/SpecificResponse/fraud-ex-ci2-gilt.json",
+                    "KENNEDY", "/SpecificResponse/fraud-ex-ci3-kennedy.json");
+
+    // Templates are shared by concurrent requests and must not be mutated once added
+    private final NavigableMap<String, ResponseTemplate> experianResponses =
+            new ConcurrentSkipListMap<>();
+    // Built-in responses not loaded until first asked for
+    private final NavigableMap<String, String> unloadedResources =
+            new ConcurrentSkipListMap<>(ON_FIRST_USE_RESOURCES);
+    private final ObjectMapper mapper;
+    // Responses saved through the admin API, which take precedence over the built-in ones
+    private final ResponseLog responseLog;
 
     public InMemoryDataStore(ObjectMapper mapper) {
+        this(mapper, null);
+    }
+
+    public InMemoryDataStore(ObjectMapper mapper, ResponseLog responseLog) {
+        this.mapper = mapper;
+        this.responseLog = responseLog;
         init();
     }
 
+    public boolean contains(final String id) {
+        return experianResponses.containsKey(id)
+                || unloadedResources.containsKey(id)
+                || (responseLog != null && responseLog.contains(id));
+    }
+
     public IdentityVerificationResponse getResponse(final String id) {
-        return experianResponses.get(id);
+        if (responseLog != null && responseLog.contains(id)) {
+            try {
+                return responseLog.getResponse(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read response " + id, e);
+            }
+        }
+        ResponseTemplate template = builtIn(id);
+        return template == null ? null : template.response();
+    }
+
+    public ResponseTemplate getTemplateOrElse(final String id, final ResponseTemplate alt) {
+        ResponseTemplate template = getTemplate(id);
+        return template == null ? alt : template;
+    }
+
+    public ResponseTemplate getTemplate(final String id) {
+        if (responseLog != null && responseLog.contains(id)) {
+            try {
+                return responseLog.getTemplate(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read response " + id, e);
+            }
+        }
+        return builtIn(id);
     }
 
-    public IdentityVerificationResponse getResponseOrElse(
-            final String id, final IdentityVerificationResponse alt) {
-        return experianResponses.getOrDefault(id, alt);
+    /** Adds a response from the admin API, persisting it when a response log is configured. */
+    public void saveResponse(
+            final String id, final IdentityVerificationResponse identityVerificationResponse) {
+        if (responseLog == null) {
+            addResponse(id, identityVerificationResponse);
+            return;
+        }
+        try {
+            responseLog.put(id, identityVerificationResponse);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save response " + id, e);
+        }
     }
 
     public void addResponse(
             final String id, final IdentityVerificationResponse identityVerificationResponse) {
-        experianResponses.put(id, identityVerificationResponse);
+        try {
+            experianResponses.put(id, ResponseTemplate.of(identityVerificationResponse, mapper));
+            unloadedResources.remove(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize response " + id, e);
+        }
     }
 
     public void addResponse(final String id, final String identityVerificationResponse) {
-        experianResponses.put(
-                id,
-                mapFileToObject(
-                        getResourceAsStream(identityVerificationResponse),
-                        IdentityVerificationResponse.class));
+        experianResponses.put(id, load(identityVerificationResponse, false));
+        unloadedResources.remove(id);
     }
 
-    public boolean removeResponse(final String id) {
-        IdentityVerificationResponse response = experianResponses.get(id);
-        if (response != null) {
-            experianResponses.remove(id);
+    /** Adds responses from the admin API in one batch. */
+    public void saveResponses(final Map<String, IdentityVerificationResponse> responses) {
+        if (responseLog == null) {
+            responses.forEach(this::addResponse);
+            return;
+        }
+        try {
+            responseLog.putAll(responses);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save " + responses.size() + " responses", e);
+        }
+    }
+
+    /** The ids of every response starting with the prefix, in order. */
+    public List<String> ids(final String prefix) {
+        SortedSet<String> ids = new TreeSet<>();
+        ids.addAll(withPrefix(experianResponses, prefix));
+        ids.addAll(withPrefix(unloadedResources, prefix));
+        if (responseLog != null) {
+            ids.addAll(responseLog.ids(prefix));
+        }
+        return List.copyOf(ids);
+    }
+
+    /** Writes the response's JSON, returning false if there is no such response. */
+    public boolean writeResponse(final String id, final OutputStream out) throws IOException {
+        if (responseLog != null && responseLog.writeResponse(id, out)) {
             return true;
-        } else {
+        }
+        ResponseTemplate template = builtIn(id);
+        if (template == null) {
             return false;
         }
+        mapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(out, template.response());
+        return true;
     }
 
-    private void init() {
-        addResponse("AUTH1", "/GenericResponse/fraud-ex--auth1.json");
-        addResponse("AUTH2", "/GenericResponse/fraud-ex--auth2.json");
-        addResponse("NOAUTH", "/GenericResponse/fraud-ex--no-auth.json");
-        addResponse("REFER", "/GenericResponse/fraud-ex--refer.json");
-
-        addResponse("FARRELL", "/SpecificResponse/fraud-ex-ci1-farrell.json");
-        addResponse("ARKIL", "/SpecificResponse/fraud-ex-ci1-arkil.json");
-        addResponse("GILT", "/SpecificResponse/fraud-ex-ci2-gilt.json");
-        addResponse("KENNEDY", "/SpecificResponse/fraud-ex-ci3-kennedy.json");
-
-        addResponse("CI1", SerializationUtils.clone(experianResponses.get("REFER")));
-        addResponse("CI2", SerializationUtils.clone(experianResponses.get("REFER")));
-        addResponse("CI3", SerializationUtils.clone(experianResponses.get("REFER")));
-        addResponse("CI4", SerializationUtils.clone(experianResponses.get("REFER")));
-        addResponse("CI5", SerializationUtils.clone(experianResponses.get("REFER")));
-
-        setRuleId("CI1", Config.CI1);
-        setRuleId("CI2", Config.CI2);
-        setRuleId("CI3", Config.CI3);
-        setRuleId("CI4", Config.CI4);
-        setRuleId("CI5", Config.CI5);
-    }
-
-    private void setRuleId(String ci, String... Ucode) {
-        List<Rule> Rules =
-                experianResponses
-                        .get(ci)
-                        .getClientResponsePayload()
-                        .getDecisionElements()
-                        .get(0)
-                        .getRules();
-        Rules.get(0).setRuleId(Ucode[0]);
-
-        if (Ucode.length > 1) {
-            for (int i = 1; i < Ucode.length; i++) {
-                Rule newRule = new Rule();
-                newRule.setRuleId(Ucode[i]);
-
-                Rules.add(newRule);
+    /** Removes every response starting with the prefix, returning how many there were. */
+    public int removeResponses(final String prefix) {
+        List<String> ids = ids(prefix);
+        ids.forEach(experianResponses::remove);
+        ids.forEach(unloadedResources::remove);
+        if (responseLog != null) {
+            try {
+                responseLog.deleteAll(ids);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to remove responses " + prefix + "*", e);
+            }
+        }
+        return ids.size();
+    }
+
+    public boolean removeResponse(final String id) {
+        boolean removed = experianResponses.remove(id) != null;
+        removed |= unloadedResources.remove(id) != null;
+        if (responseLog != null) {
+            try {
+                removed |= responseLog.delete(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to remove response " + id, e);
             }
         }
+        return removed;
+    }
+
+    private void init() {
+        long start = System.nanoTime();
+        Map<String, ResponseTemplate> loaded =
+                STARTUP_RESOURCES.entrySet().parallelStream()
+                        .collect(
+                                Collectors.toMap(
+                                        Map.Entry::getKey,
+                                        // REFER is the base the CI responses are overlaid on
+                                        entry ->
+                                                load(
+                                                        entry.getValue(),
+                                                        entry.getKey().equals(REFER))));
+        experianResponses.putAll(loaded);
+
+        ResponseTemplate refer = loaded.get(REFER);
+        addOverlay("CI1", refer, Config.CI1);
+        addOverlay("CI2", refer, Config.CI2);
+        addOverlay("CI3", refer, Config.CI3);
+        addOverlay("CI4", refer, Config.CI4);
+        addOverlay("CI5", refer, Config.CI5);
+
+        LOGGER.info(
+                "Loaded {} fraud responses in {} ms, {} more load on first use",
+                experianResponses.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                unloadedResources.size());
+    }
+
+    private ResponseTemplate builtIn(final String id) {
+        ResponseTemplate template = experianResponses.get(id);
+        if (template == null && unloadedResources.containsKey(id)) {
+            template =
+                    experianResponses.computeIfAbsent(
+                            id,
+                            key -> {
+                                String resource = unloadedResources.get(key);
+                                return resource == null ? null : load(resource, false);
+                            });
+            unloadedResources.remove(id);
+        }
+        return template;
+    }
+
+    private void addOverlay(final String id, final ResponseTemplate base, final String... Ucode) {
+        try {
+            experianResponses.put(id, base.withRuleIds(List.of(Ucode)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to overlay response " + id, e);
+        }
+    }
+
+    private ResponseTemplate load(final String resource, final boolean generative) {
+        try (InputStream inputStream = getResourceAsStream(resource)) {
+            IdentityVerificationResponse response =
+                    mapper.readValue(inputStream, IdentityVerificationResponse.class);
+            return generative
+                    ? ResponseTemplate.generative(response, mapper)
+                    : ResponseTemplate.of(response, mapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load response " + resource, e);
+        }
+    }
+
+    private static List<String> withPrefix(
+            final NavigableMap<String, ?> responses, final String prefix) {
+        return responses.tailMap(prefix).keySet().stream()
+                .takeWhile(id -> id.startsWith(prefix))
+                .toList();
     }
 }
@@ -0,0 +1,164 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks the stored response for an applicant by matching their surname, forename, date of birth and
+ * postcode against a list of rules. A field left out of a rule, or given as {@code *}, matches
+ * anything. When several rules match, the highest priority wins, then the rule with more fields,
+ * then the earlier rule.
+ *
+ * <p>Rules are compiled into one hash index per combination of fields they specify, so a lookup is
+ * at most 16 hash probes however many rules there are. Rules name a stored response rather than
+ * holding one, so any number of rules can share a template.
+ */
+public class MatchRules {
+    private static final String WILDCARD = "*";
+    private static final char SEPARATOR = '\u001f';
+    private static final int FIELDS = 4;
+    private static final int POSTCODE = 1 << 3;
+
+    public record Rule(
+            String surname,
+            String forename,
+            String dateOfBirth,
+            String postcode,
+            int priority,
+            String response) {}
+
+    private record Compiled(Rule rule, int fieldCount, int order) {}
+
+    /** The rules specifying exactly the fields in {@code shape}, one bit per field. */
+    private record Index(int shape, int bestPriority, Map<String, Compiled> rules) {}
+
+    private static final Comparator<Compiled> PRECEDENCE =
+            Comparator.comparingInt((Compiled compiled) -> compiled.rule().priority())
+                    .thenComparingInt(Compiled::fieldCount)
+                    .thenComparing(Comparator.comparingInt(Compiled::order).reversed());
+
+    public static final MatchRules NONE = new MatchRules(List.of());
+
+    private final List<Rule> rules;
+    private final List<Index> indexes;
+    private final boolean usesPostcode;
+
+    public MatchRules(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+
+        Map<Integer, Map<String, Compiled>> byShape = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            String[] values = values(rule);
+            int shape = shape(values);
+            Compiled compiled = new Compiled(rule, Integer.bitCount(shape), i);
+            byShape.computeIfAbsent(shape, s -> new HashMap<>())
+                    .merge(key(values, shape), compiled, MatchRules::higher);
+        }
+
+        List<Index> compiledIndexes = new ArrayList<>();
+        byShape.forEach(
+                (shape, index) ->
+                        compiledIndexes.add(
+                                new Index(
+                                        shape,
+                                        index.values().stream()
+                                                .mapToInt(compiled -> compiled.rule().priority())
+                                                .max()
+                                                .orElse(Integer.MIN_VALUE),
+                                        Map.copyOf(index))));
+        // Highest priorities first, so lookups can stop once no later index can win
+        compiledIndexes.sort(Comparator.comparingInt(Index::bestPriority).reversed());
+        this.indexes = List.copyOf(compiledIndexes);
+        this.usesPostcode = byShape.keySet().stream().anyMatch(shape -> (shape & POSTCODE) != 0);
+    }
+
+    public static MatchRules read(byte[] json, ObjectMapper mapper) throws IOException {
+        return new MatchRules(List.of(mapper.readValue(json, Rule[].class)));
+    }
+
+    public List<Rule> rules() {
+        return rules;
+    }
+
+    /** The id of the response for the best matching rule, or null if none match. */
+    public String match(FraudCheckRequest request, ObjectMapper mapper) throws IOException {
+        if (indexes.isEmpty()) {
+            return null;
+        }
+        String[] values = {
+            request.surname(),
+            request.forename(),
+            request.dateOfBirth(),
+            usesPostcode ? request.postcode(mapper) : null
+        };
+        for (int i = 0; i < FIELDS; i++) {
+            values[i] = normalise(values[i]);
+        }
+
+        Compiled best = null;
+        for (Index index : indexes) {
+            if (best != null && index.bestPriority() < best.rule().priority()) {
+                break;
+            }
+            if (!hasFields(values, index.shape())) {
+                continue;
+            }
+            Compiled match = index.rules().get(key(values, index.shape()));
+            if (match != null) {
+                best = best == null ? match : higher(best, match);
+            }
+        }
+        return best == null ? null : best.rule().response();
+    }
+
+    private static Compiled higher(Compiled a, Compiled b) {
+        return PRECEDENCE.compare(a, b) >= 0 ? a : b;
+    }
+
+    private static String[] values(Rule rule) {
+        String[] values = {rule.surname(), rule.forename(), rule.dateOfBirth(), rule.postcode()};
+        for (int i = 0; i < FIELDS; i++) {
+            values[i] = WILDCARD.equals(values[i]) ? null : normalise(values[i]);
+        }
+        return values;
+    }
+
+    private static String normalise(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.replace(" ", "").toUpperCase(Locale.ROOT);
+    }
+
+    private static int shape(String[] values) {
+        int shape = 0;
+        for (int i = 0; i < FIELDS; i++) {
+            if (values[i] != null) {
+                shape |= 1 << i;
+            }
+        }
+        return shape;
+    }
+
+    private static boolean hasFields(String[] values, int shape) {
+        return (shape(values) & shape) == shape;
+    }
+
+    private static String key(String[] values, int shape) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < FIELDS; i++) {
+            if ((shape & (1 << i)) != 0) {
+                key.append(values[i]).append(SEPARATOR);
+            }
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,478 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps responses added through the admin API in an append-only JSON lines file, so they survive
+ * restarts and are shared by every stub process on the host using the same file.
+ *
+ * <p>Each line is either {@code {"id":..,"response":{..}}} or {@code {"id":..,"deleted":true}}.
+ * Only the position of each id's latest line is held in memory, with a bounded LRU cache of built
+ * templates in front of the file. Appends and compaction are serialized across processes by a lock
+ * on a sibling {@code .lock} file. Other processes pick up appends by tailing the file, and notice
+ * compaction because the file they have open has been replaced.
+ */
+public class ResponseLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseLog.class);
+    private static final byte NEWLINE = '\n';
+
+    private record Location(long offset, int length) {}
+
+    private final Path path;
+    private final ObjectMapper mapper;
+    private final FileChannel lockChannel;
+    private final NavigableMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final Map<String, ResponseTemplate> cache;
+
+    private FileChannel log;
+    private Object fileKey;
+    private long readOffset;
+    private long deadEntries;
+
+    private ResponseLog(Path path, int cacheSize, ObjectMapper mapper) throws IOException {
+        this.path = path;
+        this.mapper = mapper;
+        this.lockChannel =
+                FileChannel.open(
+                        path.resolveSibling(path.getFileName() + ".lock"),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+        this.cache =
+                new LinkedHashMap<>(cacheSize, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, ResponseTemplate> eldest) {
+                        return size() > cacheSize;
+                    }
+                };
+    }
+
+    public static ResponseLog open(Path path, int cacheSize, ObjectMapper mapper)
+            throws IOException {
+        ResponseLog responseLog = new ResponseLog(path, cacheSize, mapper);
+        long start = System.nanoTime();
+        synchronized (responseLog) {
+            responseLog.reopen();
+        }
+        LOGGER.info(
+                "Replayed {} fraud responses from {} in {} ms",
+                responseLog.size(),
+                path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return responseLog;
+    }
+
+    /** Tails the file for other processes' changes, and compacts it when mostly dead entries. */
+    public void startMaintenance(Duration pollInterval, Duration compactInterval) {
+        ScheduledExecutorService scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "fraud-response-log");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        scheduler.scheduleWithFixedDelay(
+                () -> run(this::refresh),
+                pollInterval.toMillis(),
+                pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(
+                () -> run(this::compactIfWorthwhile),
+                compactInterval.toMillis(),
+                compactInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    int cachedTemplates() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public ResponseTemplate getTemplate(String id) throws IOException {
+        synchronized (cache) {
+            ResponseTemplate template = cache.get(id);
+            if (template != null) {
+                return template;
+            }
+        }
+        Location location;
+        IdentityVerificationResponse response;
+        synchronized (this) {
+            location = index.get(id);
+            if (location == null) {
+                return null;
+            }
+            response = response(location);
+        }
+        ResponseTemplate template = ResponseTemplate.of(response, mapper);
+        synchronized (cache) {
+            // Unless the id has changed since it was read, as apply() may have evicted it already.
+            // Compared by identity, since rereading the file can put an equal Location in the index
+            if (index.get(id) == location) {
+                cache.put(id, template);
+            }
+        }
+        return template;
+    }
+
+    public synchronized IdentityVerificationResponse getResponse(String id) throws IOException {
+        Location location = index.get(id);
+        if (location == null) {
+            return null;
+        }
+        return response(location);
+    }
+
+    public void put(String id, IdentityVerificationResponse response) throws IOException {
+        putAll(Map.of(id, response));
+    }
+
+    /** Appends the responses in one write, taking the lock and syncing the file once. */
+    public synchronized void putAll(Map<String, IdentityVerificationResponse> responses)
+            throws IOException {
+        Map<String, byte[]> lines = new LinkedHashMap<>();
+        for (Map.Entry<String, IdentityVerificationResponse> entry : responses.entrySet()) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            try (JsonGenerator generator = mapper.createGenerator(line)) {
+                generator.writeStartObject();
+                generator.writeStringField("id", entry.getKey());
+                generator.writeFieldName("response");
+                mapper.writeValue(generator, entry.getValue());
+                generator.writeEndObject();
+            }
+            lines.put(entry.getKey(), line.toByteArray());
+        }
+        append(lines);
+    }
+
+    public boolean delete(String id) throws IOException {
+        return deleteAll(List.of(id)) > 0;
+    }
+
+    /** Deletes whichever of the ids are present, returning how many were. */
+    public synchronized int deleteAll(Collection<String> ids) throws IOException {
+        refresh();
+        Map<String, byte[]> lines = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (!index.containsKey(id)) {
+                continue;
+            }
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            try (JsonGenerator generator = mapper.createGenerator(line)) {
+                generator.writeStartObject();
+                generator.writeStringField("id", id);
+                generator.writeBooleanField("deleted", true);
+                generator.writeEndObject();
+            }
+            lines.put(id, line.toByteArray());
+        }
+        append(lines);
+        return lines.size();
+    }
+
+    /** The ids starting with the prefix, in order. */
+    public List<String> ids(String prefix) {
+        return index.tailMap(prefix).keySet().stream()
+                .takeWhile(id -> id.startsWith(prefix))
+                .toList();
+    }
+
+    /**
+     * Copies the response's JSON straight from the file without binding it, returning false if
+     * there is no such response.
+     */
+    public boolean writeResponse(String id, OutputStream out) throws IOException {
+        byte[] line;
+        synchronized (this) {
+            Location location = index.get(id);
+            if (location == null) {
+                return false;
+            }
+            line = read(location);
+        }
+        try (JsonParser parser = mapper.createParser(line)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("response")) {
+                    int start = (int) parser.getTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    int end = (int) parser.getCurrentLocation().getByteOffset();
+                    out.write(line, start, end - start);
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("Line without a response for " + id + " in " + path);
+    }
+
+    /** Picks up lines appended by other processes, or rereads the file if it was compacted. */
+    public synchronized void refresh() throws IOException {
+        if (!Files.exists(path)
+                || !Objects.equals(fileKey, Files.readAttributes(path, "fileKey").get("fileKey"))) {
+            reopen();
+        } else if (log.size() > readOffset) {
+            replayFrom(readOffset);
+        }
+    }
+
+    /**
+     * Rewrites the file with only the latest line for each live id, then swaps it in atomically.
+     * The rewritten file is a snapshot that later appends are added to.
+     */
+    public synchronized void compact() throws IOException {
+        FileLock lock = lockChannel.lock();
+        try {
+            refresh();
+            long before = log.size();
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            Map<String, Location> compactedIndex = new LinkedHashMap<>();
+            try (FileChannel out =
+                    FileChannel.open(
+                            compacted,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    ByteBuffer line = ByteBuffer.allocate(location.length() + 1);
+                    line.put(read(location)).put(NEWLINE).flip();
+                    long offset = out.position();
+                    while (line.hasRemaining()) {
+                        out.write(line);
+                    }
+                    compactedIndex.put(entry.getKey(), new Location(offset, location.length()));
+                }
+                out.force(true);
+            }
+            Files.move(
+                    compacted,
+                    path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            log.close();
+            log = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            fileKey = Files.readAttributes(path, "fileKey").get("fileKey");
+            index.clear();
+            index.putAll(compactedIndex);
+            readOffset = log.size();
+            deadEntries = 0;
+            LOGGER.info("Compacted {} from {} to {} bytes", path, before, readOffset);
+        } finally {
+            lock.release();
+        }
+    }
+
+    private synchronized void compactIfWorthwhile() throws IOException {
+        if (deadEntries > index.size()) {
+            compact();
+        }
+    }
+
+    private void append(Map<String, byte[]> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        FileLock lock = lockChannel.lock();
+        try {
+            refresh();
+            if (log.size() > readOffset) {
+                // Nobody else writes without the lock, so this was left by a writer that died
+                LOGGER.warn("Truncating a partly written line at {} in {}", readOffset, path);
+                log.truncate(readOffset);
+            }
+            int size = 0;
+            for (byte[] line : lines.values()) {
+                size += line.length + 1;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (byte[] line : lines.values()) {
+                buffer.put(line).put(NEWLINE);
+            }
+            buffer.flip();
+            long offset = readOffset;
+            while (buffer.hasRemaining()) {
+                log.write(buffer, offset + buffer.position());
+            }
+            log.force(false);
+            for (Map.Entry<String, byte[]> line : lines.entrySet()) {
+                int length = line.getValue().length;
+                apply(line.getKey(), new Location(offset, length), line.getValue());
+                offset += length + 1;
+            }
+            readOffset = offset;
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        log =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        fileKey = Files.readAttributes(path, "fileKey").get("fileKey");
+        index.clear();
+        synchronized (cache) {
+            cache.clear();
+        }
+        deadEntries = 0;
+        replayFrom(0);
+    }
+
+    /**
+     * Applies every complete line from the offset, leaving a partly written last line. Lines that
+     * won't parse are skipped, so a damaged line doesn't stop the stub starting.
+     */
+    private void replayFrom(long offset) throws IOException {
+        long end = log.size();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long lineStart = offset;
+        long position = offset;
+        while (position < end) {
+            chunk.clear();
+            int read = log.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = chunk.get(i);
+                if (b == NEWLINE) {
+                    byte[] bytes = line.toByteArray();
+                    try {
+                        apply(idOf(bytes), new Location(lineStart, bytes.length), bytes);
+                    } catch (IOException e) {
+                        LOGGER.warn("Skipping an unreadable line at {} in {}", lineStart, path, e);
+                    }
+                    line.reset();
+                    lineStart = position + i + 1;
+                } else {
+                    line.write(b);
+                }
+            }
+            position += read;
+        }
+        readOffset = lineStart;
+    }
+
+    private void apply(String id, Location location, byte[] line) throws IOException {
+        Location previous;
+        if (isDelete(line)) {
+            previous = index.remove(id);
+            deadEntries++;
+        } else {
+            previous = index.put(id, location);
+        }
+        if (previous != null) {
+            deadEntries++;
+        }
+        synchronized (cache) {
+            cache.remove(id);
+        }
+    }
+
+    private IdentityVerificationResponse response(Location location) throws IOException {
+        JsonNode entry = mapper.readTree(read(location));
+        return mapper.treeToValue(entry.get("response"), IdentityVerificationResponse.class);
+    }
+
+    private byte[] read(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, location.offset() + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + path);
+            }
+        }
+        return buffer.array();
+    }
+
+    private String idOf(byte[] line) throws IOException {
+        try (JsonParser parser = mapper.createParser(line)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("id")) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("Line without an id in " + path);
+    }
+
+    private boolean isDelete(byte[] line) throws IOException {
+        try (JsonParser parser = mapper.createParser(line)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("deleted")) {
+                    return parser.getBooleanValue();
+                }
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static void run(Task task) {
+        try {
+            task.run();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Fraud response log maintenance failed", e);
+        }
+    }
+}
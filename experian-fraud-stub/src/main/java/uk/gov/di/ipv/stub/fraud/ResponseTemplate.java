@@ -0,0 +1,292 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A stored response serialized to UTF-8 once, with splice points where the per-request fields go.
+ * Writing a response copies the fixed segments straight to the output with the request's own values
+ * in between. The source response must not be mutated once the template is built.
+ */
+public class ResponseTemplate {
+
+    public enum Field {
+        CLIENT_REFERENCE_ID,
+        EXP_REQUEST_ID,
+        NAMES,
+        DATE_OF_BIRTH,
+        ADDRESSES,
+        RULES,
+        SCORE
+    }
+
+    /**
+     * The per-request values, with names, addresses and rules as raw JSON arrays. Rules and score
+     * are only used by generative templates.
+     */
+    public record Applicant(
+            String clientReferenceId,
+            String expRequestId,
+            byte[] names,
+            String dateOfBirth,
+            byte[] addresses,
+            byte[] rules,
+            Integer score) {
+
+        public Applicant(
+                String clientReferenceId,
+                String expRequestId,
+                byte[] names,
+                String dateOfBirth,
+                byte[] addresses) {
+            this(clientReferenceId, expRequestId, names, dateOfBirth, addresses, null, null);
+        }
+
+        public Applicant withOutcome(byte[] rules, Integer score) {
+            return new Applicant(
+                    clientReferenceId, expRequestId, names, dateOfBirth, addresses, rules, score);
+        }
+    }
+
+    private static final String MARKER_PREFIX = "$splice:";
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final Supplier<IdentityVerificationResponse> response;
+    private final byte[][] segments;
+    private final Field[] splices;
+    private final ObjectMapper mapper;
+    // For generative templates: the rules and score written when the applicant has none
+    private final ObjectNode firstRule;
+    private final byte[] rules;
+    private final Integer score;
+
+    private ResponseTemplate(
+            Supplier<IdentityVerificationResponse> response,
+            byte[][] segments,
+            Field[] splices,
+            ObjectMapper mapper,
+            ObjectNode firstRule,
+            byte[] rules,
+            Integer score) {
+        this.response = response;
+        this.segments = segments;
+        this.splices = splices;
+        this.mapper = mapper;
+        this.firstRule = firstRule;
+        this.rules = rules;
+        this.score = score;
+    }
+
+    public static ResponseTemplate of(IdentityVerificationResponse response, ObjectMapper mapper)
+            throws IOException {
+        return of(response, mapper, false);
+    }
+
+    /** A template that also takes the first decision element's rules and score per request. */
+    public static ResponseTemplate generative(
+            IdentityVerificationResponse response, ObjectMapper mapper) throws IOException {
+        return of(response, mapper, true);
+    }
+
+    private static ResponseTemplate of(
+            IdentityVerificationResponse response, ObjectMapper mapper, boolean generative)
+            throws IOException {
+        ObjectNode tree = mapper.valueToTree(response);
+
+        ObjectNode header = tree.with("responseHeader");
+        header.put("clientReferenceId", marker(Field.CLIENT_REFERENCE_ID));
+        header.put("expRequestId", marker(Field.EXP_REQUEST_ID));
+
+        ObjectNode contact =
+                (ObjectNode) tree.with("originalRequestData").withArray("contacts").get(0);
+        ObjectNode person = contact.with("person");
+        person.put("names", marker(Field.NAMES));
+        person.with("personDetails").put("dateOfBirth", marker(Field.DATE_OF_BIRTH));
+        contact.put("addresses", marker(Field.ADDRESSES));
+
+        ObjectNode firstRule = null;
+        byte[] rules = null;
+        Integer score = null;
+        if (generative) {
+            ObjectNode decision =
+                    (ObjectNode)
+                            tree.with("clientResponsePayload").withArray("decisionElements").get(0);
+            JsonNode ruleNodes = decision.withArray("rules");
+            firstRule =
+                    ruleNodes.isEmpty()
+                            ? mapper.createObjectNode()
+                            : ((ObjectNode) ruleNodes.get(0)).deepCopy();
+            rules = mapper.writeValueAsBytes(ruleNodes);
+            score = decision.path("score").isNumber() ? decision.get("score").intValue() : 0;
+
+            decision.put("rules", marker(Field.RULES));
+            decision.put("score", marker(Field.SCORE));
+            for (JsonNode scoreNode : decision.withArray("scores")) {
+                if ("NewAuthIndex".equals(scoreNode.path("name").textValue())) {
+                    ((ObjectNode) scoreNode).put("score", marker(Field.SCORE));
+                }
+            }
+        }
+
+        byte[] json = mapper.writeValueAsBytes(tree);
+
+        List<byte[]> segments = new ArrayList<>();
+        List<Field> splices = new ArrayList<>();
+        int segmentStart = 0;
+        for (int i = 0; i < json.length; i++) {
+            for (Field field : Field.values()) {
+                byte[] marker = quoted(field);
+                if (regionMatches(json, i, marker)) {
+                    segments.add(Arrays.copyOfRange(json, segmentStart, i));
+                    splices.add(field);
+                    segmentStart = i + marker.length;
+                    i = segmentStart - 1;
+                    break;
+                }
+            }
+        }
+        segments.add(Arrays.copyOfRange(json, segmentStart, json.length));
+
+        return new ResponseTemplate(
+                () -> response,
+                segments.toArray(new byte[0][]),
+                splices.toArray(new Field[0]),
+                mapper,
+                firstRule,
+                rules,
+                score);
+    }
+
+    public IdentityVerificationResponse response() {
+        return response.get();
+    }
+
+    /**
+     * The rules with the first rule's ID replaced by the first of the IDs, and a rule for each of
+     * the others. Only for generative templates.
+     */
+    public byte[] rulesWithIds(List<String> ruleIds) throws IOException {
+        if (ruleIds.isEmpty()) {
+            return rules;
+        }
+        ArrayNode ruleNodes = mapper.createArrayNode();
+        ruleNodes.add(firstRule.deepCopy().put("ruleId", ruleIds.get(0)));
+        for (String ruleId : ruleIds.subList(1, ruleIds.size())) {
+            ruleNodes.addObject().put("ruleId", ruleId);
+        }
+        return mapper.writeValueAsBytes(ruleNodes);
+    }
+
+    /**
+     * An overlay of this generative template with different rule IDs. It shares this template's
+     * segments, and only builds its own response object if someone asks for it.
+     */
+    public ResponseTemplate withRuleIds(List<String> ruleIds) throws IOException {
+        byte[] overlaidRules = rulesWithIds(ruleIds);
+        return new ResponseTemplate(
+                memoize(
+                        () -> {
+                            ObjectNode tree = mapper.valueToTree(response());
+                            ((ObjectNode)
+                                            tree.with("clientResponsePayload")
+                                                    .withArray("decisionElements")
+                                                    .get(0))
+                                    .set("rules", mapper.readTree(overlaidRules));
+                            return mapper.treeToValue(tree, IdentityVerificationResponse.class);
+                        }),
+                segments,
+                splices,
+                mapper,
+                firstRule,
+                overlaidRules,
+                score);
+    }
+
+    public void writeTo(OutputStream out, Applicant applicant) throws IOException {
+        for (int i = 0; i < splices.length; i++) {
+            out.write(segments[i]);
+            switch (splices[i]) {
+                case CLIENT_REFERENCE_ID -> writeString(out, applicant.clientReferenceId());
+                case EXP_REQUEST_ID -> writeString(out, applicant.expRequestId());
+                case NAMES -> out.write(applicant.names());
+                case DATE_OF_BIRTH -> writeString(out, applicant.dateOfBirth());
+                case ADDRESSES -> out.write(applicant.addresses());
+                case RULES -> out.write(applicant.rules() == null ? rules : applicant.rules());
+                case SCORE -> writeNumber(
+                        out, applicant.score() == null ? score : applicant.score());
+            }
+        }
+        out.write(segments[splices.length]);
+    }
+
+    // The values are written straight to the stream rather than through a JsonGenerator, which
+    // flushes the stream when it closes and would commit the response a piece at a time
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write('"');
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write('"');
+    }
+
+    private static void writeNumber(OutputStream out, Integer value) throws IOException {
+        out.write(value == null ? NULL : value.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private interface Build {
+        IdentityVerificationResponse build() throws IOException;
+    }
+
+    private static Supplier<IdentityVerificationResponse> memoize(Build build) {
+        return new Supplier<>() {
+            private volatile IdentityVerificationResponse built;
+
+            @Override
+            public synchronized IdentityVerificationResponse get() {
+                if (built == null) {
+                    try {
+                        built = build.build();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to build overlaid response", e);
+                    }
+                }
+                return built;
+            }
+        };
+    }
+
+    private static String marker(Field field) {
+        return MARKER_PREFIX + field.name();
+    }
+
+    private static byte[] quoted(Field field) {
+        return ("\"" + marker(field) + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean regionMatches(byte[] bytes, int offset, byte[] region) {
+        if (offset + region.length > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < region.length; i++) {
+            if (bytes[offset + i] != region[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends every fraud check the stub answers to a log, with the response and how long it took, so
+ * the traffic can be served again by {@link TrafficReplayer}. The log is JSON lines of {@code
+ * {"fingerprint":..,"status":..,"latencyMicros":..,"request":{..},"response":{..}}}.
+ *
+ * <p>Entries are queued and written in batches by one thread, so a request only pays for the
+ * enqueue. When the queue is full entries are dropped rather than blocking the request.
+ */
+public class TrafficRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficRecorder.class);
+    private static final byte NEWLINE = '\n';
+
+    private record Entry(
+            FraudCheckRequest request, int status, long latencyMicros, byte[] response) {}
+
+    private final ObjectMapper mapper;
+    private final OutputStream out;
+    private final BlockingQueue<Entry> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public TrafficRecorder(Path path, int bufferSize, ObjectMapper mapper) throws IOException {
+        this(
+                new BufferedOutputStream(
+                        Files.newOutputStream(
+                                path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)),
+                bufferSize,
+                mapper);
+        LOGGER.info("Recording fraud checks to {}", path);
+    }
+
+    TrafficRecorder(OutputStream out, int bufferSize, ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.out = out;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.writer = new Thread(this::drain, "fraud-traffic-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /** Queues a request and its response to be written. The response must not be changed after. */
+    public void record(FraudCheckRequest request, int status, byte[] response, long startedNanos) {
+        long latencyMicros = (System.nanoTime() - startedNanos) / 1000;
+        if (!buffer.offer(new Entry(request, status, latencyMicros, response))) {
+            dropped.increment();
+        }
+    }
+
+    /** Stops the writer, writes anything still queued and closes the log. */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        // Not interrupted, as that would close the file channel under a write in progress
+        closed = true;
+        try {
+            writer.join();
+            List<Entry> remaining = new ArrayList<>();
+            buffer.drainTo(remaining);
+            write(remaining);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close fraud traffic log", e);
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                Entry first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch);
+            try {
+                write(batch);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write {} fraud traffic entries", batch.size(), e);
+            }
+            batch.clear();
+
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                LOGGER.warn("Dropped {} fraud traffic entries, buffer full", lost);
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        for (Entry entry : batch) {
+            JsonGenerator generator = mapper.createGenerator(out);
+            // Closing the generator only hands its buffer to the stream, without flushing it
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.writeStartObject();
+            generator.writeStringField("fingerprint", entry.request().fingerprint(mapper));
+            generator.writeNumberField("status", entry.status());
+            generator.writeNumberField("latencyMicros", entry.latencyMicros());
+            generator.writeFieldName("request");
+            generator.writeRawValue(entry.request().toJson());
+            generator.writeFieldName("response");
+            if (entry.response().length == 0) {
+                generator.writeNull();
+            } else {
+                generator.writeRawValue(new String(entry.response(), StandardCharsets.UTF_8));
+            }
+            generator.writeEndObject();
+            generator.close();
+            out.write(NEWLINE);
+        }
+        // One flush per batch rather than per entry
+        out.flush();
+    }
+}
@@ -0,0 +1,223 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves fraud checks from a log written by {@link TrafficRecorder}, with the recorded response
+ * after the recorded latency. The log is indexed by request fingerprint at startup, so a lookup is
+ * one hash probe. When an applicant was recorded more than once their responses are served in turn.
+ * Requests that were never recorded are passed on to the stub as usual.
+ *
+ * <p>This sits in front of Spark rather than in a route so it can suspend the request while it
+ * waits, holding no Jetty thread. The response is written once the request is dispatched again, on
+ * a Jetty thread, so a slow client only holds up its own replay.
+ */
+public class TrafficReplayer extends HandlerWrapper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplayer.class);
+    private static final String PATH = "/DefaultRequestListener";
+    private static final String RECORDED = TrafficReplayer.class.getName() + ".recorded";
+    // Beyond the recorded latency, after which a replay that hasn't been written is abandoned
+    private static final long TIMEOUT_MARGIN_MILLIS = 30_000;
+
+    record Recorded(int status, long latencyMicros, byte[] response) {}
+
+    private record Recordings(Recorded[] recorded, AtomicInteger next) {
+        Recorded take() {
+            return recorded[Math.floorMod(next.getAndIncrement(), recorded.length)];
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final Map<String, Recordings> index;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "fraud-traffic-replayer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    private TrafficReplayer(ObjectMapper mapper, Map<String, Recordings> index) {
+        this.mapper = mapper;
+        this.index = index;
+    }
+
+    public static TrafficReplayer load(Path path, ObjectMapper mapper) throws IOException {
+        Map<String, List<Recorded>> byFingerprint = new HashMap<>();
+        int count = 0;
+        try (InputStream in = Files.newInputStream(path);
+                MappingIterator<JsonNode> entries =
+                        mapper.readerFor(JsonNode.class).readValues(in)) {
+            while (entries.hasNext()) {
+                JsonNode entry = entries.next();
+                JsonNode response = entry.path("response");
+                byFingerprint
+                        .computeIfAbsent(entry.path("fingerprint").asText(), f -> new ArrayList<>())
+                        .add(
+                                new Recorded(
+                                        entry.path("status").asInt(200),
+                                        entry.path("latencyMicros").asLong(),
+                                        response.isNull() || response.isMissingNode()
+                                                ? new byte[0]
+                                                : mapper.writeValueAsBytes(response)));
+                count++;
+            }
+        }
+
+        Map<String, Recordings> index = new HashMap<>();
+        byFingerprint.forEach(
+                (fingerprint, recorded) ->
+                        index.put(
+                                fingerprint,
+                                new Recordings(
+                                        recorded.toArray(Recorded[]::new), new AtomicInteger())));
+        LOGGER.info(
+                "Replaying {} recorded fraud checks for {} applicants from {}",
+                count,
+                index.size(),
+                path);
+        return new TrafficReplayer(mapper, Map.copyOf(index));
+    }
+
+    /** The next recorded response for the applicant, or null if they were never recorded. */
+    Recorded next(String fingerprint) {
+        Recordings recordings = index.get(fingerprint);
+        return recordings == null ? null : recordings.take();
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        Recorded delayed = (Recorded) request.getAttribute(RECORDED);
+        if (delayed != null) {
+            // Resumed on a Jetty thread once the recorded latency is up
+            request.removeAttribute(RECORDED);
+            baseRequest.setHandled(true);
+            write(response, delayed);
+            return;
+        }
+        if (!PATH.equals(target) || !"POST".equals(request.getMethod())) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        Recorded recorded = lookUp(body);
+        if (recorded == null) {
+            super.handle(target, baseRequest, new CachedBodyRequest(request, body), response);
+            return;
+        }
+
+        baseRequest.setHandled(true);
+        if (recorded.latencyMicros() <= 0) {
+            write(response, recorded);
+            return;
+        }
+        request.setAttribute(RECORDED, recorded);
+        AsyncContext async = request.startAsync();
+        async.setTimeout(
+                TimeUnit.MICROSECONDS.toMillis(recorded.latencyMicros()) + TIMEOUT_MARGIN_MILLIS);
+        scheduler.schedule(() -> async.dispatch(), recorded.latencyMicros(), TimeUnit.MICROSECONDS);
+    }
+
+    private Recorded lookUp(byte[] body) {
+        try {
+            return next(
+                    FraudCheckRequest.read(new ByteArrayInputStream(body), mapper)
+                            .fingerprint(mapper));
+        } catch (IOException e) {
+            // Let the stub report the bad request as it would without replay
+            return null;
+        }
+    }
+
+    private static void write(HttpServletResponse response, Recorded recorded) throws IOException {
+        response.setStatus(recorded.status());
+        if (recorded.response().length > 0) {
+            response.setContentType("application/json");
+            response.getOutputStream().write(recorded.response());
+        }
+    }
+
+    /** The request with its body already read, for passing on after looking it up. */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(
+                    new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BodyLoggerTest {
+
+    @Test
+    void shouldRedactPersonalDetailsInJson() {
+        String body =
+                "{\"names\":[{\"id\":\"MAINPERSONNAME_1\",\"firstName\":\"KENNETH\","
+                        + "\"surName\":\"DE \\\"CERQUEIRA\\\"\",\"middleNames\":null}],"
+                        + "\"dateOfBirth\": \"1965-07-08\","
+                        + "\"addresses\":[{\"buildingNumber\":\"8\",\"postal\":\"BA2 5AA\"}]}";
+
+        assertEquals(
+                "{\"names\":[{\"id\":\"MAINPERSONNAME_1\",\"firstName\":\"***\","
+                        + "\"surName\":\"***\",\"middleNames\":null}],"
+                        + "\"dateOfBirth\": \"***\","
+                        + "\"addresses\":[{\"buildingNumber\":\"***\",\"postal\":\"***\"}]}",
+                BodyLogger.redact(body));
+    }
+
+    @Test
+    void shouldRedactPersonalDetailsInXml() {
+        String body =
+                "<Applicant><Name><Forename>KENNETH</Forename><Surname>DECERQUEIRA</Surname>"
+                        + "</Name><DateOfBirth xsi:nil=\"false\">1965-07-08</DateOfBirth>"
+                        + "<ApplicantIdentifier>1</ApplicantIdentifier></Applicant>";
+
+        assertEquals(
+                "<Applicant><Name><Forename>***</Forename><Surname>***</Surname>"
+                        + "</Name><DateOfBirth xsi:nil=\"false\">***</DateOfBirth>"
+                        + "<ApplicantIdentifier>1</ApplicantIdentifier></Applicant>",
+                BodyLogger.redact(body));
+    }
+
+    @Test
+    void shouldParseSampleRates() {
+        assertEquals(
+                Map.of("/DefaultRequestListener", 0.1, "*", 1.0),
+                BodyLogger.parseSampleRates(" /DefaultRequestListener=0.1, *=1"));
+        assertEquals(Map.of(), BodyLogger.parseSampleRates(""));
+        assertThrows(IllegalArgumentException.class, () -> BodyLogger.parseSampleRates("/iiq"));
+    }
+}
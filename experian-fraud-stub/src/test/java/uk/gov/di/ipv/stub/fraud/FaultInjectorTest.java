@@ -0,0 +1,205 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FaultInjectorTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FaultInjector injector;
+    private Server server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        injector = new FaultInjector(mapper, Map.of());
+        injector.setHandler(
+                new AbstractHandler() {
+                    @Override
+                    public void handle(
+                            String target,
+                            Request baseRequest,
+                            HttpServletRequest request,
+                            HttpServletResponse response)
+                            throws IOException {
+                        baseRequest.setHandled(true);
+                        response.getWriter().write("ok");
+                    }
+                });
+
+        // Few enough threads that requests sleeping on them would queue
+        server = new Server(new QueuedThreadPool(6, 2));
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+        server.setHandler(injector);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    void shouldDelayRequestsWithoutHoldingServerThreads() throws Exception {
+        use(
+                "{\"name\": \"slow\", \"endpoints\": {\"/slow\": {\"latency\": {\"type\": \"fixed\", \"millis\": 500}}}}");
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses =
+                IntStream.range(0, 40)
+                        .mapToObj(
+                                i ->
+                                        client.sendAsync(
+                                                request("/slow"),
+                                                HttpResponse.BodyHandlers.ofString()))
+                        .toList();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals("ok", response.get().body());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Sleeping on the four or so free threads would take at least five seconds
+        assertTrue(elapsedMillis >= 500, "took " + elapsedMillis);
+        assertTrue(elapsedMillis < 2500, "took " + elapsedMillis);
+    }
+
+    @Test
+    void shouldOnlyInjectIntoConfiguredPaths() throws Exception {
+        use(
+                "{\"name\": \"errors\", \"endpoints\": {\"/failing\": {\"errorRate\": 1, \"errorStatus\": 502}}}");
+
+        assertEquals(502, send("/failing").statusCode());
+        assertEquals(200, send("/other").statusCode());
+
+        injector.select("none");
+        assertEquals(200, send("/failing").statusCode());
+    }
+
+    @Test
+    void shouldResetConnections() throws Exception {
+        use("{\"name\": \"resets\", \"endpoints\": {\"/reset\": {\"resetRate\": 1}}}");
+
+        assertThrows(IOException.class, () -> send("/reset"));
+    }
+
+    @Test
+    void shouldDelayAndFailSparkRoutesWhenInstalled() throws Exception {
+        FaultInjector sparkInjector = new FaultInjector(mapper, Map.of());
+        sparkInjector.use(
+                mapper.readValue(
+                        "{\"name\": \"spark\", \"endpoints\": {"
+                                + "\"/slow\": {\"latency\": {\"type\": \"fixed\", \"millis\": 300}},"
+                                + "\"/failing\": {\"latency\": {\"type\": \"fixed\", \"millis\": 100},"
+                                + " \"errorRate\": 1, \"errorStatus\": 502}}}",
+                        FaultInjector.Profile.class));
+        Object identifier = new Object();
+        sparkInjector.install(identifier);
+        Service http = Service.ignite().port(0);
+        http.embeddedServerIdentifier(identifier);
+        AtomicInteger routeCalls = new AtomicInteger();
+        http.post(
+                "/slow",
+                (request, response) -> {
+                    routeCalls.incrementAndGet();
+                    return request.body();
+                });
+        http.post("/failing", (request, response) -> routeCalls.incrementAndGet());
+        http.awaitInitialization();
+        try {
+            long start = System.nanoTime();
+            HttpResponse<String> slow = client.send(post(http, "/slow"), BodyHandlers.ofString());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            HttpResponse<String> failing =
+                    client.send(post(http, "/failing"), BodyHandlers.ofString());
+
+            // Spark's route runs once, on the redispatch after the delay, and still gets the body
+            assertEquals(200, slow.statusCode());
+            assertEquals("posted to /slow", slow.body());
+            assertTrue(elapsedMillis >= 300, "took " + elapsedMillis);
+            assertEquals(502, failing.statusCode());
+            assertEquals("Injected fault", failing.body());
+            assertEquals(1, routeCalls.get());
+        } finally {
+            http.stop();
+            http.awaitStop();
+        }
+    }
+
+    @Test
+    void shouldInterpolateBetweenPercentiles() throws Exception {
+        FaultInjector.Latency latency =
+                mapper.readValue(
+                        "{\"type\": \"percentiles\", \"percentiles\": {\"50\": 100, \"90\": 500, \"100\": 1000}}",
+                        FaultInjector.Latency.class);
+
+        Random random = new Random(1);
+        long[] samples =
+                IntStream.range(0, 10000).mapToLong(i -> latency.sample(random)).sorted().toArray();
+
+        assertEquals(100, samples[0]);
+        assertEquals(100, samples[4900]);
+        assertEquals(300, samples[7000], 10);
+        assertEquals(1000, samples[9999], 5);
+    }
+
+    @Test
+    void shouldRejectInvalidProfiles() {
+        assertThrows(
+                IOException.class,
+                () -> mapper.readValue("{\"type\": \"gaussian\"}", FaultInjector.Latency.class));
+        assertThrows(
+                IOException.class,
+                () ->
+                        mapper.readValue(
+                                "{\"errorRate\": 0.8, \"resetRate\": 0.5}",
+                                FaultInjector.EndpointFaults.class));
+        assertThrows(IllegalArgumentException.class, () -> injector.select("missing"));
+    }
+
+    private void use(String profile) throws IOException {
+        injector.use(mapper.readValue(profile, FaultInjector.Profile.class));
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        return client.send(request(path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest post(Service http, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + http.port() + path))
+                .POST(HttpRequest.BodyPublishers.ofString("posted to " + path))
+                .build();
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create(server.getURI().toString() + path.substring(1)))
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Address;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Contact;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.IdentityVerificationRequest;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Name;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FraudCheckRequestTest {
+    static final String REQUEST =
+            """
+            {
+              "header": {
+                "tenantId": "TENANT",
+                "requestType": "Authenticateplus-Standalone",
+                "clientReferenceId": "3f9e8f3a-3e2c-4c8b-9d0b-6d9f1a2b3c4d",
+                "expRequestId": "",
+                "messageTime": "2022-05-25T21:19:30Z",
+                "options": {}
+              },
+              "payload": {
+                "source": "WEB",
+                "application": {
+                  "applicants": [{"id": "APPLICANT_1", "contactId": "MAINCONTACT_1",
+                                  "type": "INDIVIDUAL", "applicantType": "MAIN_APPLICANT",
+                                  "consent": true}]
+                },
+                "contacts": [
+                  {
+                    "id": "MAINCONTACT_1",
+                    "addresses": [
+                      {"id": "MAINAPPADDRESS_1", "addressType": "CURRENT",
+                       "buildingNumber": "8", "street": "HADLEY ROAD", "postTown": "BATH",
+                       "postal": "BA2 5AA", "residentFrom": {"fullDateFrom": "2000-01-01"}},
+                      {"id": "MAINAPPADDRESS_2", "addressType": "PREVIOUS",
+                       "buildingName": "FLAT 1, \\"THE MEWS\\"", "street": "MILL LANE",
+                       "postTown": "BRISTOL", "postal": "BS1 1AA"}
+                    ],
+                    "person": {
+                      "personIdentifier": "MAINPERSON_1",
+                      "names": [{"id": "MAINPERSONNAME_1", "type": "CURRENT",
+                                 "firstName": "KENNETH", "middleNames": "É",
+                                 "surName": "Decerqueira"}],
+                      "personDetails": {"dateOfBirth": "1965-07-08"}
+                    }
+                  },
+                  {
+                    "id": "OTHERCONTACT_1",
+                    "person": {"names": [{"surName": "IGNORED"}]}
+                  }
+                ]
+              }
+            }
+            """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void shouldReadFirstContactOnly() throws Exception {
+        FraudCheckRequest request = read(REQUEST);
+
+        JsonNode expected = mapper.readTree(REQUEST).at("/payload/contacts/0");
+        assertEquals("Decerqueira", request.surname());
+        assertEquals("1965-07-08", request.dateOfBirth());
+        assertEquals(expected.at("/person/names"), mapper.readTree(request.names()));
+        assertEquals(expected.at("/addresses"), mapper.readTree(request.addresses()));
+    }
+
+    @Test
+    void shouldDefaultMissingFields() throws Exception {
+        FraudCheckRequest request = read("{\"payload\": {\"contacts\": [{\"id\": \"1\"}]}}");
+
+        assertNull(request.surname());
+        assertNull(request.dateOfBirth());
+        assertEquals("[]", new String(request.names(), StandardCharsets.UTF_8));
+        assertEquals("[]", new String(request.addresses(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldRejectRequestWithoutContacts() {
+        assertThrows(IOException.class, () -> read("{\"payload\": {\"contacts\": []}}"));
+    }
+
+    @Test
+    void shouldReadTheSameContactAsBindingTheRequest() throws Exception {
+        // As the handler used to: the whole request bound to the DTO tree
+        Contact contact =
+                mapper.readValue(REQUEST, IdentityVerificationRequest.class)
+                        .getPayload()
+                        .getContacts()
+                        .get(0);
+
+        FraudCheckRequest request = read(REQUEST);
+
+        // The streamed JSON leaves out absent fields that the DTOs write as null
+        assertEquals(
+                mapper.valueToTree(contact.getPerson().getNames()),
+                mapper.valueToTree(mapper.readValue(request.names(), Name[].class)));
+        assertEquals(
+                mapper.valueToTree(contact.getAddresses()),
+                mapper.valueToTree(mapper.readValue(request.addresses(), Address[].class)));
+        assertEquals(contact.getPerson().getNames().get(0).getSurName(), request.surname());
+        assertEquals(
+                contact.getPerson().getPersonDetails().getDateOfBirth(), request.dateOfBirth());
+    }
+
+    private FraudCheckRequest read(String json) throws IOException {
+        return FraudCheckRequest.read(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), mapper);
+    }
+}
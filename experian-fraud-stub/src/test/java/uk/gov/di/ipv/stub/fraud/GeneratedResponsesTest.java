@@ -0,0 +1,87 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GeneratedResponsesTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final InMemoryDataStore inMemoryDataStore = new InMemoryDataStore(mapper);
+    private final Handler handler = new Handler(mapper, inMemoryDataStore);
+
+    @Test
+    void shouldParseScenarioFromReservedSurname() {
+        assertEquals(
+                new GeneratedResponses.Scenario("REFER", List.of("U001", "U015"), 45),
+                GeneratedResponses.Scenario.parse("gen_refer_u001_u015_score45"));
+        assertEquals(
+                new GeneratedResponses.Scenario("AUTH1", List.of(), null),
+                GeneratedResponses.Scenario.parse("GEN_AUTH"));
+        assertNull(GeneratedResponses.Scenario.parse("GENTRY"));
+        assertNull(GeneratedResponses.Scenario.parse(null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> GeneratedResponses.Scenario.parse("GEN_MAYBE"));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> GeneratedResponses.Scenario.parse("GEN_REFER_SCOREHIGH"));
+    }
+
+    @Test
+    void shouldGenerateReferWithRuleIdsAndScore() throws Exception {
+        JsonNode decision = decision("GEN_REFER_U001_U015_SCORE30");
+
+        ObjectNode expected =
+                mapper.valueToTree(
+                        inMemoryDataStore
+                                .getResponse("REFER")
+                                .getClientResponsePayload()
+                                .getDecisionElements()
+                                .get(0));
+        ((ObjectNode) expected.withArray("rules").get(0)).put("ruleId", "U001");
+        expected.withArray("rules").addObject().put("ruleId", "U015");
+        expected.put("score", 30);
+        for (JsonNode score : expected.withArray("scores")) {
+            if (score.path("name").asText().equals("NewAuthIndex")) {
+                ((ObjectNode) score).put("score", 30);
+            }
+        }
+        assertEquals(expected, decision);
+    }
+
+    @Test
+    void shouldGenerateBaseResponseWhenOnlyOutcomeGiven() throws Exception {
+        assertEquals(
+                mapper.valueToTree(
+                        inMemoryDataStore
+                                .getResponse("NOAUTH")
+                                .getClientResponsePayload()
+                                .getDecisionElements()
+                                .get(0)),
+                decision("GEN_NOAUTH"));
+    }
+
+    private JsonNode decision(String surname) throws Exception {
+        String json =
+                """
+                {"payload": {"contacts": [{"person": {"names": [{"surName": "%s"}]}}]}}
+                """
+                        .formatted(surname);
+        FraudCheckRequest request =
+                FraudCheckRequest.read(
+                        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), mapper);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.writeFraudResponse(request, out);
+        return mapper.readTree(out.toByteArray()).at("/clientResponsePayload/decisionElements/0");
+    }
+}
@@ -0,0 +1,106 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HandlerTest {
+    private static final int APPLICANTS = 5000;
+    private static final List<String> SURNAMES = List.of("AUTH1", "FARRELL", "NOAUTH", "Unknown");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final InMemoryDataStore inMemoryDataStore = new InMemoryDataStore(mapper);
+    private final Handler handler = new Handler(mapper, inMemoryDataStore);
+
+    @Test
+    void shouldAnswerConcurrentApplicantsWithoutSharingState() throws Exception {
+        String templateBefore = storedResponses();
+        Set<String> clientReferenceIds = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Object>> checks =
+                    IntStream.range(0, APPLICANTS)
+                            .mapToObj(
+                                    i ->
+                                            executor.submit(
+                                                    () -> {
+                                                        checkApplicant(i, clientReferenceIds);
+                                                        return null;
+                                                    }))
+                            .toList();
+            for (Future<Object> check : checks) {
+                check.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(APPLICANTS, clientReferenceIds.size());
+        assertEquals(templateBefore, storedResponses());
+    }
+
+    private void checkApplicant(int i, Set<String> clientReferenceIds) throws Exception {
+        String surname = SURNAMES.get(i % SURNAMES.size());
+        FraudCheckRequest request =
+                FraudCheckRequest.read(
+                        new ByteArrayInputStream(
+                                requestJson(i, surname).getBytes(StandardCharsets.UTF_8)),
+                        mapper);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.writeFraudResponse(request, out);
+        JsonNode response = mapper.readTree(out.toByteArray());
+
+        JsonNode contact = response.at("/originalRequestData/contacts/0");
+        assertEquals("FIRST" + i, contact.at("/person/names/0/firstName").asText());
+        assertEquals(surname, contact.at("/person/names/0/surName").asText());
+        assertEquals(dateOfBirth(i), contact.at("/person/personDetails/dateOfBirth").asText());
+        assertEquals("PC" + i, contact.at("/addresses/0/postal").asText());
+        assertEquals(1, contact.at("/addresses").size());
+        clientReferenceIds.add(response.at("/responseHeader/clientReferenceId").asText());
+    }
+
+    private String storedResponses() throws Exception {
+        StringBuilder responses = new StringBuilder();
+        for (String surname : List.of("AUTH1", "FARRELL", "NOAUTH")) {
+            responses.append(mapper.writeValueAsString(inMemoryDataStore.getResponse(surname)));
+        }
+        return responses.toString();
+    }
+
+    private static String dateOfBirth(int i) {
+        return "19%02d-%02d-%02d".formatted(i % 100, i % 12 + 1, i % 28 + 1);
+    }
+
+    private static String requestJson(int i, String surname) {
+        return """
+                {"payload": {"contacts": [{
+                    "id": "MAINCONTACT_1",
+                    "person": {
+                        "personIdentifier": "MAINPERSON_1",
+                        "personDetails": {"dateOfBirth": "%s"},
+                        "names": [{"id": "MAINPERSONNAME_1", "type": "CURRENT",
+                                   "firstName": "FIRST%d", "surName": "%s"}]
+                    },
+                    "addresses": [{"id": "MAINAPPADDRESS_1", "addressType": "CURRENT",
+                                   "buildingNumber": "%d", "street": "High Street",
+                                   "postTown": "TOWN", "postal": "PC%d"}]
+                }]}}
+                """
+                .formatted(dateOfBirth(i), i, surname, i, i);
+    }
+}
@@ -0,0 +1,107 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MatchRulesTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void shouldPickHighestPriorityThenMostSpecificThenEarliestRule() throws Exception {
+        MatchRules rules =
+                new MatchRules(
+                        List.of(
+                                new MatchRules.Rule("SMITH", null, null, null, 0, "SURNAME"),
+                                new MatchRules.Rule(
+                                        "smith", "*", "1965-07-08", null, 0, "SURNAME_DOB"),
+                                new MatchRules.Rule(null, null, null, "BA2 5AA", 5, "POSTCODE"),
+                                new MatchRules.Rule(null, null, null, "BA25AA", 5, "LATER"),
+                                new MatchRules.Rule("*", "*", "*", "*", -1, "ANYONE")));
+
+        assertEquals("POSTCODE", rules.match(request("Smith", "1965-07-08", "ba2 5aa"), mapper));
+        assertEquals("SURNAME_DOB", rules.match(request("Smith", "1965-07-08", "X"), mapper));
+        assertEquals("SURNAME", rules.match(request("Smith", "1970-01-01", "X"), mapper));
+        assertEquals("ANYONE", rules.match(request("Jones", "1970-01-01", "X"), mapper));
+        assertNull(MatchRules.NONE.match(request("Smith", "1965-07-08", "X"), mapper));
+    }
+
+    @Test
+    void shouldServeSharedTemplateForMatchingApplicants() throws Exception {
+        InMemoryDataStore store = new InMemoryDataStore(mapper);
+        MatchRules rules =
+                MatchRules.read(
+                        """
+                        [{"dateOfBirth": "1965-07-08", "postcode": "BA2 5AA", "response": "CI1"},
+                         {"forename": "Kenneth", "priority": 1, "response": "NOAUTH"}]
+                        """
+                                .getBytes(StandardCharsets.UTF_8),
+                        mapper);
+        Handler handler = new Handler(mapper, store, rules);
+
+        assertEquals(
+                json(store, "CI1"), decision(handler, request("Anyone", "1965-07-08", "BA25AA")));
+        assertEquals(
+                json(store, "NOAUTH"),
+                decision(handler, request("Kenneth", "1965-07-08", "BA25AA")));
+        // No rule matches, so the surname lookup still applies
+        assertEquals(
+                json(store, "FARRELL"), decision(handler, request("Farrell", "1970-01-01", "X")));
+        assertEquals(json(store, "AUTH1"), decision(handler, request("Nobody", "1970-01-01", "X")));
+    }
+
+    @Test
+    void shouldMatchTheSameRuleAmongManyNonMatchingOnes() throws Exception {
+        FraudCheckRequest request = request("Smith", "1965-07-08", "BA2 5AA");
+        List<MatchRules.Rule> ruleList = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ruleList.add(new MatchRules.Rule("SURNAME" + i, null, "1965-07-08", null, 0, "R"));
+            ruleList.add(new MatchRules.Rule(null, "FORENAME" + i, null, "BA2 5AA", 0, "R"));
+        }
+        ruleList.add(new MatchRules.Rule("SMITH", null, null, "BA2 5AA", 0, "LAST"));
+        MatchRules rules = new MatchRules(ruleList);
+
+        assertEquals("LAST", rules.match(request, mapper));
+        assertNull(rules.match(request("Smith", "1965-07-08", "X"), mapper));
+        assertEquals("R", rules.match(request("SURNAME99999", "1965-07-08", "X"), mapper));
+    }
+
+    private static String decision(Handler handler, FraudCheckRequest request) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.writeFraudResponse(request, out);
+        return new ObjectMapper()
+                .readTree(out.toByteArray())
+                .at("/clientResponsePayload/decisionElements/0")
+                .toString();
+    }
+
+    private String json(InMemoryDataStore store, String id) {
+        return mapper.valueToTree(store.getResponse(id))
+                .at("/clientResponsePayload/decisionElements/0")
+                .toString();
+    }
+
+    private FraudCheckRequest request(String surname, String dateOfBirth, String postcode)
+            throws Exception {
+        String json =
+                """
+                {"payload": {"contacts": [{
+                  "person": {"names": [{"firstName": "%1$s", "surName": "%1$s"}],
+                             "personDetails": {"dateOfBirth": "%2$s"}},
+                  "addresses": [{"addressType": "PREVIOUS", "postal": "OLD"},
+                                {"addressType": "CURRENT", "postal": "%3$s"}]
+                }]}}
+                """
+                        .formatted(surname, dateOfBirth, postcode);
+        return FraudCheckRequest.read(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), mapper);
+    }
+}
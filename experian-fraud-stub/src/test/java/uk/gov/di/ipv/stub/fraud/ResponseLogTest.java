@@ -0,0 +1,203 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.di.ipv.stub.fraud.Util.getResourceAsStream;
+import static uk.gov.di.ipv.stub.fraud.Util.mapFileToObject;
+
+public class ResponseLogTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir Path dir;
+    private Path path;
+    private IdentityVerificationResponse auth1;
+    private IdentityVerificationResponse refer;
+
+    @BeforeEach
+    void setUp() {
+        path = dir.resolve("responses.jsonl");
+        auth1 = load("/GenericResponse/fraud-ex--auth1.json");
+        refer = load("/GenericResponse/fraud-ex--refer.json");
+    }
+
+    @Test
+    void shouldReplayLatestResponsesOnReopen() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 10, mapper);
+        log.put("SMITH", auth1);
+        log.put("JONES", auth1);
+        log.put("SMITH", refer);
+        assertTrue(log.delete("JONES"));
+        assertFalse(log.delete("JONES"));
+
+        ResponseLog reopened = ResponseLog.open(path, 10, mapper);
+
+        assertEquals(1, reopened.size());
+        assertNull(reopened.getResponse("JONES"));
+        assertEquals(json(refer), json(reopened.getResponse("SMITH")));
+    }
+
+    @Test
+    void shouldSeeChangesFromAnotherProcessSharingTheFile() throws Exception {
+        ResponseLog first = ResponseLog.open(path, 10, mapper);
+        ResponseLog second = ResponseLog.open(path, 10, mapper);
+
+        first.put("SMITH", auth1);
+        second.refresh();
+        assertEquals(json(auth1), json(second.getResponse("SMITH")));
+
+        second.put("SMITH", refer);
+        first.refresh();
+        assertEquals(json(refer), json(first.getResponse("SMITH")));
+        assertNotNull(first.getTemplate("SMITH"));
+    }
+
+    @Test
+    void shouldRecoverFromALineLeftPartlyWritten() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 10, mapper);
+        log.put("SMITH", auth1);
+        // A writer killed mid-line, and a line damaged some other way
+        Files.writeString(path, "not json\n{\"id\":\"JONES\",\"resp", StandardOpenOption.APPEND);
+
+        ResponseLog restarted = ResponseLog.open(path, 10, mapper);
+        assertEquals(1, restarted.size());
+        restarted.put("JONES", refer);
+
+        ResponseLog reopened = ResponseLog.open(path, 10, mapper);
+        assertEquals(2, reopened.size());
+        assertEquals(json(auth1), json(reopened.getResponse("SMITH")));
+        assertEquals(json(refer), json(reopened.getResponse("JONES")));
+    }
+
+    @Test
+    void shouldCompactToLiveResponsesOnly() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 10, mapper);
+        ResponseLog other = ResponseLog.open(path, 10, mapper);
+        for (int i = 0; i < 10; i++) {
+            log.put("SMITH", i % 2 == 0 ? auth1 : refer);
+            log.put("JONES" + i, auth1);
+            log.delete("JONES" + i);
+        }
+        log.put("BROWN", auth1);
+        long before = Files.size(path);
+
+        log.compact();
+
+        assertTrue(Files.size(path) < before);
+        assertEquals(2, Files.readAllLines(path).size());
+        assertEquals(json(refer), json(log.getResponse("SMITH")));
+
+        // The other process notices the swapped file and reads the snapshot
+        other.refresh();
+        assertEquals(2, other.size());
+        assertEquals(json(auth1), json(other.getResponse("BROWN")));
+
+        log.put("GREEN", refer);
+        assertEquals(3, ResponseLog.open(path, 10, mapper).size());
+    }
+
+    @Test
+    void shouldBoundCachedTemplates() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 3, mapper);
+        for (int i = 0; i < 10; i++) {
+            log.put("SMITH" + i, auth1);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(log.getTemplate("SMITH" + i));
+        }
+
+        assertEquals(3, log.cachedTemplates());
+        assertEquals(10, log.size());
+    }
+
+    @Test
+    void shouldNotCacheATemplateReplacedWhileItWasBuilt() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 10, mapper);
+        log.put("SMITH", auth1);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                readers.submit(
+                        () -> {
+                            while (!done.get()) {
+                                log.getTemplate("SMITH");
+                            }
+                            return null;
+                        });
+            }
+
+            for (int i = 0; i < 200; i++) {
+                IdentityVerificationResponse response = i % 2 == 0 ? refer : auth1;
+                log.put("SMITH", response);
+                assertEquals(json(response), json(log.getTemplate("SMITH").response()), "put " + i);
+            }
+        } finally {
+            done.set(true);
+            readers.shutdown();
+        }
+        assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldPreferSavedResponsesOverBuiltInOnes() throws Exception {
+        InMemoryDataStore store = new InMemoryDataStore(mapper, ResponseLog.open(path, 10, mapper));
+        store.saveResponse("AUTH1", refer);
+
+        assertEquals(json(refer), json(store.getResponse("AUTH1")));
+        assertTrue(store.removeResponse("AUTH1"));
+        assertNull(store.getResponse("AUTH1"));
+    }
+
+    @Test
+    void shouldImportListExportAndDeleteByPrefixInBatches() throws Exception {
+        ResponseLog log = ResponseLog.open(path, 10, mapper);
+        Map<String, IdentityVerificationResponse> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            batch.put("PERSONA" + i, auth1);
+        }
+        batch.put("PERSON", refer);
+        log.putAll(batch);
+        InMemoryDataStore store = new InMemoryDataStore(mapper, log);
+
+        assertEquals(6, Files.readAllLines(path).size());
+        assertEquals(List.of("PERSON", "PERSONA0", "PERSONA1"), store.ids("PERSON").subList(0, 3));
+        assertEquals(List.of("AUTH1", "AUTH2"), store.ids("AUTH"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(store.writeResponse("PERSON", out));
+        assertEquals(json(refer), json(mapper.readValue(out.toByteArray(), refer.getClass())));
+
+        assertEquals(5, store.removeResponses("PERSONA"));
+        assertEquals(List.of("PERSON"), store.ids("PERSON"));
+        assertEquals(1, ResponseLog.open(path, 10, mapper).size());
+    }
+
+    private String json(IdentityVerificationResponse response) throws Exception {
+        return mapper.writeValueAsString(response);
+    }
+
+    private static IdentityVerificationResponse load(String resource) {
+        return mapFileToObject(getResourceAsStream(resource), IdentityVerificationResponse.class);
+    }
+}
@@ -0,0 +1,144 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.jupiter.api.Test;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Address;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Contact;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.request.Name;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.IdentityVerificationResponse;
+import uk.gov.di.ipv.stub.fraud.gateway.dto.response.Rule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseTemplateTest {
+    private static final List<String> RESPONSES =
+            List.of(
+                    "AUTH1", "AUTH2", "NOAUTH", "REFER", "FARRELL", "ARKIL", "GILT", "KENNEDY",
+                    "CI1");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final InMemoryDataStore inMemoryDataStore = new InMemoryDataStore(mapper);
+
+    @Test
+    void shouldWriteSameJsonAsSerializingTheUpdatedResponse() throws Exception {
+        ResponseTemplate.Applicant applicant = applicant();
+        for (String id : RESPONSES) {
+            assertEquals(
+                    mapper.readTree(mapper.writeValueAsBytes(updatedResponse(id, applicant))),
+                    mapper.readTree(write(inMemoryDataStore.getTemplate(id), applicant)),
+                    id);
+        }
+    }
+
+    @Test
+    void shouldOverlayRuleIdsAsCloningAndPatchingTheResponseDid() throws Exception {
+        ResponseTemplate.Applicant applicant = applicant();
+        ResponseTemplate overlay =
+                inMemoryDataStore.getTemplate("REFER").withRuleIds(List.of("U001", "U015"));
+
+        IdentityVerificationResponse expected = updatedResponse("REFER", applicant);
+        List<Rule> rules =
+                expected.getClientResponsePayload().getDecisionElements().get(0).getRules();
+        rules.get(0).setRuleId("U001");
+        Rule second = new Rule();
+        second.setRuleId("U015");
+        rules.add(second);
+
+        assertEquals(
+                mapper.readTree(mapper.writeValueAsBytes(expected)),
+                mapper.readTree(write(overlay, applicant)));
+        assertEquals(
+                mapper.valueToTree(expected.getClientResponsePayload()),
+                mapper.valueToTree(overlay.response().getClientResponsePayload()));
+    }
+
+    @Test
+    void shouldListResponsesLoadedOnFirstUse() {
+        assertTrue(inMemoryDataStore.ids("").containsAll(RESPONSES));
+        assertTrue(inMemoryDataStore.contains("KENNEDY"));
+        assertNotNull(inMemoryDataStore.getResponse("KENNEDY"));
+        assertTrue(inMemoryDataStore.removeResponse("GILT"));
+        assertFalse(inMemoryDataStore.contains("GILT"));
+    }
+
+    @Test
+    void shouldWriteEscapedAndNullValuesWithoutFlushing() throws Exception {
+        ResponseTemplate template = inMemoryDataStore.getTemplate("AUTH1");
+        ResponseTemplate.Applicant applicant =
+                new ResponseTemplate.Applicant(
+                        "ref \"quoted\" \\ é\n",
+                        null,
+                        "[]".getBytes(),
+                        "1965-07-08",
+                        "[]".getBytes());
+        AtomicInteger flushes = new AtomicInteger();
+        ByteArrayOutputStream out =
+                new ByteArrayOutputStream() {
+                    @Override
+                    public void flush() {
+                        flushes.incrementAndGet();
+                    }
+                };
+
+        template.writeTo(out, applicant);
+
+        JsonNode header = mapper.readTree(out.toByteArray()).get("responseHeader");
+        assertEquals("ref \"quoted\" \\ é\n", header.get("clientReferenceId").textValue());
+        assertTrue(header.get("expRequestId").isNull());
+        assertEquals(0, flushes.get());
+    }
+
+    /** The response as the handler used to build it, by updating a copy of the stored object. */
+    private IdentityVerificationResponse updatedResponse(
+            String id, ResponseTemplate.Applicant applicant) throws IOException {
+        IdentityVerificationResponse response =
+                SerializationUtils.clone(inMemoryDataStore.getResponse(id));
+        response.getResponseHeader().setClientReferenceId(applicant.clientReferenceId());
+        response.getResponseHeader().setExpRequestId(applicant.expRequestId());
+        Contact contact = response.getOriginalRequestData().getContacts().get(0);
+        contact.setAddresses(List.of(mapper.readValue(applicant.addresses(), Address[].class)));
+        contact.getPerson().setNames(List.of(mapper.readValue(applicant.names(), Name[].class)));
+        contact.getPerson().getPersonDetails().setDateOfBirth(applicant.dateOfBirth());
+        return response;
+    }
+
+    private static byte[] write(ResponseTemplate template, ResponseTemplate.Applicant applicant)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.writeTo(out, applicant);
+        return out.toByteArray();
+    }
+
+    private ResponseTemplate.Applicant applicant() throws IOException {
+        Name name = new Name();
+        name.setId("MAINPERSONNAME_1");
+        name.setType("CURRENT");
+        name.setFirstName("KENNETH \"KEN\"");
+        name.setSurName("DECERQUEIRA");
+
+        Address address = new Address();
+        address.setId("MAINAPPADDRESS_1");
+        address.setAddressType("CURRENT");
+        address.setBuildingNumber("8");
+        address.setStreet("HADLEY ROAD");
+        address.setPostTown("BATH");
+        address.setPostal("BA2 5AA");
+
+        return new ResponseTemplate.Applicant(
+                "6e0b9c3a-5a4c-4a1e-9a1f-1d7a3a0c0b11",
+                "RB000012345678",
+                mapper.writeValueAsBytes(List.of(name)),
+                "1965-07-08",
+                mapper.writeValueAsBytes(List.of(address)));
+    }
+}
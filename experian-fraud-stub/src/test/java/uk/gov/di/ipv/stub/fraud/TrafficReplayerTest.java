@@ -0,0 +1,207 @@
+package uk.gov.di.ipv.stub.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrafficReplayerTest {
+    private static final String REQUEST =
+            """
+            {"payload": {"contacts": [{
+              "addresses": [{"addressType": "CURRENT", "postal": "%s"}],
+              "person": {"names": [{"firstName": "%s", "surName": "%s"}],
+                         "personDetails": {"dateOfBirth": "1965-07-08"}}
+            }]}}
+            """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir Path dir;
+
+    @Test
+    void shouldServeRecordedResponsesInTurn() throws Exception {
+        Path log = dir.resolve("traffic.jsonl");
+        TrafficRecorder recorder = new TrafficRecorder(log, 10, mapper);
+        recorder.record(
+                read("BA2 5AA", "Kenneth", "Decerqueira"), 200, json("first"), System.nanoTime());
+        recorder.record(
+                read("BA25AA", "KENNETH", "DECERQUEIRA"), 200, json("second"), System.nanoTime());
+        recorder.record(
+                read("BS1 1AA", "Mary", "Smith"), 503, new byte[0], System.nanoTime() - 2_000_000);
+        recorder.close();
+
+        TrafficReplayer replayer = TrafficReplayer.load(log, mapper);
+
+        String kenneth = read("ba2 5aa", "kenneth", "decerqueira").fingerprint(mapper);
+        assertEquals("first", outcome(replayer.next(kenneth)));
+        assertEquals("second", outcome(replayer.next(kenneth)));
+        assertEquals("first", outcome(replayer.next(kenneth)));
+
+        TrafficReplayer.Recorded mary =
+                replayer.next(read("BS1 1AA", "Mary", "Smith").fingerprint(mapper));
+        assertEquals(503, mary.status());
+        assertEquals(0, mary.response().length);
+        assertTrue(mary.latencyMicros() >= 2000);
+
+        assertNull(replayer.next(read("BS1 1AA", "John", "Smith").fingerprint(mapper)));
+    }
+
+    @Test
+    void shouldPassUnrecordedRequestsToTheStub() throws Exception {
+        Path log = dir.resolve("traffic.jsonl");
+        TrafficRecorder recorder = new TrafficRecorder(log, 10, mapper);
+        recorder.record(
+                read("BA2 5AA", "Kenneth", "Decerqueira"),
+                200,
+                json("recorded"),
+                System.nanoTime());
+        recorder.close();
+
+        TrafficReplayer replayer = TrafficReplayer.load(log, mapper);
+        replayer.setHandler(
+                new AbstractHandler() {
+                    @Override
+                    public void handle(
+                            String target,
+                            Request baseRequest,
+                            HttpServletRequest request,
+                            HttpServletResponse response)
+                            throws IOException {
+                        baseRequest.setHandled(true);
+                        // Echo the body back, to show it survived the lookup
+                        request.getInputStream().transferTo(response.getOutputStream());
+                    }
+                });
+        Server server = new Server();
+        server.addConnector(new ServerConnector(server, 1, 1));
+        server.setHandler(replayer);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String unrecorded = REQUEST.formatted("BS1 1AA", "Mary", "Smith");
+
+            HttpResponse<String> replayed =
+                    client.send(
+                            post(server, REQUEST.formatted("BA2 5AA", "Kenneth", "Decerqueira")),
+                            HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> passed =
+                    client.send(post(server, unrecorded), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals("recorded", mapper.readTree(replayed.body()).path("outcome").asText());
+            assertEquals(unrecorded, passed.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void shouldWriteDelayedReplaysOnceTheirLatencyIsUp() throws Exception {
+        Path log = dir.resolve("traffic.jsonl");
+        TrafficRecorder recorder = new TrafficRecorder(log, 10, mapper);
+        recorder.record(
+                read("BA2 5AA", "Kenneth", "Decerqueira"),
+                502,
+                json("slow"),
+                System.nanoTime() - 300_000_000);
+        recorder.close();
+
+        Server server = new Server();
+        server.addConnector(new ServerConnector(server, 1, 1));
+        server.setHandler(TrafficReplayer.load(log, mapper));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<String>>> replays = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                replays.add(
+                        client.sendAsync(
+                                post(
+                                        server,
+                                        REQUEST.formatted("BA2 5AA", "Kenneth", "Decerqueira")),
+                                HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> replay : replays) {
+                HttpResponse<String> response = replay.get();
+                assertEquals(502, response.statusCode());
+                assertEquals("slow", mapper.readTree(response.body()).path("outcome").asText());
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(elapsedMillis >= 300, "took " + elapsedMillis);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void shouldOnlyFlushTheLogBetweenEntries() throws Exception {
+        List<String> flushedAt = new ArrayList<>();
+        ByteArrayOutputStream out =
+                new ByteArrayOutputStream() {
+                    @Override
+                    public void flush() {
+                        flushedAt.add(toString(StandardCharsets.UTF_8));
+                    }
+                };
+        TrafficRecorder recorder = new TrafficRecorder(out, 10, mapper);
+        for (int i = 0; i < 5; i++) {
+            recorder.record(read("BA2 5AA", "Kenneth", "Decerqueira"), 200, json("first"), 0);
+        }
+        recorder.close();
+
+        assertEquals(5, out.toString(StandardCharsets.UTF_8).lines().count());
+        assertFalse(flushedAt.isEmpty());
+        for (String flushed : flushedAt) {
+            assertTrue(flushed.endsWith("\n"), "Flushed part way through an entry: " + flushed);
+        }
+    }
+
+    private FraudCheckRequest read(String postcode, String forename, String surname)
+            throws IOException {
+        return FraudCheckRequest.read(
+                new ByteArrayInputStream(
+                        REQUEST.formatted(postcode, forename, surname)
+                                .getBytes(StandardCharsets.UTF_8)),
+                mapper);
+    }
+
+    private static byte[] json(String outcome) {
+        return "{\"outcome\":\"%s\"}".formatted(outcome).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String outcome(TrafficReplayer.Recorded recorded) throws IOException {
+        return mapper.readTree(recorded.response()).path("outcome").asText();
+    }
+
+    private static HttpRequest post(Server server, String body) {
+        return HttpRequest.newBuilder(
+                        URI.create(server.getURI().toString() + "DefaultRequestListener"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -1,23 +1,45 @@
 package uk.gov.di.ipv.stub.experian;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import spark.Spark;
 
 import javax.xml.bind.JAXBException;
 
+import java.io.IOException;
+
 public class App {
 
-    public static void main(String[] args) throws JAXBException {
+    public static void main(String[] args) throws JAXBException, IOException {
         new App();
     }
 
-    public App() throws JAXBException {
+    public App() throws JAXBException, IOException {
+        FaultInjector faultInjector = FaultInjector.fromConfig(new ObjectMapper());
+        faultInjector.install();
+
         Spark.port(Integer.parseInt(Config.PORT));
 
+        AdmissionControl admissionControl = AdmissionControl.fromConfig();
+        admissionControl.install();
+
         Handler handler = new Handler();
 
         Spark.get("/", handler.root);
         Spark.get("/health", handler.root);
         Spark.post("/wasp-token", handler.tokenRequest);
         Spark.post("/iiq", "application/soap+xml", handler.iiqWebService);
+
+        Spark.get("/logging", BodyLogger.getSettings);
+        Spark.put("/logging", BodyLogger.updateSettings);
+
+        Spark.get("/faults", faultInjector.getProfile);
+        Spark.put("/faults", faultInjector.updateProfile);
+
+        Spark.get("/metrics", admissionControl.getMetrics);
+
+        WarmUp warmUp = WarmUp.fromConfig();
+        handler.warmUp(warmUp);
+        Spark.get("/ready", warmUp.getReady);
+        warmUp.start();
     }
 }
@@ -0,0 +1,172 @@
+package uk.gov.di.ipv.stub.experian;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Logs request and response bodies off the request threads. Entries go into a bounded buffer and
+ * are built and written by a single logging thread, so a request only pays for the sampling check
+ * and the enqueue. When the buffer is full entries are dropped rather than blocking the request.
+ *
+ * <p>Names, dates of birth and addresses are redacted unless full bodies are switched on, which can
+ * be done at runtime with {@code PUT /logging?fullBodies=true}.
+ */
+public class BodyLogger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BodyLogger.class);
+
+    private static final Pattern JSON_FIELDS =
+            Pattern.compile(
+                    "(\"(?:title|firstName|middleNames|surName|dateOfBirth|subBuilding|buildingName"
+                            + "|buildingNumber|street|locality|postTown|postal)\"\\s*:\\s*)"
+                            + "\"(?:[^\"\\\\]|\\\\.)*\"");
+    private static final Pattern XML_ELEMENTS =
+            Pattern.compile(
+                    "<((?:\\w+:)?(?:Title|Forename|MiddleName|Surname|DateOfBirth|CCYY|MM|DD|Flat"
+                            + "|HouseName|HouseNumber|Street|District|PostTown|Town|County"
+                            + "|Postcode|PostCode|AnswerGiven))(\\s[^>]*)?>[^<]*</\\1>");
+    private static final String REDACTED = "***";
+    private static final String ANY_ROUTE = "*";
+
+    private record Entry(String route, String label, Supplier<String> body, boolean fullBody) {}
+
+    private static final BlockingQueue<Entry> buffer =
+            new ArrayBlockingQueue<>(Integer.parseInt(Config.LOG_BUFFER_SIZE));
+    private static final LongAdder dropped = new LongAdder();
+
+    private static volatile boolean fullBodies = Boolean.parseBoolean(Config.LOG_FULL_BODIES);
+    private static volatile Map<String, Double> sampleRates =
+            parseSampleRates(Config.LOG_SAMPLE_RATES);
+
+    static {
+        Thread writer = new Thread(BodyLogger::drain, "body-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    List<Entry> remaining = new ArrayList<>();
+                                    buffer.drainTo(remaining);
+                                    remaining.forEach(BodyLogger::write);
+                                }));
+    }
+
+    private BodyLogger() {}
+
+    /**
+     * Queues a body to be logged if the route is sampled. The supplier runs later on the logging
+     * thread, so it must only capture values that will not change.
+     */
+    public static void log(String route, String label, Supplier<String> body) {
+        if (sampled(route)) {
+            logSampled(route, label, body);
+        }
+    }
+
+    /**
+     * Whether to log a body for this request, for routes that only capture the body when it will be
+     * logged. A sampled body is then passed to {@link #logSampled}.
+     */
+    public static boolean sampled(String route) {
+        double rate = sampleRates.getOrDefault(route, sampleRates.getOrDefault(ANY_ROUTE, 1.0));
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /** Queues a body to be logged, without sampling it again. */
+    public static void logSampled(String route, String label, Supplier<String> body) {
+        if (!buffer.offer(new Entry(route, label, body, fullBodies))) {
+            dropped.increment();
+        }
+    }
+
+    public static Route getSettings = (Request request, Response response) -> settings();
+
+    public static Route updateSettings =
+            (Request request, Response response) -> {
+                String full = request.queryParams("fullBodies");
+                if (full != null) {
+                    fullBodies = Boolean.parseBoolean(full);
+                }
+                String rates = request.queryParams("sampleRates");
+                if (rates != null) {
+                    setSampleRates(rates);
+                }
+                LOGGER.info("Body logging changed to {}", settings());
+                return settings();
+            };
+
+    static void setSampleRates(String rates) {
+        sampleRates = parseSampleRates(rates);
+    }
+
+    static String redact(String body) {
+        String redacted = JSON_FIELDS.matcher(body).replaceAll("$1\"" + REDACTED + "\"");
+        return XML_ELEMENTS.matcher(redacted).replaceAll("<$1$2>" + REDACTED + "</$1>");
+    }
+
+    /** Parses {@code route=rate} pairs, with {@code *} setting the rate for any other route. */
+    static Map<String, Double> parseSampleRates(String rates) {
+        Map<String, Double> parsed = new HashMap<>();
+        for (String pair : rates.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            String[] routeAndRate = pair.split("=");
+            if (routeAndRate.length != 2) {
+                throw new IllegalArgumentException("Invalid sample rate '%s'".formatted(pair));
+            }
+            parsed.put(routeAndRate[0].trim(), Double.parseDouble(routeAndRate[1].trim()));
+        }
+        return Map.copyOf(parsed);
+    }
+
+    private static String settings() {
+        return "fullBodies=%s sampleRates=%s".formatted(fullBodies, sampleRates);
+    }
+
+    private static void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.drainTo(batch);
+            batch.forEach(BodyLogger::write);
+            batch.clear();
+
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                LOGGER.warn("Dropped {} body log entries, buffer full", lost);
+            }
+        }
+    }
+
+    private static void write(Entry entry) {
+        try {
+            String body = entry.body().get();
+            LOGGER.info(
+                    "{} {}: {}",
+                    entry.route(),
+                    entry.label(),
+                    entry.fullBody() ? body : redact(body));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to log {} {}", entry.route(), entry.label(), e);
+        }
+    }
+}
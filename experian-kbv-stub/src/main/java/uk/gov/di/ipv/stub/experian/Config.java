@@ -5,6 +5,28 @@ import java.util.Optional;
 
 public class Config {
     public static final String PORT = getConfigValue("PORT", "8080");
+    public static final String LOG_BUFFER_SIZE = getConfigValue("LOG_BUFFER_SIZE", "10000");
+    public static final String LOG_FULL_BODIES = getConfigValue("LOG_FULL_BODIES", "false");
+    public static final String LOG_SAMPLE_RATES = getConfigValue("LOG_SAMPLE_RATES", "");
+    public static final String FAULT_PROFILES_PATH = getConfigValue("FAULT_PROFILES_PATH", "");
+    public static final String FAULT_PROFILE = getConfigValue("FAULT_PROFILE", "none");
+    public static final String LIMITER_MODE = getConfigValue("LIMITER_MODE", "off");
+    public static final String LIMITER_ROUTES = getConfigValue("LIMITER_ROUTES", "*");
+    public static final String LIMITER_LIMIT = getConfigValue("LIMITER_LIMIT", "64");
+    public static final String LIMITER_MAX_LIMIT = getConfigValue("LIMITER_MAX_LIMIT", "512");
+    public static final String LIMITER_LATENCY_TARGET_MILLIS =
+            getConfigValue("LIMITER_LATENCY_TARGET_MILLIS", "500");
+    public static final String LIMITER_QUEUE_TIMEOUT_MILLIS =
+            getConfigValue("LIMITER_QUEUE_TIMEOUT_MILLIS", "0");
+    public static final String LIMITER_RETRY_AFTER_SECONDS =
+            getConfigValue("LIMITER_RETRY_AFTER_SECONDS", "1");
+    public static final String KBV_QUESTION_BANK_PATH =
+            getConfigValue("KBV_QUESTION_BANK_PATH", "");
+    public static final String KBV_JOURNEY_TTL_SECONDS =
+            getConfigValue("KBV_JOURNEY_TTL_SECONDS", "1800");
+    public static final String KBV_JOURNEY_MAX_SIZE =
+            getConfigValue("KBV_JOURNEY_MAX_SIZE", "100000");
+    public static final String WARM_UP_ITERATIONS = getConfigValue("WARM_UP_ITERATIONS", "50");
 
     private static String getConfigValue(String key, String defaultValue) {
         return Optional.ofNullable(
@@ -0,0 +1,359 @@
+package uk.gov.di.ipv.stub.experian;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Response;
+import spark.Route;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds upstream latency, errors and connection resets in front of the stub's routes, so clients'
+ * timeouts, retries and connection pools can be tested. What is injected comes from the active
+ * profile, which sets the faults per request path and can be switched at runtime with {@code PUT
+ * /faults}.
+ *
+ * <p>A delayed request is suspended and resumed by a scheduler when its delay is up, so it holds no
+ * Jetty thread while it waits, however slow the profile.
+ */
+public class FaultInjector extends HandlerWrapper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FaultInjector.class);
+    private static final String FAULT = FaultInjector.class.getName() + ".fault";
+    private static final String NONE = "none";
+
+    /** A delay, in milliseconds, drawn from one of several distributions. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Latency(
+            String type,
+            Long millis,
+            Long min,
+            Long max,
+            Long median,
+            Double sigma,
+            Map<Double, Long> percentiles) {
+
+        public Latency {
+            switch (type == null ? "" : type) {
+                case "fixed" -> require(millis != null, "fixed latency needs millis");
+                case "uniform" -> require(
+                        min != null && max != null && min <= max,
+                        "uniform latency needs min <= max");
+                case "lognormal" -> require(
+                        median != null && sigma != null,
+                        "lognormal latency needs median and sigma");
+                case "percentiles" -> require(
+                        percentiles != null && !percentiles.isEmpty(),
+                        "percentiles latency needs percentiles");
+                default -> throw new IllegalArgumentException(
+                        "Unknown latency type '%s', expected fixed, uniform, lognormal or percentiles"
+                                .formatted(type));
+            }
+            percentiles = percentiles == null ? null : new TreeMap<>(percentiles);
+        }
+
+        public long sample(Random random) {
+            return switch (type) {
+                case "fixed" -> millis;
+                case "uniform" -> min + (long) (random.nextDouble() * (max - min + 1));
+                case "lognormal" -> Math.round(
+                        Math.exp(Math.log(median) + sigma * random.nextGaussian()));
+                default -> fromPercentiles(random.nextDouble() * 100);
+            };
+        }
+
+        /**
+         * Interpolates linearly between the listed percentiles. Below the lowest it is the lowest
+         * value, and above the highest the highest value.
+         */
+        private long fromPercentiles(double percentile) {
+            NavigableMap<Double, Long> table = (NavigableMap<Double, Long>) percentiles;
+            Map.Entry<Double, Long> below = table.floorEntry(percentile);
+            Map.Entry<Double, Long> above = table.ceilingEntry(percentile);
+            if (below == null) {
+                return above.getValue();
+            }
+            if (above == null || above.getKey().equals(below.getKey())) {
+                return below.getValue();
+            }
+            double fraction = (percentile - below.getKey()) / (above.getKey() - below.getKey());
+            return Math.round(below.getValue() + fraction * (above.getValue() - below.getValue()));
+        }
+    }
+
+    /** The faults for one path. Rates are fractions of requests, from 0 to 1. */
+    public record EndpointFaults(
+            Latency latency, double errorRate, Integer errorStatus, double resetRate) {
+
+        public EndpointFaults {
+            require(
+                    errorRate >= 0 && resetRate >= 0 && errorRate + resetRate <= 1,
+                    "errorRate and resetRate must be between 0 and 1 in total");
+            errorStatus = errorStatus == null ? 503 : errorStatus;
+        }
+    }
+
+    public record Profile(String name, Map<String, EndpointFaults> endpoints) {
+        public static final Profile NO_FAULTS = new Profile(NONE, Map.of());
+
+        public Profile {
+            endpoints = endpoints == null ? Map.of() : Map.copyOf(endpoints);
+        }
+    }
+
+    private enum Outcome {
+        RESPOND,
+        ERROR,
+        RESET
+    }
+
+    private record Fault(long delayMillis, Outcome outcome, int status) {}
+
+    private final ObjectMapper mapper;
+    private final Map<String, Profile> profiles;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "fault-injector");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private volatile Profile profile = Profile.NO_FAULTS;
+
+    public FaultInjector(ObjectMapper mapper, Map<String, Profile> profiles) {
+        this.mapper = mapper;
+        this.profiles = new HashMap<>(profiles);
+        this.profiles.put(NONE, Profile.NO_FAULTS);
+    }
+
+    /**
+     * Reads the named profiles from {@code FAULT_PROFILES_PATH}, a JSON object of profiles by name,
+     * and starts with the one named by {@code FAULT_PROFILE}.
+     */
+    public static FaultInjector fromConfig(ObjectMapper mapper) throws IOException {
+        Map<String, Profile> profiles = new HashMap<>();
+        if (!Config.FAULT_PROFILES_PATH.isBlank()) {
+            try (InputStream in = Files.newInputStream(Path.of(Config.FAULT_PROFILES_PATH))) {
+                Map<String, Profile> read =
+                        mapper.readValue(
+                                in,
+                                mapper.getTypeFactory()
+                                        .constructMapType(Map.class, String.class, Profile.class));
+                read.forEach(
+                        (name, profile) ->
+                                profiles.put(name, new Profile(name, profile.endpoints())));
+            }
+        }
+        FaultInjector injector = new FaultInjector(mapper, profiles);
+        injector.select(Config.FAULT_PROFILE);
+        return injector;
+    }
+
+    /**
+     * Puts this in front of Spark's routes, followed by any other handlers in the order given. Must
+     * be called before any route is defined.
+     */
+    public void install(HandlerWrapper... inner) {
+        install(EmbeddedServers.defaultIdentifier(), inner);
+    }
+
+    /** As {@link #install(HandlerWrapper...)}, for a Spark service using this server identifier. */
+    public void install(Object identifier, HandlerWrapper... inner) {
+        EmbeddedServers.add(
+                identifier,
+                new EmbeddedJettyFactory(
+                        new JettyServerFactory() {
+                            @Override
+                            public Server create(int maxThreads, int minThreads, int timeout) {
+                                return maxThreads > 0
+                                        ? new InjectingServer(
+                                                new QueuedThreadPool(
+                                                        maxThreads,
+                                                        minThreads > 0 ? minThreads : 8,
+                                                        timeout > 0 ? timeout : 60000),
+                                                inner)
+                                        : new InjectingServer(null, inner);
+                            }
+
+                            @Override
+                            public Server create(ThreadPool threadPool) {
+                                return new InjectingServer(threadPool, inner);
+                            }
+                        }));
+    }
+
+    /** Spark sets its handler on the server it creates, so this puts the injector around it. */
+    private class InjectingServer extends Server {
+        private final HandlerWrapper[] inner;
+
+        InjectingServer(ThreadPool threadPool, HandlerWrapper[] inner) {
+            super(threadPool);
+            this.inner = inner;
+        }
+
+        @Override
+        public void setHandler(Handler handler) {
+            Handler wrapped = handler;
+            for (int i = inner.length - 1; i >= 0; i--) {
+                inner[i].setHandler(wrapped);
+                wrapped = inner[i];
+            }
+            FaultInjector.this.setHandler(wrapped);
+            super.setHandler(FaultInjector.this);
+        }
+    }
+
+    public Profile profile() {
+        return profile;
+    }
+
+    public void select(String name) {
+        Profile selected = profiles.get(name);
+        if (selected == null) {
+            throw new IllegalArgumentException(
+                    "Unknown fault profile '%s', expected one of %s"
+                            .formatted(name, profiles.keySet()));
+        }
+        use(selected);
+    }
+
+    public void use(Profile selected) {
+        profile = selected;
+        LOGGER.info("Fault profile is now '{}'", selected.name());
+    }
+
+    public Route getProfile =
+            (spark.Request request, Response response) -> {
+                response.header("Content-Type", "application/json");
+                return profileJson();
+            };
+
+    /** Selects a named profile with {@code ?profile=<name>}, or uses the profile in the body. */
+    public Route updateProfile =
+            (spark.Request request, Response response) -> {
+                try {
+                    String name = request.queryParams("profile");
+                    if (name != null) {
+                        select(name);
+                    } else {
+                        use(readProfile(request.bodyAsBytes()));
+                    }
+                } catch (IllegalArgumentException | IOException e) {
+                    response.status(400);
+                    return e.getMessage();
+                }
+                response.header("Content-Type", "application/json");
+                return profileJson();
+            };
+
+    // The routes are initialised before the constructor runs, so they go through these for the mapper
+    private String profileJson() throws IOException {
+        return mapper.writeValueAsString(profile);
+    }
+
+    private Profile readProfile(byte[] json) throws IOException {
+        return mapper.readValue(json, Profile.class);
+    }
+
+    @Override
+    public void handle(
+            String target,
+            Request baseRequest,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException, ServletException {
+        Fault fault;
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // Resumed after its delay, with the rest of the fault still to apply
+            fault = (Fault) request.getAttribute(FAULT);
+        } else {
+            fault = sample(profile.endpoints().get(target), ThreadLocalRandom.current());
+            if (fault != null && fault.delayMillis() > 0) {
+                request.setAttribute(FAULT, fault);
+                AsyncContext async = request.startAsync();
+                async.setTimeout(0);
+                scheduler.schedule(
+                        () -> async.dispatch(), fault.delayMillis(), TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+
+        if (fault == null || fault.outcome() == Outcome.RESPOND) {
+            super.handle(target, baseRequest, request, response);
+        } else if (fault.outcome() == Outcome.ERROR) {
+            baseRequest.setHandled(true);
+            response.setStatus(fault.status());
+            response.setContentType("text/plain");
+            response.getOutputStream().write("Injected fault".getBytes(StandardCharsets.UTF_8));
+        } else {
+            baseRequest.setHandled(true);
+            reset(baseRequest);
+        }
+    }
+
+    private static Fault sample(EndpointFaults faults, Random random) {
+        if (faults == null) {
+            return null;
+        }
+        long delay = faults.latency() == null ? 0 : Math.max(0, faults.latency().sample(random));
+        double roll = random.nextDouble();
+        Outcome outcome =
+                roll < faults.resetRate()
+                        ? Outcome.RESET
+                        : roll < faults.resetRate() + faults.errorRate()
+                                ? Outcome.ERROR
+                                : Outcome.RESPOND;
+        return new Fault(delay, outcome, faults.errorStatus());
+    }
+
+    /** Closes the connection without a response, with a TCP reset where the socket allows it. */
+    private static void reset(Request baseRequest) {
+        EndPoint endPoint = baseRequest.getHttpChannel().getEndPoint();
+        if (endPoint.getTransport() instanceof SocketChannel channel) {
+            try {
+                channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            } catch (IOException e) {
+                LOGGER.debug("Failed to set linger for reset, closing instead", e);
+            }
+        }
+        baseRequest.getHttpChannel().abort(new IOException("Injected connection reset"));
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package uk.gov.di.ipv.stub.experian;
 
-import com.experian.uk.schema.experian.identityiq.services.webservice.AnswerFormat;
+import com.experian.uk.schema.experian.identityiq.services.webservice.Applicant;
+import com.experian.uk.schema.experian.identityiq.services.webservice.ApplicantDateOfBirth;
+import com.experian.uk.schema.experian.identityiq.services.webservice.ApplicantName;
 import com.experian.uk.schema.experian.identityiq.services.webservice.ArrayOfString;
 import com.experian.uk.schema.experian.identityiq.services.webservice.Control;
 import com.experian.uk.schema.experian.identityiq.services.webservice.Error;
-import com.experian.uk.schema.experian.identityiq.services.webservice.Question;
 import com.experian.uk.schema.experian.identityiq.services.webservice.Questions;
 import com.experian.uk.schema.experian.identityiq.services.webservice.RTQ;
 import com.experian.uk.schema.experian.identityiq.services.webservice.RTQResponse;
@@ -15,38 +16,40 @@ import com.experian.uk.schema.experian.identityiq.services.webservice.SAA;
 import com.experian.uk.schema.experian.identityiq.services.webservice.SAAResponse;
 import com.experian.uk.schema.experian.identityiq.services.webservice.SAAResponse2;
 import com.experian.uk.wasp.LoginWithCertificateResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.soap.MessageFactory;
-import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPFactory;
 import javax.xml.soap.SOAPFault;
-import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.ws.soap.SOAPFaultException;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Handler {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(Handler.class);
     private static final String AUTHENTICATION_UNSUCCESSFUL = "Authentication Unsuccessful";
     private static final String AUTHENTICATION_SUCCESSFUL =
             "Authentication successful – capture SQ";
@@ -59,30 +62,109 @@ public class Handler {
             "<?xml version=\"1.0\" encoding=\"utf-8\"?><soap:Envelope xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
                     + "<soap:Body>";
     private final String soapFooter = "</soap:Body></soap:Envelope>";
+    private static final String SOAP_BODY = "Body";
+    private static final String DEFAULT_QUESTION_BANK = "/question-bank.json";
+    private static final Logger LOGGER = LoggerFactory.getLogger(Handler.class);
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+    private static final String WARM_UP_URN = "warm-up";
+    private static final String WARM_UP_ENVELOPE =
+            "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>%s</soap:Body></soap:Envelope>";
+    private static final byte[] WARM_UP_SAA =
+            WARM_UP_ENVELOPE
+                    .formatted(
+                            """
+                            <SAA xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                              <sAARequest>
+                                <Applicant><Name><Forename>WARM</Forename><Surname>UP</Surname></Name></Applicant>
+                                <Control><URN>%s</URN></Control>
+                              </sAARequest>
+                            </SAA>
+                            """
+                                    .formatted(WARM_UP_URN))
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] WARM_UP_RTQ =
+            WARM_UP_ENVELOPE
+                    .formatted(
+                            """
+                            <RTQ xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                              <rTQRequest>
+                                <Control/>
+                                <Responses><Response><QuestionID>Q00001</QuestionID><AnswerGiven>WARM UP</AnswerGiven></Response></Responses>
+                              </rTQRequest>
+                            </RTQ>
+                            """)
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final Jaxb jaxb;
+    private final QuestionBank questionBank;
+    private final JourneyStore journeys;
+    private final ResponseTemplate saaThinFile;
+    private final ResponseTemplate rtqUserDataIncorrect;
+    private final ResponseTemplate emptyResponse;
+    private final Map<String, List<ResponseTemplate>> roundTemplates = new HashMap<>();
+    private final Map<Outcome, ResponseTemplate> outcomeTemplates = new ConcurrentHashMap<>();
+
+    /** The final RTQ result, rendered the first time each combination is needed. */
+    private record Outcome(boolean authenticated, int asked, int correct, int incorrect) {}
+
+    protected Handler() throws JAXBException, IOException {
+        this(
+                loadQuestionBank(),
+                new JourneyStore(
+                        Duration.ofSeconds(Long.parseLong(Config.KBV_JOURNEY_TTL_SECONDS)),
+                        Integer.parseInt(Config.KBV_JOURNEY_MAX_SIZE)));
+    }
 
-    private final Unmarshaller saaUnmarshaller;
-    private final Marshaller saaResponseMarshaller;
-    private final Unmarshaller rtqUnmarshaller;
-    private final Marshaller rtqResponseMarshaller;
-    private final Marshaller tokenResponseMarshaller;
-
-    protected Handler() throws JAXBException {
-        saaUnmarshaller = JAXBContext.newInstance(SAA.class).createUnmarshaller();
-        saaResponseMarshaller = JAXBContext.newInstance(SAAResponse.class).createMarshaller();
-        saaResponseMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-        rtqUnmarshaller = JAXBContext.newInstance(RTQ.class).createUnmarshaller();
-        rtqResponseMarshaller = JAXBContext.newInstance(RTQResponse.class).createMarshaller();
-        rtqResponseMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-        tokenResponseMarshaller =
-                JAXBContext.newInstance(LoginWithCertificateResponse.class).createMarshaller();
-        tokenResponseMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+    Handler(QuestionBank questionBank, JourneyStore journeys) throws JAXBException {
+        jaxb =
+                new Jaxb(
+                        SAA.class,
+                        SAAResponse.class,
+                        RTQ.class,
+                        RTQResponse.class,
+                        LoginWithCertificateResponse.class);
+        this.questionBank = questionBank;
+        this.journeys = journeys;
+        // The responses only differ by the request's control block, so render each one up front
+        for (QuestionBank.QuestionSet questionSet : questionBank.questionSets()) {
+            List<ResponseTemplate> rounds = new ArrayList<>();
+            rounds.add(saaTemplate(questionSet.rounds().get(0)));
+            for (List<String> round :
+                    questionSet.rounds().subList(1, questionSet.rounds().size())) {
+                rounds.add(rtqQuestionsTemplate(round));
+            }
+            roundTemplates.put(questionSet.id(), List.copyOf(rounds));
+        }
+        saaThinFile = saaThinFileTemplate();
+        rtqUserDataIncorrect = rtqErrorTemplate();
+        emptyResponse = ResponseTemplate.empty(soapHeader, soapFooter);
+    }
+
+    private static QuestionBank loadQuestionBank() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        QuestionBank questionBank;
+        if (Config.KBV_QUESTION_BANK_PATH.isBlank()) {
+            try (InputStream in = Handler.class.getResourceAsStream(DEFAULT_QUESTION_BANK)) {
+                questionBank = QuestionBank.read(in, mapper);
+            }
+        } else {
+            try (InputStream in = Files.newInputStream(Path.of(Config.KBV_QUESTION_BANK_PATH))) {
+                questionBank = QuestionBank.read(in, mapper);
+            }
+        }
+        LOGGER.info(
+                "Loaded {} questions in {} question sets",
+                questionBank.questionCount(),
+                questionBank.questionSets().size());
+        return questionBank;
     }
 
     protected Route root = (Request request, Response response) -> "ok";
 
     protected Route tokenRequest =
             (Request request, Response response) -> {
-                LOGGER.info("tokenRequest body: " + request.body());
+                String requestBody = request.body();
+                BodyLogger.log(request.pathInfo(), "tokenRequest body", () -> requestBody);
                 /**
                  * <?xml version="1.0" encoding="utf-8"?> <soap:Envelope
                  * xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
@@ -101,129 +183,288 @@ public class Handler {
                 response.header("Content-Type", "application/soap+xml");
 
                 String resp = soapHeader + body + soapFooter;
-                LOGGER.info("tokenRequest response is:" + resp);
+                BodyLogger.log(request.pathInfo(), "tokenRequest response", () -> resp);
                 return resp;
             };
 
     private String marshallToken(LoginWithCertificateResponse loginWithCertificateResponse)
             throws JAXBException, IOException {
         try (StringWriter sw = new StringWriter()) {
-            tokenResponseMarshaller.marshal(loginWithCertificateResponse, sw);
+            jaxb.marshal(loginWithCertificateResponse, sw);
             return sw.toString();
         }
     }
 
-    private Question getQuestion1() {
-        Question question = new Question();
-        question.setQuestionID("Q00001");
-        question.setText("Question 1");
-        question.setTooltip("Question 1 Tooltip");
-        AnswerFormat answerFormat = new AnswerFormat();
-        answerFormat.setIdentifier("A00004");
-        answerFormat.setFieldType("G");
-        answerFormat.getAnswerList().addAll(Arrays.asList("Correct 1", "Incorrect 1"));
-        question.setAnswerFormat(answerFormat);
-        return question;
+    protected Route iiqWebService =
+            (Request request, Response response) -> {
+                // Only copied into a byte array when the body is logged, otherwise parsed from the
+                // stream. Spark buffers the stream itself, except for chunked requests
+                InputStream in;
+                if (BodyLogger.sampled(request.pathInfo())) {
+                    byte[] body = request.bodyAsBytes();
+                    BodyLogger.logSampled(
+                            request.pathInfo(),
+                            "iiqWebService body",
+                            () -> new String(body, StandardCharsets.UTF_8));
+                    in = new ByteArrayInputStream(body);
+                } else {
+                    in = request.raw().getInputStream();
+                }
+                Reply reply = iiqResponse(in);
+                response.header("Content-Type", "application/soap+xml");
+                reply.writeTo(response.raw().getOutputStream());
+                BodyLogger.log(request.pathInfo(), "iiqWebService response", reply::toString);
+                return "";
+            };
+
+    /**
+     * Adds synthetic SAA and RTQ requests, a token and a SOAP fault to the warm-up, covering the
+     * JAXB, StAX and SAAJ setup. The SAA's journey is removed again after each run.
+     */
+    void warmUp(WarmUp warmUp) {
+        warmUp.step(
+                "SAA",
+                () -> {
+                    iiqResponse(new ByteArrayInputStream(WARM_UP_SAA))
+                            .writeTo(OutputStream.nullOutputStream());
+                    journeys.remove(WARM_UP_URN);
+                });
+        warmUp.step(
+                "RTQ",
+                () ->
+                        iiqResponse(new ByteArrayInputStream(WARM_UP_RTQ))
+                                .writeTo(OutputStream.nullOutputStream()));
+        warmUp.step("token", () -> marshallToken(new LoginWithCertificateResponse()));
+        warmUp.step(
+                "SOAP fault",
+                () -> {
+                    try {
+                        throwSOAPFaultException("warm-up");
+                    } catch (SOAPFaultException expected) {
+                        // Thrown every time, only building it matters
+                    }
+                });
     }
 
-    private Question getQuestion2() {
-        Question question = new Question();
-        question.setQuestionID("Q00002");
-        question.setText("Question 2");
-        question.setTooltip("Question 2 Tooltip");
-        AnswerFormat answerFormat = new AnswerFormat();
-        answerFormat
-                .getAnswerList()
-                .addAll(
-                        Arrays.asList(
-                                "Correct 2", "Incorrect 2", USER_DATA_INCORRECT, EXPERIAN_ERROR));
-        answerFormat.setFieldType("G");
-        answerFormat.setIdentifier("A00007");
-        question.setAnswerFormat(answerFormat);
-        return question;
+    /** A pre-rendered response and the request's control block to splice into it. */
+    record Reply(ResponseTemplate template, byte[] control) {
+        void writeTo(OutputStream out) throws IOException {
+            template.writeTo(out, control);
+        }
+
+        @Override
+        public String toString() {
+            return template.toString(control);
+        }
     }
 
-    protected Route iiqWebService =
-            (Request request, Response response) -> {
-                LOGGER.info("iiqWebService body: " + request.body());
-                StringWriter sw = new StringWriter();
-                String body = request.body();
-                MessageFactory messageFactory = MessageFactory.newInstance();
-                ByteArrayInputStream soapStringStream =
-                        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
-                SOAPMessage soapMessage =
-                        messageFactory.createMessage(new MimeHeaders(), soapStringStream);
-                Document bodyDoc = soapMessage.getSOAPBody().extractContentAsDocument();
-
-                NodeList saa = bodyDoc.getElementsByTagName("SAA");
-                Node itemSAA = saa.item(0);
-                if (itemSAA != null) {
-                    stubSAA(sw, bodyDoc);
+    /**
+     * Reads the envelope as a stream, skipping to the first element in the SOAP body and
+     * unmarshalling the SAA or RTQ request straight from the reader.
+     */
+    Reply iiqResponse(InputStream body) throws XMLStreamException, JAXBException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(body);
+        try {
+            if (toFirstBodyElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "SAA":
+                        return stubSAA((SAA) jaxb.unmarshal(reader));
+                    case "RTQ":
+                        return stubRTQ((RTQ) jaxb.unmarshal(reader));
+                    default:
+                        break;
                 }
+            }
+        } finally {
+            reader.close();
+        }
+        return new Reply(emptyResponse, new byte[0]);
+    }
 
-                NodeList rtq = bodyDoc.getElementsByTagName("RTQ");
-                Node itemRTQ = rtq.item(0);
-                if (itemRTQ != null) {
-                    stubRTQ(sw, bodyDoc);
-                }
-                response.header("Content-Type", "application/soap+xml");
-                String resp = soapHeader + sw + soapFooter;
-                LOGGER.info("iiqWebService response: " + resp);
-                return resp;
-            };
+    private static boolean toFirstBodyElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamReader.START_ELEMENT
+                    && SOAP_BODY.equals(reader.getLocalName())) {
+                return reader.nextTag() == XMLStreamReader.START_ELEMENT;
+            }
+        }
+        return false;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
 
-    private void stubSAA(StringWriter sw, Document bodyDoc) throws JAXBException {
-        SAA saaObject = (SAA) saaUnmarshaller.unmarshal(bodyDoc);
+    private Reply stubSAA(SAA saaObject) throws JAXBException {
         Control control = saaObject.getSAARequest().getControl();
         control.setAuthRefNo(UUID.randomUUID().toString());
         if (control.getURN() == null) {
             control.setURN(UUID.randomUUID().toString());
         }
+        byte[] controlBlock = ResponseTemplate.control(jaxb, control);
+
+        Applicant applicant = saaObject.getSAARequest().getApplicant();
+        ApplicantName name = applicant.getName();
+        if (name.getForename().equalsIgnoreCase("SUZIE")
+                && name.getSurname().equalsIgnoreCase("SHREEVE")) {
+            return new Reply(saaThinFile, controlBlock);
+        }
+
+        QuestionBank.QuestionSet questionSet =
+                questionBank.questionSetFor(
+                        name.getForename(), name.getSurname(), dateOfBirth(applicant));
+        journeys.start(control.getURN(), JourneyStore.Journey.start(questionSet));
+        return new Reply(roundTemplates.get(questionSet.id()).get(0), controlBlock);
+    }
+
+    private static String dateOfBirth(Applicant applicant) {
+        ApplicantDateOfBirth dateOfBirth = applicant.getDateOfBirth();
+        return dateOfBirth == null
+                ? null
+                : "%04d-%02d-%02d"
+                        .formatted(dateOfBirth.getCCYY(), dateOfBirth.getMM(), dateOfBirth.getDD());
+    }
+
+    private Reply stubRTQ(RTQ rtqRequest) throws JAXBException {
+        Control control = rtqRequest.getRTQRequest().getControl();
+        byte[] controlBlock = ResponseTemplate.control(jaxb, control);
+        Map<String, String> answers = new HashMap<>();
+        rtqRequest
+                .getRTQRequest()
+                .getResponses()
+                .getResponse()
+                .forEach(item -> answers.put(item.getQuestionID(), item.getAnswerGiven()));
+
+        boolean simulateExperianError =
+                answers.values().stream()
+                        .anyMatch(answer -> answer != null && answer.startsWith(EXPERIAN_ERROR));
+        if (simulateExperianError) {
+            throwSOAPFaultException("A general SoapFault has occurred at the Experian IIQ Stub.");
+        }
+
+        boolean simulateUserDataIncorrectError =
+                answers.values().stream()
+                        .anyMatch(
+                                answer -> answer != null && answer.startsWith(USER_DATA_INCORRECT));
+        if (simulateUserDataIncorrectError) {
+            return new Reply(rtqUserDataIncorrect, controlBlock);
+        }
+
+        JourneyStore.Journey journey =
+                control.getURN() == null
+                        ? null
+                        : journeys.update(control.getURN(), started -> score(started, answers));
+        if (journey == null) {
+            return new Reply(outcomeTemplate(scoreWithoutJourney(answers)), controlBlock);
+        }
+        if (!journey.finished()) {
+            return new Reply(
+                    roundTemplates.get(journey.questionSet().id()).get(journey.round()),
+                    controlBlock);
+        }
+        journeys.remove(control.getURN());
+        return new Reply(
+                outcomeTemplate(
+                        new Outcome(
+                                journey.authenticated(),
+                                journey.asked(),
+                                journey.correct(),
+                                journey.incorrect())),
+                controlBlock);
+    }
+
+    /**
+     * Marks the answers to the journey's current round. The journey finishes once the applicant has
+     * enough correct answers, can no longer get enough, or has answered every round.
+     */
+    private JourneyStore.Journey score(JourneyStore.Journey journey, Map<String, String> answers) {
+        if (journey.finished()) {
+            return journey;
+        }
+        QuestionBank.QuestionSet questionSet = journey.questionSet();
+        List<String> round = questionSet.rounds().get(journey.round());
+        int correct = journey.correct();
+        for (String questionId : round) {
+            if (Boolean.TRUE.equals(questionBank.isCorrect(questionId, answers.get(questionId)))) {
+                correct++;
+            }
+        }
+        int asked = journey.asked() + round.size();
+        int incorrect = asked - correct;
+        boolean finished =
+                correct >= questionSet.requiredCorrect()
+                        || questionSet.questionCount() - incorrect < questionSet.requiredCorrect()
+                        || journey.round() + 1 == questionSet.rounds().size();
+        return new JourneyStore.Journey(
+                questionSet,
+                finished ? journey.round() : journey.round() + 1,
+                asked,
+                correct,
+                incorrect,
+                finished);
+    }
+
+    /**
+     * Marks answers to an RTQ with no journey, such as one whose SAA has expired, on their own.
+     * Questions that aren't in the bank are marked by the answer, which is wrong if it's missing or
+     * starts with "Incorrect".
+     */
+    private Outcome scoreWithoutJourney(Map<String, String> answers) {
+        int correct = 0;
+        for (Map.Entry<String, String> answer : answers.entrySet()) {
+            Boolean isCorrect = questionBank.isCorrect(answer.getKey(), answer.getValue());
+            if (isCorrect == null
+                    ? answer.getValue() != null && !answer.getValue().startsWith("Incorrect")
+                    : isCorrect.booleanValue()) {
+                correct++;
+            }
+        }
+        int incorrect = answers.size() - correct;
+        return new Outcome(incorrect == 0, answers.size(), correct, incorrect);
+    }
+
+    private ResponseTemplate outcomeTemplate(Outcome outcome) {
+        return outcomeTemplates.computeIfAbsent(
+                outcome,
+                key -> {
+                    try {
+                        return rtqOutcomeTemplate(key);
+                    } catch (JAXBException e) {
+                        throw new IllegalStateException("Failed to render RTQ outcome", e);
+                    }
+                });
+    }
 
+    private Questions questions(List<String> questionIds) {
+        Questions questions = new Questions();
+        questionIds.forEach(id -> questions.getQuestion().add(questionBank.toQuestion(id)));
+        return questions;
+    }
+
+    private ResponseTemplate saaTemplate(List<String> questionIds) throws JAXBException {
         SAAResponse saaResponse = new SAAResponse();
         SAAResponse2 saaResult = new SAAResponse2();
         Results results = new Results();
         ArrayOfString nextTransId = new ArrayOfString();
-        saaResult.setControl(control);
-
-        if (saaObject
-                        .getSAARequest()
-                        .getApplicant()
-                        .getName()
-                        .getForename()
-                        .equalsIgnoreCase("SUZIE")
-                && saaObject
-                        .getSAARequest()
-                        .getApplicant()
-                        .getName()
-                        .getSurname()
-                        .equalsIgnoreCase("SHREEVE")) {
-            simulateThinFileResult(sw, saaResponse, saaResult, results, nextTransId);
-            return;
-        }
-
-        Questions questions = new Questions();
-        List<Question> questionList = questions.getQuestion();
-        questionList.add(getQuestion1());
-        questionList.add(getQuestion2());
-        saaResult.setQuestions(questions);
+        saaResult.setQuestions(questions(questionIds));
         results.setOutcome("Authentication Questions returned");
         nextTransId.getString().add("RTQ");
         results.setNextTransId(nextTransId);
         saaResult.setResults(results);
-
         saaResponse.setSAAResult(saaResult);
 
-        saaResponseMarshaller.marshal(saaResponse, sw);
+        return ResponseTemplate.of(
+                jaxb, saaResponse, saaResult::setControl, soapHeader, soapFooter);
     }
 
-    private void simulateThinFileResult(
-            StringWriter sw,
-            SAAResponse saaResponse,
-            SAAResponse2 saaResult,
-            Results results,
-            ArrayOfString nextTransId)
-            throws JAXBException {
+    private ResponseTemplate saaThinFileTemplate() throws JAXBException {
+        SAAResponse saaResponse = new SAAResponse();
+        SAAResponse2 saaResult = new SAAResponse2();
+        Results results = new Results();
+        ArrayOfString nextTransId = new ArrayOfString();
         results.setOutcome("Insufficient Questions (Unable to Authenticate)");
         results.setAuthenticationResult(UNABLE_TO_AUTHENTICATE);
         nextTransId.getString().add("END");
@@ -231,65 +472,62 @@ public class Handler {
         saaResult.setResults(results);
         saaResponse.setSAAResult(saaResult);
 
-        saaResponseMarshaller.marshal(saaResponse, sw);
-        return;
+        return ResponseTemplate.of(
+                jaxb, saaResponse, saaResult::setControl, soapHeader, soapFooter);
+    }
+
+    private ResponseTemplate rtqErrorTemplate() throws JAXBException {
+        RTQResponse rtqResponse = new RTQResponse();
+        RTQResponse2 result = new RTQResponse2();
+        Error error = new Error();
+        error.setErrorCode("1024");
+        error.setMessage(UNABLE_TO_AUTHENTICATE);
+        result.setError(error);
+        rtqResponse.setRTQResult(result);
+
+        return ResponseTemplate.of(jaxb, rtqResponse, result::setControl, soapHeader, soapFooter);
+    }
+
+    private ResponseTemplate rtqQuestionsTemplate(List<String> questionIds) throws JAXBException {
+        RTQResponse rtqResponse = new RTQResponse();
+        RTQResponse2 result = new RTQResponse2();
+        Results results = new Results();
+        ArrayOfString nextTransId = new ArrayOfString();
+        result.setQuestions(questions(questionIds));
+        results.setOutcome("Authentication Questions returned");
+        nextTransId.getString().add("RTQ");
+        results.setNextTransId(nextTransId);
+        result.setResults(results);
+        rtqResponse.setRTQResult(result);
+
+        return ResponseTemplate.of(jaxb, rtqResponse, result::setControl, soapHeader, soapFooter);
     }
 
-    private void stubRTQ(StringWriter sw, Document bodyDoc) throws JAXBException {
-        RTQ rtqRequest = (RTQ) rtqUnmarshaller.unmarshal(bodyDoc);
+    private ResponseTemplate rtqOutcomeTemplate(Outcome outcome) throws JAXBException {
         RTQResponse rtqResponse = new RTQResponse();
         RTQResponse2 result = new RTQResponse2();
         Results results = new Results();
         ArrayOfString arrayOfString = new ArrayOfString();
         arrayOfString.getString().addAll(List.of("END"));
         results.setNextTransId(arrayOfString);
-        result.setControl(rtqRequest.getRTQRequest().getControl());
-
-        boolean simulateExperianError =
-                rtqRequest.getRTQRequest().getResponses().getResponse().stream()
-                        .anyMatch(item -> item.getAnswerGiven().startsWith(EXPERIAN_ERROR));
-        if (simulateExperianError) {
-            throwSOAPFaultException("A general SoapFault has occurred at the Experian IIQ Stub.");
-        }
-
-        boolean simulateUserDataIncorrectError =
-                rtqRequest.getRTQRequest().getResponses().getResponse().stream()
-                        .anyMatch(item -> item.getAnswerGiven().startsWith(USER_DATA_INCORRECT));
-        if (simulateUserDataIncorrectError) {
-            Error error = new Error();
-            error.setErrorCode("1024");
-            error.setMessage(UNABLE_TO_AUTHENTICATE);
-            result.setError(error);
-            rtqResponse.setRTQResult(result);
-
-            rtqResponseMarshaller.marshal(rtqResponse, sw);
-            return;
-        }
-
-        // check if Correct Answer was chosen
-        boolean correctAnswerNotSelected =
-                rtqRequest.getRTQRequest().getResponses().getResponse().stream()
-                        .anyMatch(item -> item.getAnswerGiven().startsWith("Incorrect"));
 
         ResultsQuestions resultsQuestions = new ResultsQuestions();
-        if (correctAnswerNotSelected) {
-            results.setOutcome(AUTHENTICATION_UNSUCCESSFUL);
-            results.setAuthenticationResult(NOT_AUTHENTICATED);
-            resultsQuestions.setCorrect(1);
-            resultsQuestions.setIncorrect(1);
-        } else {
+        if (outcome.authenticated()) {
             results.setOutcome(AUTHENTICATION_SUCCESSFUL);
             results.setAuthenticationResult(AUTHENTICATED);
-            resultsQuestions.setCorrect(2);
-            resultsQuestions.setIncorrect(0);
+        } else {
+            results.setOutcome(AUTHENTICATION_UNSUCCESSFUL);
+            results.setAuthenticationResult(NOT_AUTHENTICATED);
         }
-        resultsQuestions.setAsked(2);
+        resultsQuestions.setCorrect(outcome.correct());
+        resultsQuestions.setIncorrect(outcome.incorrect());
+        resultsQuestions.setAsked(outcome.asked());
         results.setQuestions(resultsQuestions);
         result.setResults(results);
 
         rtqResponse.setRTQResult(result);
 
-        rtqResponseMarshaller.marshal(rtqResponse, sw);
+        return ResponseTemplate.of(jaxb, rtqResponse, result::setControl, soapHeader, soapFooter);
     }
 
     private void throwSOAPFaultException(String faultString) {
@@ -0,0 +1,63 @@
+package uk.gov.di.ipv.stub.experian;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * One {@link JAXBContext} for every type the stub reads or writes. Marshallers and unmarshallers
+ * aren't thread-safe, so each request thread gets its own, created on first use and reused after
+ * that. There is one per Jetty worker thread at most, without any locking.
+ */
+public class Jaxb {
+    private final JAXBContext context;
+    private final ThreadLocal<Marshaller> marshaller;
+    private final ThreadLocal<Unmarshaller> unmarshaller;
+
+    public Jaxb(Class<?>... types) throws JAXBException {
+        this.context = JAXBContext.newInstance(types);
+        this.marshaller = ThreadLocal.withInitial(this::createMarshaller);
+        this.unmarshaller = ThreadLocal.withInitial(this::createUnmarshaller);
+    }
+
+    /** Marshals the object as a fragment, without an XML declaration. */
+    public void marshal(Object object, Writer writer) throws JAXBException {
+        marshaller.get().marshal(object, writer);
+    }
+
+    /** Marshals the object as a UTF-8 fragment, without an XML declaration. */
+    public void marshal(Object object, OutputStream out) throws JAXBException {
+        marshaller.get().marshal(object, out);
+    }
+
+    /**
+     * Unmarshals the element the reader is positioned on, leaving the reader just after its end
+     * tag.
+     */
+    public Object unmarshal(XMLStreamReader reader) throws JAXBException {
+        return unmarshaller.get().unmarshal(reader);
+    }
+
+    private Marshaller createMarshaller() {
+        try {
+            Marshaller created = context.createMarshaller();
+            created.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            return created;
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Failed to create marshaller", e);
+        }
+    }
+
+    private Unmarshaller createUnmarshaller() {
+        try {
+            return context.createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Failed to create unmarshaller", e);
+        }
+    }
+}
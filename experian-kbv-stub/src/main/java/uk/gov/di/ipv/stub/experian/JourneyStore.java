@@ -0,0 +1,112 @@
+package uk.gov.di.ipv.stub.experian;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Where each applicant is in their SAA and RTQ rounds, keyed by URN. A journey expires a fixed time
+ * after its SAA, and once the store is full the oldest journeys are dropped to make room, so memory
+ * stays bounded however many journeys are abandoned part way through.
+ *
+ * <p>Journeys are queued in the order they started. As every journey lives for the same time, that
+ * is also the order they expire in, so expired journeys are cleared from the head of the queue
+ * whenever a new one starts.
+ */
+public class JourneyStore {
+
+    /** The questions asked so far in a journey, and whether the applicant has an outcome. */
+    public record Journey(
+            QuestionBank.QuestionSet questionSet,
+            int round,
+            int asked,
+            int correct,
+            int incorrect,
+            boolean finished) {
+
+        public static Journey start(QuestionBank.QuestionSet questionSet) {
+            return new Journey(questionSet, 0, 0, 0, 0, false);
+        }
+
+        public boolean authenticated() {
+            return correct >= questionSet.requiredCorrect();
+        }
+    }
+
+    private record Entry(Journey journey, long expiresAt) {}
+
+    private record Expiry(String urn, long expiresAt) {}
+
+    private final Map<String, Entry> journeys = new ConcurrentHashMap<>();
+    private final Queue<Expiry> expiries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoClock;
+
+    public JourneyStore(Duration ttl, int maxSize) {
+        this(ttl, maxSize, System::nanoTime);
+    }
+
+    JourneyStore(Duration ttl, int maxSize, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.nanoClock = nanoClock;
+    }
+
+    /** Starts a journey for the URN, replacing any journey it already had. */
+    public void start(String urn, Journey journey) {
+        long now = nanoClock.getAsLong();
+        evict(now);
+        long expiresAt = now + ttlNanos;
+        journeys.put(urn, new Entry(journey, expiresAt));
+        expiries.add(new Expiry(urn, expiresAt));
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Atomically applies the update to the URN's journey, keeping its expiry, and returns the
+     * updated journey. Returns null without calling the update if the URN has no live journey.
+     */
+    public Journey update(String urn, UnaryOperator<Journey> update) {
+        long now = nanoClock.getAsLong();
+        Entry updated =
+                journeys.computeIfPresent(
+                        urn,
+                        (key, entry) ->
+                                entry.expiresAt() - now <= 0
+                                        ? null
+                                        : new Entry(
+                                                update.apply(entry.journey()), entry.expiresAt()));
+        return updated == null ? null : updated.journey();
+    }
+
+    public void remove(String urn) {
+        journeys.remove(urn);
+    }
+
+    public int size() {
+        return journeys.size();
+    }
+
+    private void evict(long now) {
+        while (true) {
+            Expiry head = expiries.peek();
+            if (head == null || (head.expiresAt() - now > 0 && queued.get() < maxSize)) {
+                return;
+            }
+            if (expiries.remove(head)) {
+                queued.decrementAndGet();
+                // Only drop the journey this entry was queued for, not a later restart
+                journeys.computeIfPresent(
+                        head.urn(),
+                        (key, entry) -> entry.expiresAt() == head.expiresAt() ? null : entry);
+            }
+        }
+    }
+}
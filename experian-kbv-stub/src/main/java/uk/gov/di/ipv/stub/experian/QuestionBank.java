@@ -0,0 +1,123 @@
+package uk.gov.di.ipv.stub.experian;
+
+import com.experian.uk.schema.experian.identityiq.services.webservice.AnswerFormat;
+import com.experian.uk.schema.experian.identityiq.services.webservice.Question;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The questions the stub can ask and the sets they are asked in. Each applicant gets the set picked
+ * by a hash of their name and date of birth, so the same applicant always gets the same questions.
+ * A set has one or more rounds. The first round is returned from SAA and each later round from an
+ * RTQ, until the applicant has answered enough questions correctly or can no longer do so.
+ */
+public class QuestionBank {
+
+    public record BankQuestion(
+            String id,
+            String text,
+            String tooltip,
+            String fieldType,
+            String answerFormatId,
+            List<String> answers,
+            String correctAnswer) {}
+
+    public record QuestionSet(String id, List<List<String>> rounds, int requiredCorrect) {
+        public int questionCount() {
+            return rounds.stream().mapToInt(List::size).sum();
+        }
+    }
+
+    private record Bank(List<BankQuestion> questions, List<QuestionSet> questionSets) {}
+
+    private final Map<String, BankQuestion> questions;
+    private final List<QuestionSet> questionSets;
+
+    public QuestionBank(List<BankQuestion> questions, List<QuestionSet> questionSets) {
+        Map<String, BankQuestion> byId = new HashMap<>();
+        for (BankQuestion question : questions) {
+            if (byId.put(question.id(), question) != null) {
+                throw new IllegalArgumentException("Duplicate question " + question.id());
+            }
+        }
+        if (questionSets.isEmpty()) {
+            throw new IllegalArgumentException("No question sets");
+        }
+        for (QuestionSet questionSet : questionSets) {
+            if (questionSet.rounds().isEmpty() || questionSet.rounds().contains(List.of())) {
+                throw new IllegalArgumentException(
+                        "Question set %s has an empty round".formatted(questionSet.id()));
+            }
+            if (questionSet.requiredCorrect() > questionSet.questionCount()) {
+                throw new IllegalArgumentException(
+                        "Question set %s requires more correct answers than it has questions"
+                                .formatted(questionSet.id()));
+            }
+            questionSet.rounds().stream()
+                    .flatMap(List::stream)
+                    .filter(id -> !byId.containsKey(id))
+                    .findFirst()
+                    .ifPresent(
+                            id -> {
+                                throw new IllegalArgumentException(
+                                        "Question set %s uses unknown question %s"
+                                                .formatted(questionSet.id(), id));
+                            });
+        }
+        this.questions = Map.copyOf(byId);
+        this.questionSets = List.copyOf(questionSets);
+    }
+
+    public static QuestionBank read(InputStream json, ObjectMapper mapper) throws IOException {
+        Bank bank = mapper.readValue(json, Bank.class);
+        return new QuestionBank(bank.questions(), bank.questionSets());
+    }
+
+    public List<QuestionSet> questionSets() {
+        return questionSets;
+    }
+
+    public int questionCount() {
+        return questions.size();
+    }
+
+    /** The set for the applicant, always the same for the same name and date of birth. */
+    public QuestionSet questionSetFor(String forename, String surname, String dateOfBirth) {
+        String key =
+                String.join("|", normalise(forename), normalise(surname), normalise(dateOfBirth));
+        return questionSets.get(Math.floorMod(key.hashCode(), questionSets.size()));
+    }
+
+    /** Whether the answer is correct, or null if the question isn't in the bank. */
+    public Boolean isCorrect(String questionId, String answer) {
+        BankQuestion question = questions.get(questionId);
+        if (question == null) {
+            return null;
+        }
+        return answer != null && answer.trim().equalsIgnoreCase(question.correctAnswer());
+    }
+
+    public Question toQuestion(String questionId) {
+        BankQuestion bankQuestion = questions.get(questionId);
+        Question question = new Question();
+        question.setQuestionID(bankQuestion.id());
+        question.setText(bankQuestion.text());
+        question.setTooltip(bankQuestion.tooltip());
+        AnswerFormat answerFormat = new AnswerFormat();
+        answerFormat.setIdentifier(bankQuestion.answerFormatId());
+        answerFormat.setFieldType(bankQuestion.fieldType());
+        answerFormat.getAnswerList().addAll(bankQuestion.answers());
+        question.setAnswerFormat(answerFormat);
+        return question;
+    }
+
+    private static String normalise(String value) {
+        return value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+    }
+}
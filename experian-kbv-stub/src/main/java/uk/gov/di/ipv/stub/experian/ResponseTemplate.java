@@ -0,0 +1,99 @@
+package uk.gov.di.ipv.stub.experian;
+
+import com.experian.uk.schema.experian.identityiq.services.webservice.Control;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * A SOAP response marshalled once at startup, with a gap where the request's {@code Control} block
+ * goes. Only the control block is marshalled per request. Everything else is written from the
+ * pre-rendered bytes.
+ */
+public class ResponseTemplate {
+    private static final QName CONTROL =
+            new QName(
+                    "http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService",
+                    "Control");
+    private static final String MARKER = "response-template-control";
+
+    private final byte[] head;
+    private final byte[] tail;
+
+    private ResponseTemplate(byte[] head, byte[] tail) {
+        this.head = head;
+        this.tail = tail;
+    }
+
+    /** A response with no body content, for requests the stub doesn't recognise. */
+    public static ResponseTemplate empty(String soapHeader, String soapFooter) {
+        return new ResponseTemplate(
+                (soapHeader + soapFooter).getBytes(StandardCharsets.UTF_8), new byte[0]);
+    }
+
+    /**
+     * Marshals the response once, with {@code setControl} given a placeholder that marks where each
+     * request's control block goes.
+     */
+    public static ResponseTemplate of(
+            Jaxb jaxb,
+            Object response,
+            Consumer<Control> setControl,
+            String soapHeader,
+            String soapFooter)
+            throws JAXBException {
+        Control marker = new Control();
+        marker.setURN(MARKER);
+        setControl.accept(marker);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        jaxb.marshal(response, body);
+        String rendered = soapHeader + body.toString(StandardCharsets.UTF_8) + soapFooter;
+
+        // The URN is the first element in the control block, so the block starts at the tag
+        // before it and ends at the first closing control tag after it
+        int urn = rendered.lastIndexOf('<', rendered.indexOf(MARKER));
+        int start = rendered.lastIndexOf('<', urn - 1);
+        int end = rendered.indexOf("Control>", urn) + "Control>".length();
+        if (urn < 0 || start < 0 || !tagName(rendered, start).matches("(\\w+:)?Control")) {
+            throw new IllegalStateException("No control block in " + rendered);
+        }
+        return new ResponseTemplate(
+                rendered.substring(0, start).getBytes(StandardCharsets.UTF_8),
+                rendered.substring(end).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Marshals the control block to splice into a template. */
+    public static byte[] control(Jaxb jaxb, Control control) throws JAXBException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        jaxb.marshal(new JAXBElement<>(CONTROL, Control.class, control), out);
+        return out.toByteArray();
+    }
+
+    public void writeTo(OutputStream out, byte[] control) throws IOException {
+        out.write(head);
+        out.write(control);
+        out.write(tail);
+    }
+
+    public String toString(byte[] control) {
+        return new String(head, StandardCharsets.UTF_8)
+                + new String(control, StandardCharsets.UTF_8)
+                + new String(tail, StandardCharsets.UTF_8);
+    }
+
+    private static String tagName(String rendered, int tagStart) {
+        int end = tagStart + 1;
+        while (end < rendered.length() && " \t\r\n/>".indexOf(rendered.charAt(end)) < 0) {
+            end++;
+        }
+        return rendered.substring(tagStart + 1, end);
+    }
+}
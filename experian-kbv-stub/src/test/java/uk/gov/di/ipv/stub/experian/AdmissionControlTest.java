@@ -0,0 +1,119 @@
+package uk.gov.di.ipv.stub.experian;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlTest {
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void shouldRejectOnceAFixedLimitIsReached() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(false, 2, 2, TARGET, clock::get);
+
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(0));
+
+        limiter.release(TARGET * 10, true);
+        assertTrue(limiter.acquire(0));
+
+        AdmissionControl.Limiter.Snapshot snapshot = limiter.snapshot();
+        assertEquals(2, snapshot.limit());
+        assertEquals(2, snapshot.inFlight());
+        assertEquals(3, snapshot.admitted());
+        assertEquals(1, snapshot.rejected());
+    }
+
+    @Test
+    void shouldAdmitQueuedRequestWhenASlotIsReleased() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(false, 1, 1, TARGET, System::nanoTime);
+        assertTrue(limiter.acquire(0));
+
+        CompletableFuture<Boolean> waiting =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return limiter.acquire(TimeUnit.SECONDS.toNanos(10));
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        limiter.release(0, false);
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.snapshot().queued());
+        assertTrue(limiter.snapshot().queueWaitNanos() > 0);
+
+        assertFalse(limiter.acquire(TimeUnit.MILLISECONDS.toNanos(20)));
+    }
+
+    @Test
+    void shouldGrowAnAdaptiveLimitWhileRequestsAreFastAndUsingIt() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(true, 4, 5, TARGET, clock::get);
+
+        // About one window of fast requests at the limit adds one
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire(0));
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.release(TARGET / 2, false);
+            assertTrue(limiter.acquire(0));
+        }
+        assertEquals(5, limiter.snapshot().limit());
+
+        // Capped at the maximum
+        for (int i = 0; i < 100; i++) {
+            limiter.release(TARGET / 2, false);
+            assertTrue(limiter.acquire(0));
+        }
+        assertEquals(5, limiter.snapshot().limit());
+    }
+
+    @Test
+    void shouldShrinkAnAdaptiveLimitOncePerTargetWhileSlow() throws Exception {
+        AdmissionControl.Limiter limiter =
+                new AdmissionControl.Limiter(true, 100, 100, TARGET, clock::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(0));
+        }
+
+        // A burst of slow completions together only backs off once
+        for (int i = 0; i < 5; i++) {
+            limiter.release(TARGET * 2, false);
+        }
+        assertEquals(90, limiter.snapshot().limit());
+
+        clock.addAndGet(TARGET);
+        limiter.release(TARGET * 2, false);
+        assertEquals(81, limiter.snapshot().limit());
+
+        clock.addAndGet(TARGET);
+        limiter.release(0, true);
+        assertEquals(72, limiter.snapshot().limit());
+    }
+
+    @Test
+    void shouldRejectInvalidLimits() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdmissionControl.Limiter(false, 0, 0, TARGET, clock::get));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdmissionControl.Limiter(true, 10, 5, TARGET, clock::get));
+    }
+}
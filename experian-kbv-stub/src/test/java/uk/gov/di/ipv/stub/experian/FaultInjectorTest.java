@@ -0,0 +1,110 @@
+package uk.gov.di.ipv.stub.experian;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FaultInjectorTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final AtomicInteger routeCalls = new AtomicInteger();
+    private FaultInjector injector;
+    private Service http;
+
+    @BeforeEach
+    void startSpark() {
+        injector = new FaultInjector(mapper, Map.of());
+        Object identifier = new Object();
+        injector.install(identifier);
+        http = Service.ignite().port(0);
+        http.embeddedServerIdentifier(identifier);
+        http.post(
+                "/*",
+                (request, response) -> {
+                    routeCalls.incrementAndGet();
+                    return request.body();
+                });
+        http.awaitInitialization();
+    }
+
+    @AfterEach
+    void stopSpark() {
+        http.stop();
+        http.awaitStop();
+    }
+
+    @Test
+    void shouldRunTheSparkRouteOnceTheDelayIsUp() throws Exception {
+        use(
+                "{\"name\": \"slow\", \"endpoints\": {\"/iiq\": {\"latency\": {\"type\": \"fixed\", \"millis\": 300}}}}");
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = send("/iiq");
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // The route runs once, on the redispatch after the delay, and still gets the body
+        assertEquals(200, response.statusCode());
+        assertEquals("posted to /iiq", response.body());
+        assertTrue(elapsedMillis >= 300, "took " + elapsedMillis);
+        assertEquals(1, routeCalls.get());
+    }
+
+    @Test
+    void shouldOnlyInjectIntoConfiguredPaths() throws Exception {
+        use(
+                "{\"name\": \"errors\", \"endpoints\": {"
+                        + "\"/iiq\": {\"latency\": {\"type\": \"fixed\", \"millis\": 50},"
+                        + " \"errorRate\": 1, \"errorStatus\": 502},"
+                        + "\"/wasp-token\": {\"resetRate\": 1}}}");
+
+        HttpResponse<String> failing = send("/iiq");
+        assertEquals(502, failing.statusCode());
+        assertEquals("Injected fault", failing.body());
+        assertThrows(IOException.class, () -> send("/wasp-token"));
+        assertEquals(200, send("/other").statusCode());
+        assertEquals(1, routeCalls.get());
+
+        injector.select("none");
+        assertEquals(200, send("/iiq").statusCode());
+    }
+
+    @Test
+    void shouldRejectInvalidProfiles() {
+        assertThrows(
+                IOException.class,
+                () -> mapper.readValue("{\"type\": \"gaussian\"}", FaultInjector.Latency.class));
+        assertThrows(
+                IOException.class,
+                () ->
+                        mapper.readValue(
+                                "{\"errorRate\": 0.8, \"resetRate\": 0.5}",
+                                FaultInjector.EndpointFaults.class));
+        assertThrows(IllegalArgumentException.class, () -> injector.select("missing"));
+    }
+
+    private void use(String profile) throws IOException {
+        injector.use(mapper.readValue(profile, FaultInjector.Profile.class));
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        return client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + http.port() + path))
+                        .POST(HttpRequest.BodyPublishers.ofString("posted to " + path))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
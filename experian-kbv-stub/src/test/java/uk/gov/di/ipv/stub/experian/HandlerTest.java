@@ -0,0 +1,291 @@
+package uk.gov.di.ipv.stub.experian;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import spark.Service;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HandlerTest {
+    private static final int REQUESTS = 4000;
+    private static final String NAMESPACE =
+            "http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService";
+    private static final Pattern URN = Pattern.compile("<URN>([^<]*)</URN>");
+
+    private final Handler handler = new Handler();
+
+    HandlerTest() throws Exception {}
+
+    @Test
+    void shouldAnswerConcurrentRequestsWithTheirOwnUrn() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Object>> calls =
+                    IntStream.range(0, REQUESTS)
+                            .mapToObj(
+                                    i ->
+                                            executor.submit(
+                                                    () -> {
+                                                        checkRequest(i);
+                                                        return null;
+                                                    }))
+                            .toList();
+            for (Future<Object> call : calls) {
+                call.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldReturnAnEmptyBodyForAnUnknownOperation() throws Exception {
+        String request = envelope("<Other xmlns=\"urn:other\"><SAA/></Other>");
+
+        String response = iiqResponse(request);
+
+        assertTrue(response.endsWith("<soap:Body></soap:Body></soap:Envelope>"), response);
+    }
+
+    @Test
+    void shouldSpliceTheControlBlockIntoAWellFormedResponse() throws Exception {
+        Document response = parse(iiqResponse(saa("spliced-urn", 0)));
+
+        assertEquals("spliced-urn", text(response, "URN", 0));
+        assertFalse(text(response, "AuthRefNo", 0).isBlank());
+        assertEquals("Q00001", text(response, "QuestionID", 0));
+        assertEquals("Q00002", text(response, "QuestionID", 1));
+        assertEquals("Authentication Questions returned", text(response, "Outcome", 0));
+    }
+
+    @Test
+    void shouldAnswerChunkedAndFixedLengthRequestsThroughSpark() throws Exception {
+        List<String> transferEncodings = new CopyOnWriteArrayList<>();
+        Service http = Service.ignite().port(0);
+        http.before(
+                (request, response) -> transferEncodings.add(request.headers("Transfer-Encoding")));
+        http.post("/iiq", handler.iiqWebService);
+        http.awaitInitialization();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        try {
+            // With the body logged, and with it never sampled so the route parses the stream
+            for (String sampleRates : List.of("", "/iiq=0")) {
+                BodyLogger.setSampleRates(sampleRates);
+                for (boolean chunked : List.of(true, false)) {
+                    String urn = "spark-urn-" + chunked + sampleRates;
+                    byte[] body = saa(urn, 0).getBytes(StandardCharsets.UTF_8);
+                    HttpResponse<String> response =
+                            client.send(
+                                    post(http.port(), body, chunked),
+                                    HttpResponse.BodyHandlers.ofString());
+
+                    assertEquals(200, response.statusCode(), response.body());
+                    assertEquals(urn, text(parse(response.body()), "URN", 0));
+                }
+            }
+        } finally {
+            BodyLogger.setSampleRates(Config.LOG_SAMPLE_RATES);
+            http.stop();
+            http.awaitStop();
+        }
+        assertEquals(Arrays.asList("chunked", null, "chunked", null), transferEncodings);
+    }
+
+    /** A request with a length, or sent in chunks as its length is unknown. */
+    private static HttpRequest post(int port, byte[] body, boolean chunked) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:%d/iiq".formatted(port)))
+                .POST(
+                        chunked
+                                ? HttpRequest.BodyPublishers.ofInputStream(
+                                        () -> new ByteArrayInputStream(body))
+                                : HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private String iiqResponse(String request) throws Exception {
+        return iiqResponse(handler, request);
+    }
+
+    private static String iiqResponse(Handler handler, String request) throws Exception {
+        return handler.iiqResponse(
+                        new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)))
+                .toString();
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String text(Document document, String element, int index) {
+        return document.getElementsByTagNameNS(NAMESPACE, element).item(index).getTextContent();
+    }
+
+    @Test
+    void shouldAskFurtherRoundsUntilTheOutcomeIsKnown() throws Exception {
+        JourneyStore journeys = new JourneyStore(Duration.ofMinutes(1), 10);
+        Handler multiRound = new Handler(multiRoundBank(), journeys);
+
+        Document first = parse(iiqResponse(multiRound, saa("multi-urn", 0)));
+        assertEquals("Q1", text(first, "QuestionID", 0));
+        assertEquals("Q2", text(first, "QuestionID", 1));
+
+        Document second = parse(iiqResponse(multiRound, rtq("multi-urn", "Q1", "A", "Q2", "A")));
+        assertEquals("Q3", text(second, "QuestionID", 0));
+        assertEquals("Q4", text(second, "QuestionID", 1));
+        assertEquals("RTQ", text(second, "string", 0));
+
+        Document result = parse(iiqResponse(multiRound, rtq("multi-urn", "Q3", "A", "Q4", "B")));
+        assertEquals("Authenticated", text(result, "AuthenticationResult", 0));
+        assertEquals("4", text(result, "Asked", 0));
+        assertEquals("3", text(result, "Correct", 0));
+        assertEquals(0, journeys.size());
+    }
+
+    @Test
+    void shouldFinishEarlyOnceTheApplicantCanNoLongerPass() throws Exception {
+        Handler multiRound =
+                new Handler(multiRoundBank(), new JourneyStore(Duration.ofMinutes(1), 10));
+        iiqResponse(multiRound, saa("failing-urn", 0));
+
+        Document result = parse(iiqResponse(multiRound, rtq("failing-urn", "Q1", "B", "Q2", "B")));
+
+        assertEquals("Not Authenticated", text(result, "AuthenticationResult", 0));
+        assertEquals("2", text(result, "Asked", 0));
+    }
+
+    @Test
+    void shouldMarkAMissingAnswerAsIncorrect() throws Exception {
+        String response =
+                iiqResponse(
+                        envelope(
+                                """
+                                <RTQ xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                                  <rTQRequest>
+                                    <Control><URN>no-answer-urn</URN></Control>
+                                    <Responses>
+                                      <Response><QuestionID>Q00001</QuestionID><AnswerGiven>Correct 1</AnswerGiven></Response>
+                                      <Response><QuestionID>Q00002</QuestionID></Response>
+                                    </Responses>
+                                  </rTQRequest>
+                                </RTQ>
+                                """));
+
+        assertTrue(response.contains("Authentication Unsuccessful"), response);
+    }
+
+    private static QuestionBank multiRoundBank() {
+        List<QuestionBank.BankQuestion> questions =
+                IntStream.rangeClosed(1, 4)
+                        .mapToObj(
+                                i ->
+                                        new QuestionBank.BankQuestion(
+                                                "Q" + i,
+                                                "Question " + i,
+                                                "",
+                                                "G",
+                                                "A" + i,
+                                                List.of("A", "B"),
+                                                "A"))
+                        .toList();
+        return new QuestionBank(
+                questions,
+                List.of(
+                        new QuestionBank.QuestionSet(
+                                "two-rounds",
+                                List.of(List.of("Q1", "Q2"), List.of("Q3", "Q4")),
+                                3)));
+    }
+
+    private static String rtq(String urn, String... answers) {
+        StringBuilder responses = new StringBuilder();
+        for (int i = 0; i < answers.length; i += 2) {
+            responses.append(
+                    "<Response><QuestionID>%s</QuestionID><AnswerGiven>%s</AnswerGiven></Response>"
+                            .formatted(answers[i], answers[i + 1]));
+        }
+        return envelope(
+                """
+                <RTQ xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                  <rTQRequest>
+                    <Control><URN>%s</URN></Control>
+                    <Responses>%s</Responses>
+                  </rTQRequest>
+                </RTQ>
+                """
+                        .formatted(urn, responses));
+    }
+
+    private void checkRequest(int i) throws Exception {
+        String urn = "urn-" + i;
+        String request = i % 2 == 0 ? saa(urn, i) : rtq(urn, i);
+        String response = iiqResponse(request);
+
+        Matcher matcher = URN.matcher(response);
+        assertTrue(matcher.find(), response);
+        assertEquals(urn, matcher.group(1));
+        if (i % 2 == 0) {
+            assertTrue(response.contains("Authentication Questions returned"), response);
+        } else {
+            String outcome =
+                    i % 4 == 1 ? "Authentication successful" : "Authentication Unsuccessful";
+            assertTrue(response.contains(outcome), response);
+        }
+    }
+
+    private static String saa(String urn, int i) {
+        return envelope(
+                """
+                <SAA xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                  <sAARequest>
+                    <Applicant><Name><Forename>FIRST%d</Forename><Surname>LAST</Surname></Name></Applicant>
+                    <Control><URN>%s</URN></Control>
+                  </sAARequest>
+                </SAA>
+                """
+                        .formatted(i, urn));
+    }
+
+    private static String rtq(String urn, int i) {
+        String answer = i % 4 == 1 ? "Correct 1" : "Incorrect 1";
+        return envelope(
+                """
+                <RTQ xmlns="http://schema.uk.experian.com/Experian/IdentityIQ/Services/WebService">
+                  <rTQRequest>
+                    <Control><URN>%s</URN></Control>
+                    <Responses><Response><QuestionID>Q00001</QuestionID><AnswerGiven>%s</AnswerGiven></Response></Responses>
+                  </rTQRequest>
+                </RTQ>
+                """
+                        .formatted(urn, answer));
+    }
+
+    private static String envelope(String body) {
+        return "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                + body
+                + "</soap:Body></soap:Envelope>";
+    }
+}
@@ -0,0 +1,68 @@
+package uk.gov.di.ipv.stub.experian;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JourneyStoreTest {
+    private static final QuestionBank.QuestionSet QUESTION_SET =
+            new QuestionBank.QuestionSet("set", List.of(List.of("Q1"), List.of("Q2")), 1);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final JourneyStore store = new JourneyStore(Duration.ofNanos(100), 3, clock::get);
+
+    @Test
+    void shouldExpireJourneysAfterTheirTimeToLive() {
+        store.start("urn-1", JourneyStore.Journey.start(QUESTION_SET));
+        clock.set(99);
+        assertNotNull(store.update("urn-1", journey -> journey));
+
+        clock.set(100);
+        assertNull(store.update("urn-1", journey -> journey));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void shouldDropTheOldestJourneysWhenFull() {
+        for (int i = 0; i < 10; i++) {
+            store.start("urn-" + i, JourneyStore.Journey.start(QUESTION_SET));
+        }
+
+        assertEquals(3, store.size());
+        assertNull(store.update("urn-6", journey -> journey));
+        assertNotNull(store.update("urn-7", journey -> journey));
+        assertNotNull(store.update("urn-9", journey -> journey));
+    }
+
+    @Test
+    void shouldKeepARestartedJourneyWhenTheEarlierOneExpires() {
+        store.start("urn-1", JourneyStore.Journey.start(QUESTION_SET));
+        clock.set(50);
+        store.start("urn-1", JourneyStore.Journey.start(QUESTION_SET));
+
+        clock.set(120);
+        store.start("urn-2", JourneyStore.Journey.start(QUESTION_SET));
+
+        assertNotNull(store.update("urn-1", journey -> journey));
+    }
+
+    @Test
+    void shouldKeepTheExpiryWhenUpdated() {
+        store.start("urn-1", JourneyStore.Journey.start(QUESTION_SET));
+        clock.set(60);
+        JourneyStore.Journey updated =
+                store.update(
+                        "urn-1",
+                        journey -> new JourneyStore.Journey(QUESTION_SET, 1, 1, 0, 1, false));
+        assertEquals(1, updated.round());
+
+        clock.set(100);
+        assertNull(store.update("urn-1", journey -> journey));
+    }
+}
@@ -0,0 +1,42 @@
+package uk.gov.di.ipv.stub.experian;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmUpTest {
+
+    @Test
+    void shouldRunEveryStepAndBecomeReadyEvenIfOneFails() {
+        AtomicInteger runs = new AtomicInteger();
+        WarmUp warmUp =
+                new WarmUp(3)
+                        .step(
+                                "failing",
+                                () -> {
+                                    throw new IllegalStateException("bad input");
+                                })
+                        .step("counted", runs::incrementAndGet);
+
+        assertFalse(warmUp.ready());
+        warmUp.run();
+
+        assertEquals(3, runs.get());
+        assertTrue(warmUp.ready());
+    }
+
+    @Test
+    void shouldBeReadyWithoutRunningAnyStepWhenTurnedOff() {
+        AtomicInteger runs = new AtomicInteger();
+        WarmUp warmUp = new WarmUp(0).step("counted", runs::incrementAndGet);
+
+        warmUp.run();
+
+        assertEquals(0, runs.get());
+        assertTrue(warmUp.ready());
+    }
+}